@@ -28,6 +28,9 @@ import org.json.JSONObject;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +38,7 @@ import java.util.Map;
 
 import io.appium.uiautomator2.model.By;
 import io.appium.uiautomator2.unittest.test.internal.BaseTest;
+import io.appium.uiautomator2.unittest.test.internal.Logger;
 import io.appium.uiautomator2.unittest.test.internal.Response;
 import io.appium.uiautomator2.unittest.test.internal.SkipHeadlessDevices;
 import io.appium.uiautomator2.unittest.test.internal.TestUtils;
@@ -689,6 +693,51 @@ public class DeviceCommandsTest extends BaseTest {
         assertNotNull(bitmap);
     }
 
+    /**
+     * Measures the server-side encode time and the payload size of each screenshot format.
+     * The results are only logged, since they depend on the device
+     */
+    @Test
+    @SkipHeadlessDevices
+    public void screenshotFormatsBenchmark() throws JSONException {
+        final int iterations = 5;
+        List<String> formats = new ArrayList<>(Arrays.asList("png", "jpeg", "raw"));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            formats.add("webp");
+        }
+        Bitmap png = null;
+        for (String format : formats) {
+            long totalDurationMs = 0;
+            byte[] bytes = null;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.currentTimeMillis();
+                Response response = screenshot(format);
+                totalDurationMs += System.currentTimeMillis() - start;
+                bytes = Base64.decode((String) response.getValue(), Base64.NO_WRAP);
+            }
+            Logger.info(String.format("Screenshot format %s: %s ms on average, %s bytes",
+                    format, totalDurationMs / iterations, bytes.length));
+
+            if (format.equals("raw")) {
+                assertNotNull(png);
+                ByteBuffer header = ByteBuffer.wrap(bytes);
+                byte[] magic = new byte[4];
+                header.get(magic);
+                assertEquals("RGBA", new String(magic, StandardCharsets.US_ASCII));
+                assertEquals(png.getWidth(), header.getInt());
+                assertEquals(png.getHeight(), header.getInt());
+                int stride = header.getInt();
+                assertEquals(16 + stride * png.getHeight(), bytes.length);
+            } else {
+                Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+                assertNotNull(bitmap);
+                if (png == null) {
+                    png = bitmap;
+                }
+            }
+        }
+    }
+
     @Test
     public void shouldBeAbleToUpdateSettings() throws JSONException {
         Response response = getSettings();
@@ -317,6 +317,16 @@ public class DeviceCommands {
         return Client.get("/screenshot");
     }
 
+    /**
+     * Get device screenshot in the given format
+     *
+     * @param format One of png, jpeg, webp or raw
+     * @return Base64-encoded screenshot string
+     */
+    public static Response screenshot(String format) {
+        return Client.get("/screenshot?format=" + format);
+    }
+
     /**
      * Accepts an on-screen alert
      *
@@ -19,7 +19,7 @@ package io.appium.uiautomator2.core;
 import android.graphics.Point;
 import android.os.SystemClock;
 import android.util.SparseArray;
-import android.util.Xml;
+import android.util.LruCache;
 import android.view.Display;
 import android.view.View;
 import android.view.accessibility.AccessibilityNodeInfo;
@@ -27,6 +27,8 @@ import android.view.accessibility.AccessibilityNodeInfo;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.gson.JsonObject;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.xerces.jaxp.DocumentBuilderFactoryImpl;
 import org.eclipse.wst.xml.xpath2.api.Item;
@@ -42,13 +44,14 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
-import org.xmlpull.v1.XmlSerializer;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
@@ -63,11 +66,15 @@ import io.appium.uiautomator2.model.settings.LimitXpathContextScope;
 import io.appium.uiautomator2.model.settings.NormalizeTagNames;
 import io.appium.uiautomator2.model.settings.Settings;
 import io.appium.uiautomator2.utils.Attribute;
+import io.appium.uiautomator2.utils.FastXmlWriter;
 import io.appium.uiautomator2.utils.Logger;
 import io.appium.uiautomator2.utils.NodeInfoList;
+import io.appium.uiautomator2.utils.SimpleXPathQuery;
+import io.appium.uiautomator2.utils.SourceNode;
 import io.appium.uiautomator2.utils.StringHelpers;
 
 import static io.appium.uiautomator2.utils.AXWindowHelpers.getCachedWindowRoots;
+import static io.appium.uiautomator2.utils.XMLHelpers.isLimitedToContextSubtree;
 import static io.appium.uiautomator2.utils.XMLHelpers.toNodeName;
 import static io.appium.uiautomator2.utils.XMLHelpers.toSafeString;
 import static net.gcardone.junidecode.Junidecode.unidecode;
@@ -82,78 +89,134 @@ import javax.xml.xpath.XPathFactory;
 public class AccessibilityNodeInfoDumper {
     private static final String UI_ELEMENT_INDEX = "uiElementIndex";
     private static final String NON_XML_CHAR_REPLACEMENT = "?";
-    private static final String NAMESPACE = "";
     private static final String DEFAULT_VIEW_CLASS_NAME = View.class.getName();
     private static final String XML_ENCODING = "UTF-8";
+    private static final int NODE_NAMES_CACHE_SIZE = 256;
+    private static final LruCache<String, String> NODE_NAMES_CACHE = new LruCache<>(NODE_NAMES_CACHE_SIZE);
+    private static final LruCache<String, String> NORMALIZED_NODE_NAMES_CACHE =
+            new LruCache<>(NODE_NAMES_CACHE_SIZE);
     private final Semaphore RESOURCES_GUARD = new Semaphore(1);
     private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+    private static final SimpleXPathQuery.NodeAdapter<UiElement<?, ?>> UI_ELEMENT_ADAPTER =
+            new SimpleXPathQuery.NodeAdapter<UiElement<?, ?>>() {
+                @Override
+                public String getTagName(UiElement<?, ?> node) {
+                    return toXmlNodeName(node.getClassName());
+                }
+
+                @Nullable
+                @Override
+                public String getAttribute(UiElement<?, ?> node, String name) {
+                    Attribute attribute = toXmlAttribute(name);
+                    Object value = attribute == null ? null : node.get(attribute);
+                    return value == null
+                            ? null
+                            : toSafeString(String.valueOf(value), NON_XML_CHAR_REPLACEMENT);
+                }
+
+                @Override
+                public List<? extends UiElement<?, ?>> getChildren(UiElement<?, ?> node) {
+                    return node.getChildren();
+                }
+            };
 
     @Nullable
     private final AccessibilityNodeInfo root;
     private final SparseArray<UiElement<?, ?>> uiElementsMapping = new SparseArray<>();
     private final Set<Attribute> includedAttributes;
+    private final UiElementSnapshot.Filter filter;
     private boolean shouldAddDisplayInfo;
-    private XmlSerializer serializer;
+    private FastXmlWriter xmlWriter;
+    // The index of the first serialized element, whose node is equal to the root node
+    private int rootElementIndex = -1;
+    // Whether the snapshot only includes the root subtree, because nothing beyond it is needed
+    private boolean isScopedToRootSubtree = false;
+    // The snapshot built in background by SpeculativeSnapshotter, which could be reused for lookups,
+    // or the snapshot taken by the previous dump of this instance
+    @Nullable
+    private UiElement<?, ?> prefetchedSnapshot = null;
 
     public AccessibilityNodeInfoDumper(@Nullable AccessibilityNodeInfo root,
                                        Set<Attribute> includedAttributes) {
+        this(root, includedAttributes, UiElementSnapshot.Filter.DEFAULT);
+    }
+
+    /**
+     * @param root the root node of the page source or null if the whole hierarchy should be used
+     * @param includedAttributes attributes to collect or an empty set to collect all of them
+     * @param filter limits the collected part of the hierarchy. It is only applied to
+     *               page source dumps, but not to XPath lookups
+     */
+    public AccessibilityNodeInfoDumper(@Nullable AccessibilityNodeInfo root,
+                                       Set<Attribute> includedAttributes,
+                                       UiElementSnapshot.Filter filter) {
         this.root = root;
         this.includedAttributes = includedAttributes;
+        this.filter = filter;
     }
 
-    private int matchRootElementIndex() {
-        if (root == null) {
-            throw new RuntimeException(
-                    "Root node search query cannot be built if the root is unset"
-            );
+    @NonNull
+    private Node fetchContext(InputStream xml) {
+        Document doc = loadDocument(xml);
+        if (root == null || Settings.get(LimitXpathContextScope.class).getValue()) {
+            return doc;
         }
-        for (int i = 0; i < uiElementsMapping.size(); ++i) {
-            if (Objects.equals(uiElementsMapping.valueAt(i).getNode(), root)) {
-                return uiElementsMapping.keyAt(i);
-            }
+        if (isScopedToRootSubtree) {
+            return doc.getDocumentElement();
         }
-        throw new RuntimeException("Cannot match the index of the root node");
+        if (rootElementIndex < 0) {
+            throw new RuntimeException("Cannot match the index of the root node");
+        }
+        // Elements are serialized in document order, so the element index is equal
+        // to the position of the element in the document
+        return Objects.requireNonNull(
+                doc.getElementsByTagName("*").item(rootElementIndex),
+                "Cannot match the root element for the context-based XPath lookup"
+        );
     }
 
     @Nullable
-    private static Node matchRootElement(Node root, final int elementIndex) {
-        if (root instanceof Element
-                && ((Element) root).hasAttribute(UI_ELEMENT_INDEX)
-                && Integer.parseInt(((Element) root).getAttribute(UI_ELEMENT_INDEX)) == elementIndex
-        ) {
-            return root;
-        }
-        if (!root.hasChildNodes()) {
-            return null;
-        }
-        NodeList childNodes = root.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); ++i) {
-            Node result = matchRootElement(childNodes.item(i), elementIndex);
-            if (result != null) {
-                return result;
+    private static Attribute toXmlAttribute(String name) {
+        for (Attribute attribute : Attribute.values()) {
+            if (attribute.isExposableToXml() && attribute.getName().equals(name)) {
+                return attribute;
             }
         }
         return null;
     }
 
-    @NonNull
-    private Node fetchContext(InputStream xml) {
-        Document doc = loadDocument(xml);
-        return root == null || Settings.get(LimitXpathContextScope.class).getValue()
-                ? doc
-                : Objects.requireNonNull(
-                    matchRootElement(doc.getDocumentElement(), matchRootElementIndex()),
-                    "Cannot match the root element for the context-based XPath lookup"
-                );
+    private UiElement<?, ?> takeSnapshot(boolean isLazy) {
+        if (prefetchedSnapshot != null) {
+            return prefetchedSnapshot;
+        }
+        if (root != null
+                && (isScopedToRootSubtree || Settings.get(LimitXpathContextScope.class).getValue())) {
+            return isLazy
+                    ? UiElementSnapshot.takeLazily(root, includedAttributes)
+                    : UiElementSnapshot.take(root, filter, includedAttributes);
+        }
+        AccessibilityNodeInfo[] windowRoots = getCachedWindowRoots();
+        List<CharSequence> toastMessages = NotificationListener.getInstance().getToastMessage();
+        return isLazy
+                ? UiElementSnapshot.takeLazily(windowRoots, toastMessages, includedAttributes)
+                : UiElementSnapshot.take(windowRoots, toastMessages, filter, includedAttributes);
     }
 
-    private void addDisplayInfo() throws IOException {
+    private static Map<String, Integer> getDisplayInfo() {
         Display display = UiAutomatorBridge.getInstance().getDefaultDisplay();
         Point size = new Point();
         display.getSize(size);
-        serializer.attribute(NAMESPACE, "rotation", Integer.toString(display.getRotation()));
-        serializer.attribute(NAMESPACE, "width", Integer.toString(size.x));
-        serializer.attribute(NAMESPACE, "height", Integer.toString(size.y));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("rotation", display.getRotation());
+        result.put("width", size.x);
+        result.put("height", size.y);
+        return result;
+    }
+
+    private void addDisplayInfo() {
+        for (Map.Entry<String, Integer> entry : getDisplayInfo().entrySet()) {
+            xmlWriter.attribute(entry.getKey(), entry.getValue().intValue());
+        }
     }
 
     private static String toXmlNodeName(@Nullable String className) {
@@ -161,6 +224,20 @@ public class AccessibilityNodeInfoDumper {
             return DEFAULT_VIEW_CLASS_NAME;
         }
 
+        // The amount of distinct class names is usually small, so it makes sense
+        // to only apply the expensive name transformations once per class
+        LruCache<String, String> cache = Settings.get(NormalizeTagNames.class).getValue()
+                ? NORMALIZED_NODE_NAMES_CACHE
+                : NODE_NAMES_CACHE;
+        String nodeName = cache.get(className);
+        if (nodeName == null) {
+            nodeName = toXmlNodeNameUncached(className);
+            cache.put(className, nodeName);
+        }
+        return nodeName;
+    }
+
+    private static String toXmlNodeNameUncached(String className) {
         String fixedName = className
                 .replaceAll("[$@#&]", ".")
                 .replaceAll("\\.+", ".")
@@ -182,10 +259,8 @@ public class AccessibilityNodeInfoDumper {
         return fixedName;
     }
 
-    private void serializeUiElement(UiElement<?, ?> uiElement, boolean isIndexed) throws IOException {
-        final String className = uiElement.getClassName();
-        final String nodeName = toXmlNodeName(className);
-        serializer.startTag(NAMESPACE, nodeName);
+    private void serializeUiElement(UiElement<?, ?> uiElement, boolean isIndexed) {
+        xmlWriter.startTag(toXmlNodeName(uiElement.getClassName()));
 
         for (Attribute attr : uiElement.attributeKeys()) {
             if (!attr.isExposableToXml()) {
@@ -195,7 +270,7 @@ public class AccessibilityNodeInfoDumper {
             if (value == null) {
                 continue;
             }
-            serializer.attribute(NAMESPACE, attr.getName(), toSafeString(String.valueOf(value), NON_XML_CHAR_REPLACEMENT));
+            xmlWriter.attribute(attr.getName(), value);
         }
         if (shouldAddDisplayInfo) {
             addDisplayInfo();
@@ -205,39 +280,34 @@ public class AccessibilityNodeInfoDumper {
 
         final int uiElementIndex = uiElementsMapping.size();
         uiElementsMapping.put(uiElementIndex, uiElement);
+        if (root != null && rootElementIndex < 0 && Objects.equals(uiElement.getNode(), root)) {
+            rootElementIndex = uiElementIndex;
+        }
         if (isIndexed) {
-            serializer.attribute(NAMESPACE, UI_ELEMENT_INDEX, Integer.toString(uiElementIndex));
+            xmlWriter.attribute(UI_ELEMENT_INDEX, uiElementIndex);
         }
 
         for (UiElement<?, ?> child : uiElement.getChildren()) {
             serializeUiElement(child, isIndexed);
         }
-        serializer.endTag(NAMESPACE, nodeName);
+        xmlWriter.endTag();
     }
 
-    private InputStream toStream(boolean isIndexed) throws IOException {
+    private InputStream toStream(boolean isIndexed) {
         final long startTime = SystemClock.uptimeMillis();
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            serializer = Xml.newSerializer();
-            shouldAddDisplayInfo = root == null;
-            serializer.setOutput(outputStream, XML_ENCODING);
-            serializer.startDocument(XML_ENCODING, true);
-            serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
-            UiElement<?, ?> uiRootElement = root != null && Settings.get(LimitXpathContextScope.class).getValue()
-                    ? UiElementSnapshot.take(root, includedAttributes)
-                    : UiElementSnapshot.take(
-                        getCachedWindowRoots(), NotificationListener.getInstance().getToastMessage(),
-                        includedAttributes
-                    );
-            serializeUiElement(uiRootElement, isIndexed);
-            serializer.endDocument();
-            Logger.debug(String.format("The source XML tree (%s bytes) has been fetched in %sms",
-                    outputStream.size(), SystemClock.uptimeMillis() - startTime));
-            return new ByteArrayInputStream(outputStream.toByteArray());
-        }
+        xmlWriter = new FastXmlWriter();
+        shouldAddDisplayInfo = root == null;
+        rootElementIndex = -1;
+        xmlWriter.startDocument();
+        serializeUiElement(takeSnapshot(false), isIndexed);
+        xmlWriter.endDocument();
+        Logger.debug(String.format("The source XML tree (%s bytes) has been fetched in %sms",
+                xmlWriter.size(), SystemClock.uptimeMillis() - startTime));
+        return xmlWriter.toInputStream();
     }
 
     public String dumpToXml() {
+        isScopedToRootSubtree = true;
         try {
             RESOURCES_GUARD.acquire();
         } catch (InterruptedException e) {
@@ -253,6 +323,74 @@ public class AccessibilityNodeInfoDumper {
         }
     }
 
+    /**
+     * Builds the same tree, which would be parsed from the {@link #dumpToXml()} output,
+     * but without serializing the hierarchy to XML. Further dumps made by this instance
+     * reuse the same hierarchy snapshot, so they match the returned tree.
+     *
+     * @return The page source tree
+     */
+    public SourceNode dumpToSourceTree() {
+        isScopedToRootSubtree = true;
+        final long startTime = SystemClock.uptimeMillis();
+        UiElement<?, ?> snapshot = takeSnapshot(false);
+        prefetchedSnapshot = snapshot;
+        SourceNode result = toSourceNode(snapshot, root == null ? getDisplayInfo() : null);
+        Logger.debug(String.format("The source tree of %s nodes has been fetched in %sms",
+                result.getSubtreeSize(), SystemClock.uptimeMillis() - startTime));
+        return result;
+    }
+
+    private static SourceNode toSourceNode(UiElement<?, ?> uiElement,
+                                           @Nullable Map<String, Integer> displayInfo) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (Attribute attr : uiElement.attributeKeys()) {
+            if (!attr.isExposableToXml()) {
+                continue;
+            }
+            Object value = uiElement.get(attr);
+            if (value != null) {
+                attributes.put(attr.getName(), FastXmlWriter.toXmlValue(String.valueOf(value)));
+            }
+        }
+        if (displayInfo != null) {
+            for (Map.Entry<String, Integer> entry : displayInfo.entrySet()) {
+                attributes.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        List<SourceNode> children = new ArrayList<>();
+        for (UiElement<?, ?> child : uiElement.getChildren()) {
+            children.add(toSourceNode(child, null));
+        }
+        return new SourceNode(toXmlNodeName(uiElement.getClassName()), attributes, children);
+    }
+
+    /**
+     * @return The page source encoded by {@link JsonSourceEncoder}
+     */
+    public JsonObject dumpToJson() {
+        isScopedToRootSubtree = true;
+        final long startTime = SystemClock.uptimeMillis();
+        JsonObject result = JsonSourceEncoder.encode(takeSnapshot(false),
+                root == null ? getDisplayInfo() : null);
+        Logger.debug(String.format("The source JSON tree has been fetched in %sms",
+                SystemClock.uptimeMillis() - startTime));
+        return result;
+    }
+
+    /**
+     * @return The page source encoded by {@link BinarySourceEncoder}
+     */
+    public byte[] dumpToBinary() {
+        isScopedToRootSubtree = true;
+        final long startTime = SystemClock.uptimeMillis();
+        byte[] result = BinarySourceEncoder.encode(takeSnapshot(false),
+                root == null ? getDisplayInfo() : null);
+        Logger.debug(String.format("The binary source tree (%s bytes) has been fetched in %sms",
+                result.length, SystemClock.uptimeMillis() - startTime));
+        return result;
+    }
+
     private static Document loadDocument(InputStream in) {
         DocumentBuilderFactory factory = new DocumentBuilderFactoryImpl();
         factory.setNamespaceAware(true);
@@ -382,7 +520,77 @@ public class AccessibilityNodeInfoDumper {
         }
     }
 
+    /**
+     * Evaluates simple queries directly over the elements tree, which allows to skip
+     * the XML serialization and parsing. If only a single match is needed then
+     * the tree is only collected until the first matching element is found.
+     */
+    private NodeInfoList findNodesUsingSimpleQuery(SimpleXPathQuery query, String xpathSelector,
+                                                   boolean multiple) {
+        try {
+            RESOURCES_GUARD.acquire();
+        } catch (InterruptedException e) {
+            throw new UiAutomator2Exception(e);
+        }
+        try {
+            final long timeStarted = SystemClock.uptimeMillis();
+            final NodeInfoList matchedNodes = new NodeInfoList();
+            if (multiple) {
+                for (UiElement<?, ?> uiElement : query.evaluate(takeSnapshot(false), UI_ELEMENT_ADAPTER)) {
+                    if (uiElement.getNode() != null) {
+                        matchedNodes.add(uiElement.getNode());
+                    }
+                }
+            } else {
+                query.evaluateLazily(takeSnapshot(true), UI_ELEMENT_ADAPTER,
+                        new SimpleXPathQuery.MatchHandler<UiElement<?, ?>>() {
+                            @Override
+                            public boolean onMatch(UiElement<?, ?> uiElement) {
+                                if (uiElement.getNode() == null) {
+                                    return true;
+                                }
+                                matchedNodes.add(uiElement.getNode());
+                                return false;
+                            }
+                        });
+            }
+            Logger.info(String.format("Took %sms to retrieve %s matches for '%s' simple XPath query",
+                    SystemClock.uptimeMillis() - timeStarted, matchedNodes.size(), xpathSelector));
+            return matchedNodes;
+        } finally {
+            RESOURCES_GUARD.release();
+        }
+    }
+
+    private static boolean isSimpleQuerySupported(SimpleXPathQuery query) {
+        // Only attributes, which are exposed in the same way to XML, could be checked directly
+        for (String attributeName : query.getAttributeNames()) {
+            if (toXmlAttribute(attributeName) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public NodeInfoList findNodes(String xpathSelector, boolean multiple) {
+        return findNodes(xpathSelector, multiple, null);
+    }
+
+    /**
+     * @param prefetchedSnapshot The snapshot of the whole hierarchy built in background
+     *                           by {@link SpeculativeSnapshotter} or null. It is only used
+     *                           for lookups from the page root.
+     */
+    public NodeInfoList findNodes(String xpathSelector, boolean multiple,
+                                  @Nullable UiElement<?, ?> prefetchedSnapshot) {
+        // There is no need to snapshot the whole hierarchy if the lookup
+        // cannot select anything outside of the root subtree
+        isScopedToRootSubtree = root != null && isLimitedToContextSubtree(xpathSelector);
+        this.prefetchedSnapshot = root == null ? prefetchedSnapshot : null;
+        SimpleXPathQuery query = SimpleXPathQuery.parse(xpathSelector);
+        if (query != null && isSimpleQuerySupported(query)) {
+            return findNodesUsingSimpleQuery(query, xpathSelector, multiple);
+        }
         return Settings.get(EnforceXpath1.class).getValue()
                 ? findNodesUsingXpath1(xpathSelector, multiple)
                 : findNodesUsingXpath2(xpathSelector, multiple);
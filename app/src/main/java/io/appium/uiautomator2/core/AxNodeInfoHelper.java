@@ -30,17 +30,22 @@ import androidx.annotation.Nullable;
 import androidx.test.uiautomator.Direction;
 import androidx.test.uiautomator.UiDevice;
 
+import java.lang.reflect.Method;
 import java.util.HashSet;
 import java.util.Set;
 
 import io.appium.uiautomator2.common.exceptions.InvalidElementStateException;
+import io.appium.uiautomator2.common.exceptions.UiAutomator2Exception;
 import io.appium.uiautomator2.model.internal.CustomUiDevice;
 import io.appium.uiautomator2.model.settings.Settings;
 import io.appium.uiautomator2.model.settings.SimpleBoundsCalculation;
 import io.appium.uiautomator2.utils.Logger;
+import io.appium.uiautomator2.utils.ReflectionUtils;
 
 import static io.appium.uiautomator2.utils.Device.getUiDevice;
 import static io.appium.uiautomator2.utils.ReflectionUtils.getField;
+import static io.appium.uiautomator2.utils.ReflectionUtils.getMethod;
+import static io.appium.uiautomator2.utils.ReflectionUtils.invoke;
 import static io.appium.uiautomator2.utils.StringHelpers.charSequenceToNullableString;
 import static io.appium.uiautomator2.utils.StringHelpers.charSequenceToString;
 
@@ -53,14 +58,26 @@ public class AxNodeInfoHelper {
     private static final long UNDEFINED_NODE_ID =
             (((long) Integer.MAX_VALUE) << 32) | Integer.MAX_VALUE;
     private static final int UNDEFINED_WINDOW_ID = -1;
+    private static final String AX_INTERACTION_CLIENT_CLASS =
+            "android.view.accessibility.AccessibilityInteractionClient";
+    private static final String METHOD_FIND_BY_AX_ID = "findAccessibilityNodeInfoByAccessibilityId";
+    private static Method findByAccessibilityIdMethod = null;
+
+    public static long getSourceNodeId(AccessibilityNodeInfo info) {
+        return (Long) getField("mSourceNodeId", info);
+    }
+
+    public static boolean isIdentifiable(int windowId, long sourceNodeId) {
+        return sourceNodeId != UNDEFINED_NODE_ID && windowId != UNDEFINED_WINDOW_ID;
+    }
 
     @Nullable
     public static String toUuid(AccessibilityNodeInfo info) {
         // mSourceNodeId and windowId properties define
         // the uniqueness of the particular AccessibilityNodeInfo instance
-        long sourceNodeId = (Long) getField("mSourceNodeId", info);
+        long sourceNodeId = getSourceNodeId(info);
         int windowId = info.getWindowId();
-        if (sourceNodeId == UNDEFINED_NODE_ID || windowId == UNDEFINED_WINDOW_ID) {
+        if (!isIdentifiable(windowId, sourceNodeId)) {
             return null;
         }
         String sourceNodeIdHex = String.format("%016x", sourceNodeId);
@@ -70,6 +87,42 @@ public class AxNodeInfoHelper {
                 sourceNodeIdHex.substring(0, 4), sourceNodeIdHex.substring(4, 16));
     }
 
+    private static synchronized Method getFindByAccessibilityIdMethod() {
+        if (findByAccessibilityIdMethod == null) {
+            Class<?> clientClass = ReflectionUtils.getClass(AX_INTERACTION_CLIENT_CLASS);
+            findByAccessibilityIdMethod = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? getMethod(clientClass, METHOD_FIND_BY_AX_ID,
+                    int.class, int.class, long.class, boolean.class, int.class, Bundle.class)
+                    : getMethod(clientClass, METHOD_FIND_BY_AX_ID,
+                    int.class, int.class, long.class, boolean.class, int.class);
+        }
+        return findByAccessibilityIdMethod;
+    }
+
+    /**
+     * Fetches the node with the given window and source node identifiers directly
+     * from the accessibility interaction client. This requires a single IPC call
+     * while locating the same node by a selector requires a full hierarchy traversal.
+     *
+     * @param windowId The identifier of the window the node belongs to
+     * @param sourceNodeId The accessibility identifier of the node
+     * @return The actual node info or null if the node does not exist anymore
+     * @throws UiAutomator2Exception if the node cannot be fetched directly on this platform
+     */
+    @Nullable
+    public static AccessibilityNodeInfo fetchNode(int windowId, long sourceNodeId) {
+        Method findMethod = getFindByAccessibilityIdMethod();
+        Object client = invoke(getMethod(findMethod.getDeclaringClass(), "getInstance"), null);
+        int connectionId = (Integer) getField(android.app.UiAutomation.class, "mConnectionId",
+                UiAutomatorBridge.getInstance().getUiAutomation());
+        // The cache is bypassed to make sure the node still exists
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? (AccessibilityNodeInfo) invoke(findMethod, client,
+                connectionId, windowId, sourceNodeId, true, 0, null)
+                : (AccessibilityNodeInfo) invoke(findMethod, client,
+                connectionId, windowId, sourceNodeId, true, 0);
+    }
+
     @Nullable
     public static Pair<Integer, Integer> getSelectionRange(@Nullable AccessibilityNodeInfo nodeInfo) {
         if (nodeInfo == null) {
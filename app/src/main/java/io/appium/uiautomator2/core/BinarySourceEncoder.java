@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.core;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.appium.uiautomator2.model.UiElement;
+import io.appium.uiautomator2.utils.Attribute;
+
+/**
+ * Encodes the page source into a compact binary representation.
+ *
+ * All integers are unsigned LEB128 varints and all strings are prefixed
+ * with the varint length of their UTF-8 bytes. The layout is:
+ * - the "U2SB" magic followed by a single byte format version
+ * - the table of attribute names: count, then strings
+ * - the table of class, package and resource-id values: count, then strings
+ * - the root node
+ *
+ * Each node consists of the attributes count, the attributes, the children count and
+ * the children nodes. Each attribute consists of the attribute name index, the value type
+ * and the value itself. See VALUE_* constants for the supported value types.
+ */
+public class BinarySourceEncoder {
+    public static final byte[] MAGIC = {'U', '2', 'S', 'B'};
+    public static final int FORMAT_VERSION = 1;
+    // The value is not stored, since it is defined by the type itself
+    public static final int VALUE_FALSE = 0;
+    public static final int VALUE_TRUE = 1;
+    // Zigzag encoded varint
+    public static final int VALUE_INTEGER = 2;
+    // The varint index in the table of values
+    public static final int VALUE_TABLE_STRING = 3;
+    // Length prefixed string
+    public static final int VALUE_STRING = 4;
+
+    private final Map<String, Integer> attributeNameIndices = new HashMap<>();
+    private final List<String> attributeNames = new ArrayList<>();
+    private final Map<String, Integer> tableStringIndices = new HashMap<>();
+    private final List<String> tableStrings = new ArrayList<>();
+    private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+
+    private BinarySourceEncoder() {}
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static int toIndex(Map<String, Integer> indices, List<String> values, String value) {
+        Integer index = indices.get(value);
+        if (index == null) {
+            index = values.size();
+            indices.put(value, index);
+            values.add(value);
+        }
+        return index;
+    }
+
+    private static boolean isTableAttribute(@Nullable Attribute attribute) {
+        return attribute == Attribute.CLASS || attribute == Attribute.PACKAGE
+                || attribute == Attribute.RESOURCE_ID;
+    }
+
+    private void writeAttribute(String name, @Nullable Attribute attribute, Object value) {
+        writeVarint(nodes, toIndex(attributeNameIndices, attributeNames, name));
+        if (value instanceof Boolean) {
+            writeVarint(nodes, (Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Integer) {
+            int intValue = (Integer) value;
+            writeVarint(nodes, VALUE_INTEGER);
+            writeVarint(nodes, (intValue << 1) ^ (intValue >> 31));
+        } else if (isTableAttribute(attribute)) {
+            writeVarint(nodes, VALUE_TABLE_STRING);
+            writeVarint(nodes, toIndex(tableStringIndices, tableStrings, String.valueOf(value)));
+        } else {
+            writeVarint(nodes, VALUE_STRING);
+            writeString(nodes, String.valueOf(value));
+        }
+    }
+
+    private void encodeNode(UiElement<?, ?> uiElement, @Nullable Map<String, ?> rootAttributes) {
+        List<Attribute> attributes = new ArrayList<>();
+        for (Attribute attr : uiElement.attributeKeys()) {
+            if (attr.isExposableToXml() && uiElement.get(attr) != null) {
+                attributes.add(attr);
+            }
+        }
+        writeVarint(nodes, attributes.size() + (rootAttributes == null ? 0 : rootAttributes.size()));
+        for (Attribute attr : attributes) {
+            //noinspection ConstantConditions
+            writeAttribute(attr.getName(), attr, uiElement.get(attr));
+        }
+        if (rootAttributes != null) {
+            for (Map.Entry<String, ?> entry : rootAttributes.entrySet()) {
+                writeAttribute(entry.getKey(), null, entry.getValue());
+            }
+        }
+        List<? extends UiElement<?, ?>> children = uiElement.getChildren();
+        writeVarint(nodes, children.size());
+        for (UiElement<?, ?> child : children) {
+            encodeNode(child, null);
+        }
+    }
+
+    /**
+     * @param root the root element of the page source
+     * @param rootAttributes additional attributes of the root element, like display info
+     * @return The encoded page source
+     */
+    public static byte[] encode(UiElement<?, ?> root, @Nullable Map<String, ?> rootAttributes) {
+        BinarySourceEncoder encoder = new BinarySourceEncoder();
+        encoder.encodeNode(root, rootAttributes);
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream(encoder.nodes.size() + 1024);
+        result.write(MAGIC, 0, MAGIC.length);
+        result.write(FORMAT_VERSION);
+        writeVarint(result, encoder.attributeNames.size());
+        for (String name : encoder.attributeNames) {
+            writeString(result, name);
+        }
+        writeVarint(result, encoder.tableStrings.size());
+        for (String value : encoder.tableStrings) {
+            writeString(result, value);
+        }
+        byte[] nodes = encoder.nodes.toByteArray();
+        result.write(nodes, 0, nodes.length);
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.core;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.appium.uiautomator2.model.UiElement;
+import io.appium.uiautomator2.utils.Attribute;
+
+/**
+ * Encodes the page source into a compact JSON tree.
+ *
+ * Each node is an object, whose keys are short attribute names. The mapping of short
+ * names to the original attribute names is returned in the "keys" property of the result
+ * and the tree itself is returned in the "root" one. Children are stored in the array under
+ * the {@link #CHILDREN_KEY} key, which is omitted for leaf nodes. Boolean and integer
+ * attribute values are stored as JSON booleans and numbers.
+ */
+public class JsonSourceEncoder {
+    public static final String CHILDREN_KEY = "n";
+    private static final Map<Attribute, String> SHORT_KEYS = new EnumMap<>(Attribute.class);
+    private static final Map<String, String> DISPLAY_INFO_SHORT_KEYS = new LinkedHashMap<>();
+
+    static {
+        SHORT_KEYS.put(Attribute.INDEX, "i");
+        SHORT_KEYS.put(Attribute.PACKAGE, "p");
+        SHORT_KEYS.put(Attribute.CLASS, "c");
+        SHORT_KEYS.put(Attribute.TEXT, "t");
+        SHORT_KEYS.put(Attribute.ORIGINAL_TEXT, "ot");
+        SHORT_KEYS.put(Attribute.CONTENT_DESC, "d");
+        SHORT_KEYS.put(Attribute.RESOURCE_ID, "r");
+        SHORT_KEYS.put(Attribute.CHECKABLE, "ck");
+        SHORT_KEYS.put(Attribute.CHECKED, "cd");
+        SHORT_KEYS.put(Attribute.CLICKABLE, "cl");
+        SHORT_KEYS.put(Attribute.ENABLED, "e");
+        SHORT_KEYS.put(Attribute.FOCUSABLE, "fb");
+        SHORT_KEYS.put(Attribute.FOCUSED, "fd");
+        SHORT_KEYS.put(Attribute.LONG_CLICKABLE, "lc");
+        SHORT_KEYS.put(Attribute.PASSWORD, "pw");
+        SHORT_KEYS.put(Attribute.SCROLLABLE, "s");
+        SHORT_KEYS.put(Attribute.SELECTION_START, "ss");
+        SHORT_KEYS.put(Attribute.SELECTION_END, "se");
+        SHORT_KEYS.put(Attribute.SELECTED, "sd");
+        SHORT_KEYS.put(Attribute.BOUNDS, "b");
+        SHORT_KEYS.put(Attribute.DISPLAYED, "v");
+        SHORT_KEYS.put(Attribute.HINT, "h");
+        SHORT_KEYS.put(Attribute.EXTRAS, "x");
+        DISPLAY_INFO_SHORT_KEYS.put("rotation", "ro");
+        DISPLAY_INFO_SHORT_KEYS.put("width", "w");
+        DISPLAY_INFO_SHORT_KEYS.put("height", "hg");
+    }
+
+    private JsonSourceEncoder() {}
+
+    private static String toShortKey(Attribute attribute) {
+        String shortKey = SHORT_KEYS.get(attribute);
+        return shortKey == null ? attribute.getName() : shortKey;
+    }
+
+    private static String toShortKey(String displayInfoName) {
+        String shortKey = DISPLAY_INFO_SHORT_KEYS.get(displayInfoName);
+        return shortKey == null ? displayInfoName : shortKey;
+    }
+
+    private static JsonPrimitive toJsonValue(Object value) {
+        if (value instanceof Boolean) {
+            return new JsonPrimitive((Boolean) value);
+        }
+        if (value instanceof Number) {
+            return new JsonPrimitive((Number) value);
+        }
+        return new JsonPrimitive(String.valueOf(value));
+    }
+
+    private static JsonObject encodeNode(UiElement<?, ?> uiElement,
+                                         @Nullable Map<String, ?> rootAttributes) {
+        JsonObject result = new JsonObject();
+        for (Attribute attr : uiElement.attributeKeys()) {
+            if (!attr.isExposableToXml()) {
+                continue;
+            }
+            Object value = uiElement.get(attr);
+            if (value != null) {
+                result.add(toShortKey(attr), toJsonValue(value));
+            }
+        }
+        if (rootAttributes != null) {
+            for (Map.Entry<String, ?> entry : rootAttributes.entrySet()) {
+                result.add(toShortKey(entry.getKey()), toJsonValue(entry.getValue()));
+            }
+        }
+        if (!uiElement.getChildren().isEmpty()) {
+            JsonArray children = new JsonArray();
+            for (UiElement<?, ?> child : uiElement.getChildren()) {
+                children.add(encodeNode(child, null));
+            }
+            result.add(CHILDREN_KEY, children);
+        }
+        return result;
+    }
+
+    /**
+     * @param root the root element of the page source
+     * @param rootAttributes additional attributes of the root element, like display info
+     * @return The encoded page source
+     */
+    public static JsonObject encode(UiElement<?, ?> root, @Nullable Map<String, ?> rootAttributes) {
+        JsonObject keys = new JsonObject();
+        for (Map.Entry<Attribute, String> entry : SHORT_KEYS.entrySet()) {
+            keys.addProperty(entry.getValue(), entry.getKey().getName());
+        }
+        for (Map.Entry<String, String> entry : DISPLAY_INFO_SHORT_KEYS.entrySet()) {
+            keys.addProperty(entry.getValue(), entry.getKey());
+        }
+        JsonObject result = new JsonObject();
+        result.add("keys", keys);
+        result.add("root", encodeNode(root, rootAttributes));
+        return result;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.core;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.appium.uiautomator2.model.NotificationListener;
+import io.appium.uiautomator2.model.UiElementSnapshot;
+import io.appium.uiautomator2.model.settings.AllowInvisibleElements;
+import io.appium.uiautomator2.model.settings.CompressedLayoutHierarchy;
+import io.appium.uiautomator2.model.settings.EnableMultiWindows;
+import io.appium.uiautomator2.model.settings.IncludeExtrasInPageSource;
+import io.appium.uiautomator2.model.settings.Settings;
+import io.appium.uiautomator2.model.settings.SimpleBoundsCalculation;
+import io.appium.uiautomator2.model.settings.SpeculativeSnapshots;
+import io.appium.uiautomator2.utils.Attribute;
+import io.appium.uiautomator2.utils.Logger;
+
+import static io.appium.uiautomator2.utils.AXWindowHelpers.getCachedWindowRoots;
+import static io.appium.uiautomator2.utils.AXWindowHelpers.invalidateAccessibilityCache;
+
+/**
+ * Builds the snapshot of the whole accessibility hierarchy in background after
+ * a command, which might change the UI, has been completed. The snapshot is only built
+ * after no accessibility events have been received for {@link #QUIET_PERIOD_MS},
+ * and it is only handed out while the UI generation and settings affecting the hierarchy
+ * stay the same, so the next lookup could skip the snapshot building if the client
+ * has been thinking long enough.
+ *
+ * See {@link SpeculativeSnapshots} setting.
+ */
+public class SpeculativeSnapshotter {
+    private static final long QUIET_PERIOD_MS = 300;
+    private static final long MAX_SETTLE_DURATION_MS = 5000;
+    private static SpeculativeSnapshotter INSTANCE = null;
+
+    private final UiChangeTracker tracker;
+    private final Executor executor;
+    // Each scheduling request gets its own id, so outdated requests could be skipped
+    private final AtomicLong lastRequestId = new AtomicLong();
+    private final Object snapshotGuard = new Object();
+    @Nullable
+    private Snapshot snapshot = null;
+
+    private static class Snapshot {
+        private final long generation;
+        private final UiElementSnapshot root;
+        private final Set<Attribute> attributes;
+        private final List<String> toastMessages;
+        private final List<Object> settings;
+
+        Snapshot(long generation, UiElementSnapshot root, Set<Attribute> attributes,
+                 List<String> toastMessages, List<Object> settings) {
+            this.generation = generation;
+            this.root = root;
+            this.attributes = attributes;
+            this.toastMessages = toastMessages;
+            this.settings = settings;
+        }
+    }
+
+    @VisibleForTesting
+    SpeculativeSnapshotter(UiChangeTracker tracker, Executor executor) {
+        this.tracker = tracker;
+        this.executor = executor;
+    }
+
+    public static synchronized SpeculativeSnapshotter getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new SpeculativeSnapshotter(UiChangeTracker.getInstance(),
+                    Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "Speculative snapshots");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }));
+        }
+        return INSTANCE;
+    }
+
+    @VisibleForTesting
+    boolean isEnabled() {
+        return Settings.get(SpeculativeSnapshots.class).getValue();
+    }
+
+    @VisibleForTesting
+    List<CharSequence> getToastMessages() {
+        return NotificationListener.getInstance().getToastMessage();
+    }
+
+    /**
+     * @return Values of settings, which affect the content of the hierarchy snapshot
+     */
+    @VisibleForTesting
+    List<Object> getSnapshotSettings() {
+        return Arrays.<Object>asList(
+                Settings.get(AllowInvisibleElements.class).getValue(),
+                Settings.get(EnableMultiWindows.class).getValue(),
+                Settings.get(CompressedLayoutHierarchy.class).getValue(),
+                Settings.get(SimpleBoundsCalculation.class).getValue()
+        );
+    }
+
+    private static List<String> toStrings(List<CharSequence> toastMessages) {
+        List<String> result = new ArrayList<>();
+        for (CharSequence message : toastMessages) {
+            result.add(String.valueOf(message));
+        }
+        return result;
+    }
+
+    private static Set<Attribute> getCollectableAttributes() {
+        Set<Attribute> result = new HashSet<>(Arrays.asList(UiElementSnapshot.SUPPORTED_ATTRIBUTES));
+        if (!Settings.get(IncludeExtrasInPageSource.class).getValue()) {
+            result.remove(Attribute.EXTRAS);
+        }
+        return result;
+    }
+
+    /**
+     * Schedules the snapshot to be built in background after the UI settles.
+     * Does nothing if the corresponding setting is disabled or accessibility events are not tracked.
+     */
+    public void schedule() {
+        if (!isEnabled() || !tracker.isTracking()) {
+            return;
+        }
+        final long requestId = lastRequestId.incrementAndGet();
+        discard();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prefetch(requestId);
+            }
+        });
+    }
+
+    private boolean isOutdated(long requestId) {
+        return requestId != lastRequestId.get() || !tracker.isTracking();
+    }
+
+    /**
+     * @return The UI generation after the UI has settled or a negative value
+     * if the request became outdated or the UI did not settle in time
+     */
+    private long awaitSettled(long requestId) {
+        final long deadline = SystemClock.uptimeMillis() + MAX_SETTLE_DURATION_MS;
+        long generation = tracker.getGeneration();
+        while (!isOutdated(requestId)) {
+            long quietDurationMs = SystemClock.uptimeMillis() - tracker.getLastChangeTimestamp();
+            if (quietDurationMs >= QUIET_PERIOD_MS) {
+                return generation;
+            }
+            long remainingMs = deadline - SystemClock.uptimeMillis();
+            if (remainingMs <= 0) {
+                Logger.info(String.format("The UI has not settled within %sms. " +
+                        "Skipping the speculative snapshot", MAX_SETTLE_DURATION_MS));
+                return -1;
+            }
+            generation = tracker.awaitChange(generation,
+                    Math.min(QUIET_PERIOD_MS - quietDurationMs, remainingMs));
+        }
+        return -1;
+    }
+
+    private void prefetch(long requestId) {
+        final long generation = awaitSettled(requestId);
+        if (generation < 0) {
+            return;
+        }
+        final long startTime = SystemClock.uptimeMillis();
+        try {
+            invalidateAccessibilityCache();
+            Set<Attribute> attributes = getCollectableAttributes();
+            List<Object> settings = getSnapshotSettings();
+            List<CharSequence> toastMessages = getToastMessages();
+            UiElementSnapshot root = UiElementSnapshot.take(getCachedWindowRoots(), toastMessages, attributes);
+            if (publish(requestId, generation, root, attributes, toastMessages, settings)) {
+                Logger.info(String.format("The speculative snapshot has been built in %sms",
+                        SystemClock.uptimeMillis() - startTime));
+            }
+        } catch (Exception e) {
+            Logger.warn("Cannot build the speculative snapshot", e);
+        }
+    }
+
+    /**
+     * Stores the built snapshot unless the request became outdated or the UI has changed
+     * while the snapshot was being built.
+     *
+     * @return true if the snapshot has been stored
+     */
+    @VisibleForTesting
+    boolean publish(long requestId, long generation, UiElementSnapshot root, Set<Attribute> attributes,
+                    List<CharSequence> toastMessages, List<Object> settings) {
+        synchronized (snapshotGuard) {
+            if (isOutdated(requestId) || tracker.getGeneration() != generation) {
+                return false;
+            }
+            snapshot = new Snapshot(generation, root, Collections.unmodifiableSet(new HashSet<>(attributes)),
+                    toStrings(toastMessages), settings);
+            return true;
+        }
+    }
+
+    @VisibleForTesting
+    long getLastRequestId() {
+        return lastRequestId.get();
+    }
+
+    /**
+     * Returns the speculative snapshot if neither the UI nor settings affecting the hierarchy
+     * have changed since it was built. Outdated snapshots are discarded.
+     * The caller should fetch the snapshot once per lookup and use it for the whole lookup,
+     * because the next call might already return null.
+     *
+     * @param neededAttributes attributes the snapshot must contain or an empty set
+     *                         if all of them are needed
+     * @return The snapshot of the whole hierarchy or null if there is no actual snapshot
+     */
+    @Nullable
+    public UiElementSnapshot getSnapshot(Set<Attribute> neededAttributes) {
+        synchronized (snapshotGuard) {
+            if (snapshot == null) {
+                return null;
+            }
+            if (!tracker.isTracking() || tracker.getGeneration() != snapshot.generation
+                    || !snapshot.settings.equals(getSnapshotSettings())
+                    || !snapshot.toastMessages.equals(toStrings(getToastMessages()))) {
+                Logger.info("Discarding the outdated speculative snapshot");
+                snapshot = null;
+                return null;
+            }
+            for (Attribute attribute : neededAttributes.isEmpty() ? getCollectableAttributes() : neededAttributes) {
+                if (UiElementSnapshot.isSnapshotAttribute(attribute) && !snapshot.attributes.contains(attribute)) {
+                    return null;
+                }
+            }
+            return snapshot.root;
+        }
+    }
+
+    public void discard() {
+        synchronized (snapshotGuard) {
+            snapshot = null;
+        }
+    }
+}
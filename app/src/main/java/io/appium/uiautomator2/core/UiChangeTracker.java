@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.core;
+
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+
+/**
+ * Keeps track of the UI generation, which is a counter that gets incremented
+ * every time an accessibility event arrives that might change the content
+ * of the accessibility hierarchy.
+ *
+ * Events are only delivered while the notification listener is active, so
+ * the tracked generation may only be trusted if {@link #isTracking()} returns true.
+ * Each change of the tracking state also increments the generation, so any value
+ * retrieved before events delivery has been paused is never considered as actual.
+ */
+public class UiChangeTracker {
+    private static final int CONTENT_CHANGE_EVENTS_MASK = AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+            | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+            | AccessibilityEvent.TYPE_WINDOWS_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SCROLLED
+            | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_TEXT_SELECTION_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SELECTED
+            | AccessibilityEvent.TYPE_VIEW_FOCUSED
+            | AccessibilityEvent.TYPE_VIEW_CLICKED
+            | AccessibilityEvent.TYPE_VIEW_LONG_CLICKED;
+    private static UiChangeTracker INSTANCE = null;
+
+    private final Object generationGuard = new Object();
+    private long generation = 0;
+    private long lastChangeTimestamp = SystemClock.uptimeMillis();
+    private volatile boolean isTracking = false;
+
+    UiChangeTracker() {}
+
+    public static synchronized UiChangeTracker getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new UiChangeTracker();
+        }
+        return INSTANCE;
+    }
+
+    public static boolean isContentChangeEvent(AccessibilityEvent event) {
+        return (event.getEventType() & CONTENT_CHANGE_EVENTS_MASK) != 0;
+    }
+
+    public void onAccessibilityEvent(AccessibilityEvent event) {
+        if (isContentChangeEvent(event)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Increments the current UI generation and wakes up all threads
+     * waiting for UI changes.
+     */
+    public void invalidate() {
+        synchronized (generationGuard) {
+            ++generation;
+            lastChangeTimestamp = SystemClock.uptimeMillis();
+            generationGuard.notifyAll();
+        }
+    }
+
+    public long getGeneration() {
+        synchronized (generationGuard) {
+            return generation;
+        }
+    }
+
+    /**
+     * @return The uptime timestamp in milliseconds of the most recent UI generation change
+     */
+    public long getLastChangeTimestamp() {
+        synchronized (generationGuard) {
+            return lastChangeTimestamp;
+        }
+    }
+
+    public boolean isTracking() {
+        return isTracking;
+    }
+
+    public void setTracking(boolean isTracking) {
+        if (this.isTracking == isTracking) {
+            return;
+        }
+        this.isTracking = isTracking;
+        invalidate();
+    }
+
+    /**
+     * Blocks the current thread until the UI generation differs from the given one
+     * or the timeout expires.
+     *
+     * @param sinceGeneration The generation value the caller has already observed
+     * @param timeoutMs The maximum amount of milliseconds to wait
+     * @return The actual UI generation value
+     */
+    public long awaitChange(long sinceGeneration, long timeoutMs) {
+        final long deadline = SystemClock.uptimeMillis() + timeoutMs;
+        synchronized (generationGuard) {
+            long remainingMs = timeoutMs;
+            while (generation == sinceGeneration && remainingMs > 0) {
+                try {
+                    generationGuard.wait(remainingMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remainingMs = deadline - SystemClock.uptimeMillis();
+            }
+            return generation;
+        }
+    }
+}
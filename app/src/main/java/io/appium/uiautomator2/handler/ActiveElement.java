@@ -20,6 +20,7 @@ import androidx.annotation.Nullable;
 import androidx.test.uiautomator.UiObjectNotFoundException;
 
 import io.appium.uiautomator2.common.exceptions.ElementNotFoundException;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
@@ -39,6 +40,9 @@ public class ActiveElement extends SafeRequestHandler {
 
     @Override
     protected AppiumResponse safeHandle(IHttpRequest request) throws ElementNotFoundException, UiObjectNotFoundException {
+        // The generation must be retrieved before the lookup in order to not miss UI changes
+        // happening before the found element is cached
+        final long generation = UiChangeTracker.getInstance().getGeneration();
         final AccessibleUiObject element = findFocused();
 
         if (element == null) {
@@ -46,7 +50,7 @@ public class ActiveElement extends SafeRequestHandler {
         }
 
         Session session = AppiumUIA2Driver.getInstance().getSessionOrThrow();
-        AndroidElement androidElement = session.getElementsCache().add(element, true);
+        AndroidElement androidElement = session.getElementsCache().add(element, true, generation);
 
         return new AppiumResponse(getSessionId(request), androidElement.toModel());
     }
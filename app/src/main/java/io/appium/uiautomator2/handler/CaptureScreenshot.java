@@ -16,12 +16,25 @@
 
 package io.appium.uiautomator2.handler;
 
+import java.util.concurrent.Callable;
+
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.utils.ScreenshotFormat;
 import io.appium.uiautomator2.utils.ScreenshotHelper;
+import io.appium.uiautomator2.utils.SingleFlight;
 
+/**
+ * Take a screenshot of the whole screen. Return it as a base64-encoded PNG image by default.
+ *
+ * The `format` query parameter allows to choose a cheaper encoding: `jpeg`, `webp` (lossless)
+ * or `raw` (see {@link ScreenshotFormat} for more details). The `quality` query parameter
+ * sets the quality of JPEG images.
+ */
 public class CaptureScreenshot extends SafeRequestHandler {
+    private static final SingleFlight<String, String> IN_FLIGHT_SCREENSHOTS = new SingleFlight<>();
 
     public CaptureScreenshot(String mappedUri) {
         super(mappedUri);
@@ -29,7 +42,24 @@ public class CaptureScreenshot extends SafeRequestHandler {
 
     @Override
     protected AppiumResponse safeHandle(IHttpRequest request) {
-        final String result = ScreenshotHelper.takeScreenshot();
+        final ScreenshotFormat format = ScreenshotFormat.fromName(getQueryParameter(request, "format"));
+        final int quality = ScreenshotFormat.toQuality(getQueryParameter(request, "quality"));
+        UiChangeTracker tracker = UiChangeTracker.getInstance();
+        if (!tracker.isTracking()) {
+            return new AppiumResponse(getSessionId(request),
+                    ScreenshotHelper.takeScreenshot(null, format, quality));
+        }
+        // Concurrent requests arriving while the screenshot of the same UI generation
+        // is being taken and encoded receive the same result
+        String key = String.format("%s|format=%s|quality=%s|generation=%s",
+                CaptureScreenshot.class.getSimpleName(), format.getName(),
+                format == ScreenshotFormat.JPEG ? quality : null, tracker.getGeneration());
+        final String result = IN_FLIGHT_SCREENSHOTS.execute(key, new Callable<String>() {
+            @Override
+            public String call() {
+                return ScreenshotHelper.takeScreenshot(null, format, quality);
+            }
+        });
         return new AppiumResponse(getSessionId(request), result);
     }
 }
@@ -21,6 +21,7 @@ import androidx.test.uiautomator.UiObjectNotFoundException;
 
 import io.appium.uiautomator2.common.exceptions.ElementNotFoundException;
 import io.appium.uiautomator2.common.exceptions.NotImplementedException;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
@@ -29,6 +30,7 @@ import io.appium.uiautomator2.model.AndroidElement;
 import io.appium.uiautomator2.model.AppiumUIA2Driver;
 import io.appium.uiautomator2.model.By;
 import io.appium.uiautomator2.model.ElementsCache;
+import io.appium.uiautomator2.model.UiElementSnapshot;
 import io.appium.uiautomator2.model.api.FindElementModel;
 import io.appium.uiautomator2.model.internal.CustomUiDevice;
 import io.appium.uiautomator2.model.internal.ElementsLookupStrategy;
@@ -37,6 +39,7 @@ import io.appium.uiautomator2.utils.Logger;
 import io.appium.uiautomator2.utils.NodeInfoList;
 
 import static io.appium.uiautomator2.utils.AXWindowHelpers.refreshAccessibilityCache;
+import static io.appium.uiautomator2.utils.ElementLocationHelpers.getSpeculativeSnapshot;
 import static io.appium.uiautomator2.utils.ElementLocationHelpers.getXPathNodeMatch;
 import static io.appium.uiautomator2.utils.ElementLocationHelpers.rewriteIdLocator;
 import static io.appium.uiautomator2.utils.ModelUtils.toModel;
@@ -63,19 +66,26 @@ public class FindElement extends SafeRequestHandler {
 
         ElementsCache elementsCache = AppiumUIA2Driver.getInstance().getSessionOrThrow().getElementsCache();
         final By by = ElementsLookupStrategy.ofName(method).toNativeSelector(selector);
+        // The generation must be retrieved before the lookup in order to not miss UI changes
+        // happening before the found elements are cached
+        final long generation = UiChangeTracker.getInstance().getGeneration();
         final AccessibleUiObject element = contextId == null
                 ? this.findElement(by)
                 : this.findElement(by, elementsCache.get(contextId));
         if (element == null) {
             throw new ElementNotFoundException();
         }
-        AndroidElement androidElement = elementsCache.add(element, true, by, contextId);
-        return new AppiumResponse(getSessionId(request), androidElement.toModel());
+        AndroidElement androidElement = elementsCache.add(element, true, by, contextId, generation);
+        return new AppiumResponse(getSessionId(request), androidElement.toModel(element.getInfo()));
     }
 
     @Nullable
     private AccessibleUiObject findElement(By by) throws UiObjectNotFoundException {
-        refreshAccessibilityCache();
+        // The snapshot is only fetched once, since it might be discarded at any moment
+        final UiElementSnapshot prefetchedSnapshot = getSpeculativeSnapshot(by);
+        if (prefetchedSnapshot == null) {
+            refreshAccessibilityCache();
+        }
 
         if (by instanceof By.ById) {
             String locator = rewriteIdLocator((By.ById) by);
@@ -85,7 +95,8 @@ public class FindElement extends SafeRequestHandler {
         } else if (by instanceof By.ByClass) {
             return CustomUiDevice.getInstance().findObject(androidx.test.uiautomator.By.clazz(by.getElementLocator()));
         } else if (by instanceof By.ByXPath) {
-            final NodeInfoList matchedNodes = getXPathNodeMatch(by.getElementLocator(), null, false);
+            final NodeInfoList matchedNodes = getXPathNodeMatch(by.getElementLocator(), null, false,
+                    prefetchedSnapshot);
             if (matchedNodes.isEmpty()) {
                 throw new ElementNotFoundException();
             }
@@ -23,7 +23,7 @@ import java.util.Collections;
 import java.util.List;
 
 import io.appium.uiautomator2.common.exceptions.ElementNotFoundException;
-import io.appium.uiautomator2.common.exceptions.NotImplementedException;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
@@ -32,16 +32,14 @@ import io.appium.uiautomator2.model.AndroidElement;
 import io.appium.uiautomator2.model.AppiumUIA2Driver;
 import io.appium.uiautomator2.model.By;
 import io.appium.uiautomator2.model.ElementsCache;
+import io.appium.uiautomator2.model.UiElementSnapshot;
 import io.appium.uiautomator2.model.api.FindElementModel;
-import io.appium.uiautomator2.model.internal.CustomUiDevice;
 import io.appium.uiautomator2.model.internal.ElementsLookupStrategy;
-import io.appium.uiautomator2.utils.ByUiAutomatorFinder;
 import io.appium.uiautomator2.utils.Logger;
-import io.appium.uiautomator2.utils.NodeInfoList;
 
 import static io.appium.uiautomator2.utils.AXWindowHelpers.refreshAccessibilityCache;
-import static io.appium.uiautomator2.utils.ElementLocationHelpers.getXPathNodeMatch;
-import static io.appium.uiautomator2.utils.ElementLocationHelpers.rewriteIdLocator;
+import static io.appium.uiautomator2.utils.ElementLocationHelpers.findElements;
+import static io.appium.uiautomator2.utils.ElementLocationHelpers.getSpeculativeSnapshot;
 import static io.appium.uiautomator2.utils.ModelUtils.toModel;
 import static io.appium.uiautomator2.utils.StringHelpers.isBlank;
 import static io.appium.uiautomator2.utils.StringHelpers.pluralize;
@@ -69,11 +67,21 @@ public class FindElements extends SafeRequestHandler {
 
         ElementsCache elementsCache = AppiumUIA2Driver.getInstance().getSessionOrThrow().getElementsCache();
         final By by = ElementsLookupStrategy.ofName(method).toNativeSelector(selector);
+        // The generation must be retrieved before the lookup in order to not miss UI changes
+        // happening before the found elements are cached
+        final long generation = UiChangeTracker.getInstance().getGeneration();
         List<AccessibleUiObject> elements;
         try {
-            elements = contextId == null
-                    ? this.findElements(by)
-                    : this.findElements(by, elementsCache.get(contextId));
+            if (contextId == null) {
+                // The snapshot is only fetched once, since it might be discarded at any moment
+                UiElementSnapshot prefetchedSnapshot = getSpeculativeSnapshot(by);
+                if (prefetchedSnapshot == null) {
+                    refreshAccessibilityCache();
+                }
+                elements = findElements(by, null, prefetchedSnapshot);
+            } else {
+                elements = findElements(by, elementsCache.get(contextId));
+            }
         } catch (ElementNotFoundException e) {
             Logger.warn(String.format("Got an exception while looking for multiple matches using " +
                     "selector %s", by));
@@ -91,57 +99,10 @@ public class FindElements extends SafeRequestHandler {
                 "Caching %s", pluralize(elements.size(), "found element")));
         List<Object> result = new ArrayList<>();
         for (AccessibleUiObject element : elements) {
-            AndroidElement androidElement = elementsCache.add(element, false, by, contextId);
-            result.add(androidElement.toModel());
+            AndroidElement androidElement = elementsCache.add(element, false, by, contextId, generation);
+            result.add(androidElement.toModel(element.getInfo()));
         }
         Logger.info(String.format("Cached %s", pluralize(result.size(), "element")));
         return new AppiumResponse(getSessionId(request), result);
     }
-
-    private List<AccessibleUiObject> findElements(By by) {
-        refreshAccessibilityCache();
-
-        if (by instanceof By.ById) {
-            String locator = rewriteIdLocator((By.ById) by);
-            return CustomUiDevice.getInstance().findObjects(androidx.test.uiautomator.By.res(locator));
-        } else if (by instanceof By.ByAccessibilityId) {
-            return CustomUiDevice.getInstance().findObjects(androidx.test.uiautomator.By.desc(by.getElementLocator()));
-        } else if (by instanceof By.ByClass) {
-            return CustomUiDevice.getInstance().findObjects(androidx.test.uiautomator.By.clazz(by.getElementLocator()));
-        } else if (by instanceof By.ByXPath) {
-            final NodeInfoList matchedNodes = getXPathNodeMatch(by.getElementLocator(), null, true);
-            return matchedNodes.isEmpty()
-                    ? Collections.<AccessibleUiObject>emptyList()
-                    : CustomUiDevice.getInstance().findObjects(matchedNodes);
-        } else if (by instanceof By.ByAndroidUiAutomator) {
-            return new ByUiAutomatorFinder().findMany((By.ByAndroidUiAutomator) by);
-        }
-
-        throw new NotImplementedException(
-                String.format("%s locator is not supported", by.getClass().getSimpleName())
-        );
-    }
-
-    private List<AccessibleUiObject> findElements(By by, AndroidElement context) {
-        if (by instanceof By.ById) {
-            String locator = rewriteIdLocator((By.ById) by);
-            return context.getChildren(androidx.test.uiautomator.By.res(locator), by);
-        } else if (by instanceof By.ByAccessibilityId) {
-            return context.getChildren(androidx.test.uiautomator.By.desc(by.getElementLocator()), by);
-        } else if (by instanceof By.ByClass) {
-            return context.getChildren(androidx.test.uiautomator.By.clazz(by.getElementLocator()), by);
-        } else if (by instanceof By.ByXPath) {
-            final NodeInfoList matchedNodes = getXPathNodeMatch(by.getElementLocator(), context, true);
-            return matchedNodes.isEmpty()
-                    ? Collections.<AccessibleUiObject>emptyList()
-                    : CustomUiDevice.getInstance().findObjects(matchedNodes);
-        } else if (by instanceof By.ByAndroidUiAutomator) {
-            return new ByUiAutomatorFinder().findMany((By.ByAndroidUiAutomator) by, context);
-        }
-
-        throw new NotImplementedException(
-                String.format("%s locator is not supported", by.getClass().getSimpleName())
-        );
-    }
-
 }
@@ -24,6 +24,7 @@ import androidx.test.uiautomator.UiSelector;
 import java.util.List;
 
 import io.appium.uiautomator2.common.exceptions.ElementNotFoundException;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
@@ -51,6 +52,9 @@ public class FirstVisibleView extends SafeRequestHandler {
         Session session = AppiumUIA2Driver.getInstance().getSessionOrThrow();
 
         AndroidElement element = session.getElementsCache().get(elementId);
+        // The generation must be retrieved before the lookup in order to not miss UI changes
+        // happening before the found element is cached
+        final long generation = UiChangeTracker.getInstance().getGeneration();
         AccessibleUiObject firstObject = null;
         if (element.getUiObject() instanceof UiObject) {
             UiObject uiObject = (UiObject) element.getUiObject();
@@ -81,7 +85,7 @@ public class FirstVisibleView extends SafeRequestHandler {
             throw new ElementNotFoundException();
         }
 
-        AndroidElement androidElement = session.getElementsCache().add(firstObject, true);
+        AndroidElement androidElement = session.getElementsCache().add(firstObject, true, generation);
         return new AppiumResponse(getSessionId(request), androidElement.toModel());
     }
 }
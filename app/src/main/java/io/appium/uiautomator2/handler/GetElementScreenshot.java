@@ -10,6 +10,7 @@ import io.appium.uiautomator2.http.IHttpRequest;
 import io.appium.uiautomator2.model.AndroidElement;
 import io.appium.uiautomator2.model.AppiumUIA2Driver;
 import io.appium.uiautomator2.model.Session;
+import io.appium.uiautomator2.utils.ScreenshotFormat;
 import io.appium.uiautomator2.utils.ScreenshotHelper;
 
 public class GetElementScreenshot extends SafeRequestHandler {
@@ -24,7 +25,9 @@ public class GetElementScreenshot extends SafeRequestHandler {
         Session session = AppiumUIA2Driver.getInstance().getSessionOrThrow();
         AndroidElement element = session.getElementsCache().get(id);
         final Rect elementRect = element.getBounds();
-        final String result = ScreenshotHelper.takeScreenshot(elementRect);
+        final ScreenshotFormat format = ScreenshotFormat.fromName(getQueryParameter(request, "format"));
+        final int quality = ScreenshotFormat.toQuality(getQueryParameter(request, "quality"));
+        final String result = ScreenshotHelper.takeScreenshot(elementRect, format, quality);
         return new AppiumResponse(getSessionId(request), result);
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.handler;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import androidx.annotation.Nullable;
+import androidx.test.uiautomator.UiObjectNotFoundException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.appium.uiautomator2.common.exceptions.StaleElementReferenceException;
+import io.appium.uiautomator2.core.AxNodeInfoHelper;
+import io.appium.uiautomator2.handler.request.SafeRequestHandler;
+import io.appium.uiautomator2.http.AppiumResponse;
+import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.model.AndroidElement;
+import io.appium.uiautomator2.model.AppiumUIA2Driver;
+import io.appium.uiautomator2.model.ElementsCache;
+import io.appium.uiautomator2.model.UiElementSnapshot;
+import io.appium.uiautomator2.model.api.ElementRectModel;
+import io.appium.uiautomator2.model.api.ElementsPropertiesModel;
+import io.appium.uiautomator2.utils.Attribute;
+
+import static io.appium.uiautomator2.core.AxNodeInfoExtractor.toAxNodeInfo;
+import static io.appium.uiautomator2.utils.ModelUtils.toModel;
+
+/**
+ * Retrieves the given properties of multiple elements in a single request.
+ *
+ * The response is a matrix, where each row contains values of the requested properties
+ * of the corresponding element in the same order the properties have been requested.
+ * Along with regular element attribute names the special `rect` property is supported,
+ * which returns the same value as the element rect endpoint.
+ *
+ * The accessibility node of each element is only fetched once and most of
+ * the attribute values are then read from its snapshot instead of
+ * querying the element for each separate attribute.
+ */
+public class GetElementsProperties extends SafeRequestHandler {
+    private static final String RECT_PROPERTY = "rect";
+
+    public GetElementsProperties(String mappedUri) {
+        super(mappedUri);
+    }
+
+    @Nullable
+    private static UiElementSnapshot takeSnapshot(AndroidElement element, Set<Attribute> attributes) {
+        if (attributes.isEmpty()) {
+            return null;
+        }
+
+        try {
+            AccessibilityNodeInfo node = toAxNodeInfo(element.getUiObject());
+            return UiElementSnapshot.takeShallow(node, attributes);
+        } catch (StaleElementReferenceException e) {
+            // Some elements, like toasts, do not have a node that could be refreshed.
+            // Their attributes are then retrieved from the element itself
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Object getProperty(AndroidElement element, @Nullable UiElementSnapshot snapshot,
+                                      String name) throws UiObjectNotFoundException {
+        if (RECT_PROPERTY.equalsIgnoreCase(name)) {
+            return new ElementRectModel(snapshot == null
+                    ? element.getBounds()
+                    : AxNodeInfoHelper.getBounds(snapshot.getNode()));
+        }
+
+        Attribute attribute = Attribute.fromString(name);
+        if (snapshot == null || !UiElementSnapshot.isSnapshotAttribute(attribute)) {
+            return element.getAttribute(name);
+        }
+        Object value = snapshot.get(attribute);
+        return value == null ? null : String.valueOf(value);
+    }
+
+    @Override
+    protected AppiumResponse safeHandle(IHttpRequest request) throws UiObjectNotFoundException {
+        ElementsPropertiesModel model = toModel(request, ElementsPropertiesModel.class);
+        ElementsCache elementsCache = AppiumUIA2Driver.getInstance().getSessionOrThrow().getElementsCache();
+
+        Set<Attribute> snapshotAttributes = new HashSet<>();
+        for (String name : model.properties) {
+            Attribute attribute = Attribute.fromString(name);
+            if (UiElementSnapshot.isSnapshotAttribute(attribute)) {
+                snapshotAttributes.add(attribute);
+            }
+            if (RECT_PROPERTY.equalsIgnoreCase(name)) {
+                // Make sure the node is fetched, so the rect could be calculated from it
+                snapshotAttributes.add(Attribute.BOUNDS);
+            }
+        }
+
+        List<List<Object>> result = new ArrayList<>(model.elements.size());
+        for (String id : model.elements) {
+            AndroidElement element = elementsCache.get(id);
+            UiElementSnapshot snapshot = takeSnapshot(element, snapshotAttributes);
+            List<Object> row = new ArrayList<>(model.properties.size());
+            for (String name : model.properties) {
+                row.add(getProperty(element, snapshot, name));
+            }
+            result.add(row);
+        }
+        return new AppiumResponse(getSessionId(request), result);
+    }
+}
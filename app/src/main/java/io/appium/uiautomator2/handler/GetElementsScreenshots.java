@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.handler;
+
+import android.graphics.Rect;
+
+import androidx.test.uiautomator.UiObjectNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.appium.uiautomator2.handler.request.SafeRequestHandler;
+import io.appium.uiautomator2.http.AppiumResponse;
+import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.model.AppiumUIA2Driver;
+import io.appium.uiautomator2.model.ElementsCache;
+import io.appium.uiautomator2.model.api.ElementsScreenshotsModel;
+import io.appium.uiautomator2.utils.ScreenshotFormat;
+import io.appium.uiautomator2.utils.ScreenshotHelper;
+
+import static io.appium.uiautomator2.utils.ModelUtils.toModel;
+
+/**
+ * Takes screenshots of multiple elements in a single request.
+ *
+ * The screen is only captured once. The response is the list of base64-encoded
+ * element screenshots in the same order the elements have been requested.
+ */
+public class GetElementsScreenshots extends SafeRequestHandler {
+
+    public GetElementsScreenshots(String mappedUri) {
+        super(mappedUri);
+    }
+
+    @Override
+    protected AppiumResponse safeHandle(IHttpRequest request) throws UiObjectNotFoundException {
+        ElementsScreenshotsModel model = toModel(request, ElementsScreenshotsModel.class);
+        final ScreenshotFormat format = ScreenshotFormat.fromName(model.format);
+        final int quality = ScreenshotFormat.toQuality(
+                model.quality == null ? null : String.valueOf(model.quality));
+        ElementsCache elementsCache = AppiumUIA2Driver.getInstance().getSessionOrThrow().getElementsCache();
+
+        List<Rect> cropAreas = new ArrayList<>(model.elements.size());
+        for (String id : model.elements) {
+            cropAreas.add(elementsCache.get(id).getBounds());
+        }
+        List<String> result = ScreenshotHelper.takeScreenshots(cropAreas, format, quality);
+        return new AppiumResponse(getSessionId(request), result);
+    }
+}
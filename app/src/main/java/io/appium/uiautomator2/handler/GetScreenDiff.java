@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.handler;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+import io.appium.uiautomator2.handler.request.SafeRequestHandler;
+import io.appium.uiautomator2.http.AppiumResponse;
+import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.model.AppiumUIA2Driver;
+import io.appium.uiautomator2.model.Session;
+import io.appium.uiautomator2.model.api.ScreenDiffModel;
+import io.appium.uiautomator2.model.api.ScreenDiffResultModel;
+import io.appium.uiautomator2.utils.ScreenFingerprint;
+import io.appium.uiautomator2.utils.ScreenshotHelper;
+
+import static io.appium.uiautomator2.utils.ModelUtils.toModel;
+
+/**
+ * Compares the current screen with the baseline frame stored by {@link SetScreenBaseline}
+ * and returns the difference metrics along with bounding boxes of the changed areas.
+ */
+public class GetScreenDiff extends SafeRequestHandler {
+
+    public GetScreenDiff(String mappedUri) {
+        super(mappedUri);
+    }
+
+    @Override
+    protected AppiumResponse safeHandle(IHttpRequest request) {
+        ScreenDiffModel model = toModel(request, ScreenDiffModel.class);
+        Session session = AppiumUIA2Driver.getInstance().getSessionOrThrow();
+        ScreenFingerprint baseline = session.getScreenBaseline();
+        if (baseline == null) {
+            throw new InvalidArgumentException(
+                    "No screen baseline has been stored yet. Call the screen/baseline endpoint first");
+        }
+        ScreenFingerprint frame = ScreenshotHelper.takeScreenFingerprint();
+        ScreenDiffResultModel result = new ScreenDiffResultModel(frame.diff(baseline));
+        if (Boolean.TRUE.equals(model.updateBaseline)) {
+            session.setScreenBaseline(frame);
+        }
+        return new AppiumResponse(getSessionId(request), result);
+    }
+}
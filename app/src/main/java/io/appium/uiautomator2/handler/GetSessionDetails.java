@@ -34,7 +34,8 @@ public class GetSessionDetails extends SafeRequestHandler {
         Session session = AppiumUIA2Driver.getInstance().getSession();
         AccessibilityScrollData scrollData = session == null ? null : session.getLastScrollData();
         return new AppiumResponse(getSessionId(request), new SessionDetailsModel(
-                scrollData == null ? null : scrollData.getAsMap()
+                scrollData == null ? null : scrollData.getAsMap(),
+                session == null ? null : session.getElementsCache().getStats()
         ));
     }
 }
\ No newline at end of file
@@ -19,7 +19,9 @@ package io.appium.uiautomator2.handler;
 import androidx.test.uiautomator.UiObjectNotFoundException;
 
 import io.appium.uiautomator2.common.exceptions.InvalidElementStateException;
+import io.appium.uiautomator2.handler.request.LargeBodyCommandHandler;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
+import io.appium.uiautomator2.handler.request.UiChangingCommandHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
 import io.appium.uiautomator2.model.AndroidElement;
@@ -37,7 +39,8 @@ import static io.appium.uiautomator2.utils.ModelUtils.toModel;
 /**
  * Send keys to a given element.
  */
-public class SendKeysToElement extends SafeRequestHandler {
+public class SendKeysToElement extends SafeRequestHandler
+        implements UiChangingCommandHandler, LargeBodyCommandHandler {
 
     public SendKeysToElement(String mappedUri) {
         super(mappedUri);
@@ -22,6 +22,7 @@ import android.util.Base64;
 import java.nio.charset.StandardCharsets;
 
 import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+import io.appium.uiautomator2.handler.request.LargeBodyCommandHandler;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
@@ -32,7 +33,7 @@ import io.appium.uiautomator2.utils.ClipboardHelper.ClipDataType;
 import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
 import static io.appium.uiautomator2.utils.ModelUtils.toModel;
 
-public class SetClipboard extends SafeRequestHandler {
+public class SetClipboard extends SafeRequestHandler implements LargeBodyCommandHandler {
     private final Instrumentation mInstrumentation = getInstrumentation();
 
     public SetClipboard(String mappedUri) {
@@ -16,24 +16,101 @@
 
 package io.appium.uiautomator2.handler;
 
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
 import io.appium.uiautomator2.core.AccessibilityNodeInfoDumper;
+import io.appium.uiautomator2.core.BinarySourceEncoder;
+import io.appium.uiautomator2.core.JsonSourceEncoder;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.http.RawAppiumResponse;
+import io.appium.uiautomator2.model.AndroidElement;
+import io.appium.uiautomator2.model.AppiumUIA2Driver;
+import io.appium.uiautomator2.model.UiElementSnapshot;
 import io.appium.uiautomator2.utils.Attribute;
+import io.appium.uiautomator2.utils.SingleFlight;
 
+import static io.appium.uiautomator2.core.AxNodeInfoExtractor.toAxNodeInfo;
 import static io.appium.uiautomator2.utils.AXWindowHelpers.refreshAccessibilityCache;
+import static io.appium.uiautomator2.utils.StringHelpers.isBlank;
 
 /**
- * Get page source. Return as string of XML doc
+ * Get page source. Return as string of XML doc by default.
+ *
+ * The compact JSON tree or the binary representation of the page source
+ * could be requested by providing the corresponding value to the `format` query parameter
+ * or by including the corresponding media type into the Accept header.
+ * See {@link JsonSourceEncoder} and {@link BinarySourceEncoder} for more details.
+ *
+ * The following query parameters allow to only retrieve the needed part of the page source.
+ * They are applied while the hierarchy is being collected, so the skipped data is never fetched:
+ * - attributes: comma-separated list of attribute names to include. The class attribute
+ * is always included.
+ * - maxDepth: the maximum depth of the returned tree, where the root has zero depth
+ * - visibleOnly: if set to true then invisible elements are skipped with their descendants
+ * regardless of the allowInvisibleElements setting
+ * - package: only include elements, which belong to the given package
+ * - root: the identifier of the element, whose subtree should be returned
+ *
+ * Concurrent identical requests for the same UI generation share a single dump.
  */
 public class Source extends SafeRequestHandler {
+    public static final String JSON_MEDIA_TYPE = "application/vnd.appium.source+json";
+    public static final String BINARY_MEDIA_TYPE = "application/vnd.appium.source+binary";
     private static final Set<Attribute> includedAttributes = new HashSet<>();
+    private static final SingleFlight<String, Object> IN_FLIGHT_DUMPS = new SingleFlight<>();
+
+    private enum Format {
+        XML("xml", null),
+        JSON("json", JSON_MEDIA_TYPE),
+        BINARY("binary", BINARY_MEDIA_TYPE);
+
+        private final String name;
+        @Nullable
+        private final String mediaType;
+
+        Format(String name, @Nullable String mediaType) {
+            this.name = name;
+            this.mediaType = mediaType;
+        }
+
+        static Format fromRequest(IHttpRequest request) {
+            String formatName = getQueryParameter(request, "format");
+            if (!isBlank(formatName)) {
+                for (Format format : values()) {
+                    if (format.name.equalsIgnoreCase(formatName)) {
+                        return format;
+                    }
+                }
+                throw new InvalidArgumentException(String.format(
+                        "Unknown page source format '%s'. Only the following formats are supported: " +
+                                "xml, json, binary", formatName));
+            }
+            String accept = request.header("Accept");
+            if (accept != null) {
+                for (Format format : values()) {
+                    if (format.mediaType != null && accept.contains(format.mediaType)) {
+                        return format;
+                    }
+                }
+            }
+            return XML;
+        }
+    }
 
-    private static synchronized Set<Attribute> getXmlSourceAttributes() {
+    static synchronized Set<Attribute> getXmlSourceAttributes() {
         if (includedAttributes.isEmpty()) {
             for (Attribute attribute : Attribute.values()) {
                 if (attribute.isExposableToXml()) {
@@ -48,10 +125,107 @@ public class Source extends SafeRequestHandler {
         super(mappedUri);
     }
 
+    private static Set<Attribute> toIncludedAttributes(@Nullable String attributeNames) {
+        if (isBlank(attributeNames)) {
+            return getXmlSourceAttributes();
+        }
+        Set<Attribute> result = new HashSet<>();
+        for (String attributeName : attributeNames.split(",")) {
+            if (isBlank(attributeName)) {
+                continue;
+            }
+            Attribute attribute = Attribute.fromString(attributeName.trim());
+            if (attribute == null || !attribute.isExposableToXml()) {
+                throw new InvalidArgumentException(String.format(
+                        "The attribute '%s' is not present in the page source", attributeName.trim()));
+            }
+            result.add(attribute);
+        }
+        return result;
+    }
+
+    private static UiElementSnapshot.Filter toFilter(IHttpRequest request) {
+        String maxDepthValue = getQueryParameter(request, "maxDepth");
+        int maxDepth = UiElementSnapshot.DEFAULT_MAX_DEPTH;
+        if (!isBlank(maxDepthValue)) {
+            try {
+                maxDepth = Integer.parseInt(maxDepthValue.trim());
+            } catch (NumberFormatException e) {
+                maxDepth = -1;
+            }
+            if (maxDepth < 0) {
+                throw new InvalidArgumentException(String.format(
+                        "The maxDepth value must be a non-negative integer. '%s' is given instead",
+                        maxDepthValue));
+            }
+        }
+        boolean isVisibleOnly = Boolean.parseBoolean(getQueryParameter(request, "visibleOnly"));
+        String packageName = getQueryParameter(request, "package");
+        return new UiElementSnapshot.Filter(maxDepth, isVisibleOnly,
+                isBlank(packageName) ? null : packageName);
+    }
+
+    @Nullable
+    private static AccessibilityNodeInfo toRootNode(@Nullable String elementId) {
+        if (isBlank(elementId)) {
+            return null;
+        }
+        AndroidElement element = AppiumUIA2Driver.getInstance().getSessionOrThrow()
+                .getElementsCache().get(elementId);
+        return toAxNodeInfo(element.getUiObject());
+    }
+
+    private static Object dump(Format format, Set<Attribute> includedAttributes,
+                               UiElementSnapshot.Filter filter, @Nullable String rootId) {
+        refreshAccessibilityCache();
+        AccessibilityNodeInfo root = toRootNode(rootId);
+        AccessibilityNodeInfoDumper dumper = new AccessibilityNodeInfoDumper(root, includedAttributes, filter);
+        switch (format) {
+            case JSON:
+                return dumper.dumpToJson();
+            case BINARY:
+                return dumper.dumpToBinary();
+            default:
+                return dumper.dumpToXml();
+        }
+    }
+
+    private static String toSingleFlightKey(Format format, Set<Attribute> includedAttributes,
+                                            UiElementSnapshot.Filter filter, @Nullable String rootId,
+                                            long generation) {
+        List<String> attributeNames = new ArrayList<>();
+        for (Attribute attribute : includedAttributes) {
+            attributeNames.add(attribute.getName());
+        }
+        Collections.sort(attributeNames);
+        return String.format("%s|format=%s|attributes=%s|%s|root=%s|generation=%s",
+                Source.class.getSimpleName(), format.name, attributeNames, filter,
+                isBlank(rootId) ? null : rootId, generation);
+    }
+
     @Override
     protected AppiumResponse safeHandle(IHttpRequest request) {
-        refreshAccessibilityCache();
-        String xmlSource = new AccessibilityNodeInfoDumper(null, getXmlSourceAttributes()).dumpToXml();
-        return new AppiumResponse(getSessionId(request), xmlSource);
+        final Format format = Format.fromRequest(request);
+        final Set<Attribute> includedAttributes = toIncludedAttributes(getQueryParameter(request, "attributes"));
+        final UiElementSnapshot.Filter filter = toFilter(request);
+        final String rootId = getQueryParameter(request, "root");
+        final Object result;
+        UiChangeTracker tracker = UiChangeTracker.getInstance();
+        if (tracker.isTracking()) {
+            // Identical requests, which arrive while the same UI generation is being dumped,
+            // would produce the same result, so they just wait for it
+            String key = toSingleFlightKey(format, includedAttributes, filter, rootId, tracker.getGeneration());
+            result = IN_FLIGHT_DUMPS.execute(key, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return dump(format, includedAttributes, filter, rootId);
+                }
+            });
+        } else {
+            result = dump(format, includedAttributes, filter, rootId);
+        }
+        return format == Format.BINARY
+                ? new RawAppiumResponse(getSessionId(request), (byte[]) result, BINARY_MEDIA_TYPE)
+                : new AppiumResponse(getSessionId(request), result);
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.handler;
+
+import android.os.SystemClock;
+
+import io.appium.uiautomator2.core.AccessibilityNodeInfoDumper;
+import io.appium.uiautomator2.handler.request.SafeRequestHandler;
+import io.appium.uiautomator2.http.AppiumResponse;
+import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.model.AppiumUIA2Driver;
+import io.appium.uiautomator2.model.PageSourceHistory;
+import io.appium.uiautomator2.model.api.SourceDiffModel;
+import io.appium.uiautomator2.model.api.SourceDiffResultModel;
+import io.appium.uiautomator2.utils.Logger;
+import io.appium.uiautomator2.utils.SourceNode;
+import io.appium.uiautomator2.utils.SourceTreeDiff;
+
+import static io.appium.uiautomator2.utils.AXWindowHelpers.refreshAccessibilityCache;
+import static io.appium.uiautomator2.utils.ModelUtils.toModel;
+import static io.appium.uiautomator2.utils.StringHelpers.isBlank;
+
+/**
+ * Get the structural difference between the actual page source and the page source
+ * with the given version token.
+ *
+ * Every returned result contains the version token of the actual page source, which
+ * could be passed to the next call. The full page source is returned instead of the difference
+ * if no version has been provided, the provided version is no longer retained in the history
+ * or if the difference is not smaller than the page source itself.
+ */
+public class SourceDiff extends SafeRequestHandler {
+
+    public SourceDiff(String mappedUri) {
+        super(mappedUri);
+    }
+
+    @Override
+    protected AppiumResponse safeHandle(IHttpRequest request) {
+        SourceDiffModel model = toModel(request, SourceDiffModel.class);
+        PageSourceHistory history = AppiumUIA2Driver.getInstance().getSessionOrThrow().getPageSourceHistory();
+
+        refreshAccessibilityCache();
+        // The tree is built directly from the hierarchy snapshot. XML is only
+        // serialized from the same snapshot if the full page source must be returned
+        AccessibilityNodeInfoDumper dumper = new AccessibilityNodeInfoDumper(null, Source.getXmlSourceAttributes());
+        final long startTime = SystemClock.uptimeMillis();
+        SourceNode actual = dumper.dumpToSourceTree();
+        SourceNode previous = isBlank(model.since) ? null : history.get(model.since);
+        if (previous == null) {
+            if (!isBlank(model.since)) {
+                Logger.info(String.format("The page source version '%s' is not present in the history. " +
+                        "Returning the full page source", model.since));
+            }
+            return new AppiumResponse(getSessionId(request),
+                    SourceDiffResultModel.full(history.add(actual), dumper.dumpToXml()));
+        }
+
+        SourceTreeDiff diff = SourceTreeDiff.calculate(previous, actual);
+        if (diff != null && diff.isEmpty()) {
+            return new AppiumResponse(getSessionId(request), SourceDiffResultModel.unchanged(model.since));
+        }
+        String version = history.add(actual);
+        // The diff is pointless if it describes most of the tree
+        if (diff == null || diff.getChangesSize() * 2 >= actual.getSubtreeSize()) {
+            return new AppiumResponse(getSessionId(request), SourceDiffResultModel.full(version, dumper.dumpToXml()));
+        }
+        Logger.info(String.format("Calculated the page source difference (%s) in %sms",
+                diff, SystemClock.uptimeMillis() - startTime));
+        return new AppiumResponse(getSessionId(request), SourceDiffResultModel.changed(version, diff));
+    }
+}
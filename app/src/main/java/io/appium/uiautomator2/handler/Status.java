@@ -19,8 +19,10 @@ package io.appium.uiautomator2.handler;
 import io.appium.uiautomator2.handler.request.NoSessionCommandHandler;
 import io.appium.uiautomator2.handler.request.SafeRequestHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
+import io.appium.uiautomator2.http.HttpServer;
 import io.appium.uiautomator2.http.IHttpRequest;
 import io.appium.uiautomator2.model.api.StatusModel;
+import io.appium.uiautomator2.server.ServerInstrumentation;
 
 import static io.appium.uiautomator2.model.Session.NO_ID;
 
@@ -33,7 +35,9 @@ public class Status extends SafeRequestHandler implements NoSessionCommandHandle
     @Override
     protected AppiumResponse safeHandle(IHttpRequest request) {
         return new AppiumResponse(NO_ID, new StatusModel(true,
-                "UiAutomator2 Server is ready to accept commands"
+                "UiAutomator2 Server is ready to accept commands",
+                ServerInstrumentation.getInstance().getMjpegServerStats(),
+                HttpServer.getAllocatorStats()
         ));
     }
 }
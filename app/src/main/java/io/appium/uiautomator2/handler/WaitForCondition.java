@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.handler;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+import androidx.test.uiautomator.UiObjectNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import io.appium.uiautomator2.common.exceptions.ElementNotFoundException;
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+import io.appium.uiautomator2.common.exceptions.StaleElementReferenceException;
+import io.appium.uiautomator2.common.exceptions.TimeoutException;
+import io.appium.uiautomator2.core.AxNodeInfoHelper;
+import io.appium.uiautomator2.core.UiChangeTracker;
+import io.appium.uiautomator2.handler.request.SafeRequestHandler;
+import io.appium.uiautomator2.http.AppiumResponse;
+import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.model.AccessibleUiObject;
+import io.appium.uiautomator2.model.AndroidElement;
+import io.appium.uiautomator2.model.AppiumUIA2Driver;
+import io.appium.uiautomator2.model.By;
+import io.appium.uiautomator2.model.ElementsCache;
+import io.appium.uiautomator2.model.api.WaitModel;
+import io.appium.uiautomator2.model.internal.ElementsLookupStrategy;
+import io.appium.uiautomator2.model.settings.Settings;
+import io.appium.uiautomator2.model.settings.WaitForSelectorTimeout;
+import io.appium.uiautomator2.utils.Logger;
+
+import static io.appium.uiautomator2.utils.AXWindowHelpers.invalidateAccessibilityCache;
+import static io.appium.uiautomator2.utils.AXWindowHelpers.refreshAccessibilityCache;
+import static io.appium.uiautomator2.utils.ElementLocationHelpers.findElements;
+import static io.appium.uiautomator2.utils.ModelUtils.toModel;
+import static io.appium.uiautomator2.utils.StringHelpers.isBlank;
+import static io.appium.uiautomator2.utils.StringHelpers.pluralize;
+
+/**
+ * Waits on the server side until the given condition for the elements matched by
+ * the given locator becomes true.
+ *
+ * The condition is only re-evaluated after an accessibility event notifying about
+ * a possible UI change has been received or after the poll interval has expired,
+ * whatever comes first. The poll interval is required as a fallback, because
+ * not all UI changes are necessarily reported by accessibility events.
+ */
+public class WaitForCondition extends SafeRequestHandler {
+    private static final long DEFAULT_POLL_INTERVAL_MS = 500;
+    private static final long MIN_POLL_INTERVAL_MS = 50;
+
+    private enum Condition {
+        PRESENT("present"),
+        ABSENT("absent"),
+        VISIBLE("visible"),
+        TEXT_EQUALS("textEquals"),
+        COUNT_AT_LEAST("countAtLeast");
+
+        private final String name;
+
+        Condition(String name) {
+            this.name = name;
+        }
+
+        static Condition ofName(@Nullable String name) {
+            if (isBlank(name)) {
+                return PRESENT;
+            }
+            for (Condition condition : values()) {
+                if (condition.name.equalsIgnoreCase(name)) {
+                    return condition;
+                }
+            }
+            throw new InvalidArgumentException(String.format(
+                    "Unknown wait condition '%s'. Only the following conditions are supported: " +
+                            "present, absent, visible, textEquals, countAtLeast", name));
+        }
+    }
+
+    public WaitForCondition(String mappedUri) {
+        super(mappedUri);
+    }
+
+    @Override
+    protected AppiumResponse safeHandle(IHttpRequest request) throws UiObjectNotFoundException {
+        WaitModel model = toModel(request, WaitModel.class);
+        final Condition condition = Condition.ofName(model.condition);
+        if (condition == Condition.TEXT_EQUALS && model.text == null) {
+            throw new InvalidArgumentException(
+                    "The 'text' argument is mandatory for the textEquals wait condition");
+        }
+        if (condition == Condition.COUNT_AT_LEAST && (model.count == null || model.count < 0)) {
+            throw new InvalidArgumentException(
+                    "The 'count' argument must be a non-negative integer for the countAtLeast wait condition");
+        }
+        final long timeoutMs = model.timeout == null
+                ? Settings.get(WaitForSelectorTimeout.class).getValue()
+                : Math.max(0, model.timeout);
+        final long pollIntervalMs = model.pollInterval == null
+                ? DEFAULT_POLL_INTERVAL_MS
+                : Math.max(MIN_POLL_INTERVAL_MS, model.pollInterval);
+        final String contextId = isBlank(model.context) ? null : model.context;
+
+        ElementsCache elementsCache = AppiumUIA2Driver.getInstance().getSessionOrThrow().getElementsCache();
+        final By by = ElementsLookupStrategy.ofName(model.strategy).toNativeSelector(model.selector);
+        final AndroidElement context = contextId == null ? null : elementsCache.get(contextId);
+        Logger.info(String.format("Waiting up to %sms for '%s' condition of elements matching %s",
+                timeoutMs, condition.name, by));
+
+        final UiChangeTracker tracker = UiChangeTracker.getInstance();
+        final long startedMs = SystemClock.uptimeMillis();
+        int evaluationsCount = 0;
+        refreshAccessibilityCache();
+        while (true) {
+            final long generation = tracker.getGeneration();
+            List<AccessibleUiObject> matches = evaluate(condition, by, context, model);
+            ++evaluationsCount;
+            if (matches != null) {
+                Logger.info(String.format("The '%s' condition has been met after %sms and %s",
+                        condition.name, SystemClock.uptimeMillis() - startedMs,
+                        pluralize(evaluationsCount, "evaluation")));
+                List<Object> result = new ArrayList<>();
+                for (AccessibleUiObject match : matches) {
+                    result.add(elementsCache.add(match, false, by, contextId, generation).toModel(match.getInfo()));
+                }
+                return new AppiumResponse(getSessionId(request), result);
+            }
+
+            final long remainingMs = timeoutMs - (SystemClock.uptimeMillis() - startedMs);
+            if (remainingMs <= 0) {
+                throw new TimeoutException(String.format(
+                        "The '%s' condition of elements matching %s has not been met after %sms and %s",
+                        condition.name, by, timeoutMs, pluralize(evaluationsCount, "evaluation")));
+            }
+            if (tracker.isTracking()) {
+                tracker.awaitChange(generation, Math.min(remainingMs, pollIntervalMs));
+            } else {
+                SystemClock.sleep(Math.min(remainingMs, pollIntervalMs));
+            }
+            invalidateAccessibilityCache();
+        }
+    }
+
+    /**
+     * @return The list of elements the condition has been met for or null if the condition
+     * is not satisfied yet
+     */
+    @Nullable
+    private static List<AccessibleUiObject> evaluate(Condition condition, By by,
+                                                     @Nullable AndroidElement context, WaitModel model) {
+        List<AccessibleUiObject> elements;
+        try {
+            elements = findElements(by, context);
+        } catch (ElementNotFoundException | StaleElementReferenceException e) {
+            elements = Collections.emptyList();
+        }
+
+        switch (condition) {
+            case PRESENT:
+                return elements.isEmpty() ? null : elements;
+            case ABSENT:
+                return elements.isEmpty() ? elements : null;
+            case COUNT_AT_LEAST:
+                return elements.size() >= model.count ? elements : null;
+            case VISIBLE:
+            case TEXT_EQUALS: {
+                List<AccessibleUiObject> matches = new ArrayList<>();
+                for (AccessibleUiObject element : elements) {
+                    boolean isMatch = condition == Condition.VISIBLE
+                            ? AxNodeInfoHelper.isVisible(element.getInfo())
+                            : Objects.equals(AxNodeInfoHelper.getText(element.getInfo(), true), model.text);
+                    if (isMatch) {
+                        matches.add(element);
+                    }
+                }
+                return matches.isEmpty() ? null : matches;
+            }
+            default:
+                return null;
+        }
+    }
+}
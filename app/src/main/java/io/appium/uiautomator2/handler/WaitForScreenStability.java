@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.handler;
+
+import android.os.SystemClock;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+import io.appium.uiautomator2.handler.request.SafeRequestHandler;
+import io.appium.uiautomator2.http.AppiumResponse;
+import io.appium.uiautomator2.http.IHttpRequest;
+import io.appium.uiautomator2.model.api.ScreenDiffResultModel;
+import io.appium.uiautomator2.model.api.ScreenStabilityModel;
+import io.appium.uiautomator2.model.api.WaitStableModel;
+import io.appium.uiautomator2.utils.Logger;
+import io.appium.uiautomator2.utils.ScreenFingerprint;
+import io.appium.uiautomator2.utils.ScreenshotHelper;
+
+import static io.appium.uiautomator2.utils.ModelUtils.toModel;
+import static io.appium.uiautomator2.utils.StringHelpers.pluralize;
+
+/**
+ * Waits on the server side until the screen content stops changing, e.g. after an animation.
+ *
+ * Downsampled frames are captured at the given interval and each of them is compared
+ * with the previous one (see {@link ScreenFingerprint}). The screen is considered stable
+ * as soon as the given count of consecutive frames do not differ by more than the given
+ * threshold. The response tells whether the screen has become stable before the timeout.
+ */
+public class WaitForScreenStability extends SafeRequestHandler {
+    private static final long DEFAULT_INTERVAL_MS = 100;
+    private static final long MIN_INTERVAL_MS = 16;
+    private static final int DEFAULT_STABLE_FRAMES = 3;
+    private static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    public WaitForScreenStability(String mappedUri) {
+        super(mappedUri);
+    }
+
+    @Override
+    protected AppiumResponse safeHandle(IHttpRequest request) {
+        WaitStableModel model = toModel(request, WaitStableModel.class);
+        final long intervalMs = model.interval == null
+                ? DEFAULT_INTERVAL_MS
+                : Math.max(MIN_INTERVAL_MS, model.interval);
+        final int stableFrames = model.stableFrames == null ? DEFAULT_STABLE_FRAMES : model.stableFrames;
+        if (stableFrames < 2) {
+            throw new InvalidArgumentException(String.format(
+                    "The 'stableFrames' argument must be greater than one. %s is given instead", stableFrames));
+        }
+        final double threshold = model.threshold == null ? 0 : model.threshold;
+        if (threshold < 0 || threshold > 1) {
+            throw new InvalidArgumentException(String.format(
+                    "The 'threshold' argument must be in range 0..1. %s is given instead", threshold));
+        }
+        final long timeoutMs = model.timeout == null ? DEFAULT_TIMEOUT_MS : Math.max(0, model.timeout);
+
+        final long startedMs = SystemClock.uptimeMillis();
+        ScreenFingerprint previousFrame = ScreenshotHelper.takeScreenFingerprint();
+        ScreenFingerprint.Diff lastDiff = null;
+        int framesCount = 1;
+        int stableFramesCount = 1;
+        while (stableFramesCount < stableFrames) {
+            final long remainingMs = timeoutMs - (SystemClock.uptimeMillis() - startedMs);
+            if (remainingMs <= 0) {
+                break;
+            }
+            SystemClock.sleep(Math.min(remainingMs, intervalMs));
+            ScreenFingerprint frame = ScreenshotHelper.takeScreenFingerprint();
+            ++framesCount;
+            lastDiff = frame.diff(previousFrame);
+            stableFramesCount = lastDiff.changedRatio <= threshold ? stableFramesCount + 1 : 1;
+            previousFrame = frame;
+        }
+
+        ScreenStabilityModel result = new ScreenStabilityModel();
+        result.stable = stableFramesCount >= stableFrames;
+        result.elapsedMs = SystemClock.uptimeMillis() - startedMs;
+        result.framesCount = framesCount;
+        result.lastDiff = lastDiff == null ? null : new ScreenDiffResultModel(lastDiff);
+        Logger.info(String.format("The screen is %s after %sms and %s",
+                result.stable ? "stable" : "still changing", result.elapsedMs,
+                pluralize(framesCount, "frame")));
+        return new AppiumResponse(getSessionId(request), result);
+    }
+}
@@ -23,6 +23,9 @@ import androidx.test.uiautomator.UiObjectNotFoundException;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -100,6 +103,35 @@ public abstract class BaseRequestHandler {
         return map;
     }
 
+    /**
+     * @param request the request to parse
+     * @param name the name of the query parameter
+     * @return The decoded value of the first query parameter with the given name
+     * or null if the request URI has no such parameter
+     */
+    @Nullable
+    public static String getQueryParameter(IHttpRequest request, String name) {
+        String uri = request.uri();
+        int queryStart = uri == null ? -1 : uri.indexOf('?');
+        if (queryStart < 0) {
+            return null;
+        }
+        for (String pair : uri.substring(queryStart + 1).split("&")) {
+            int separatorIdx = pair.indexOf('=');
+            String key = separatorIdx < 0 ? pair : pair.substring(0, separatorIdx);
+            try {
+                if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8.name()))) {
+                    return separatorIdx < 0
+                            ? ""
+                            : URLDecoder.decode(pair.substring(separatorIdx + 1), StandardCharsets.UTF_8.name());
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return null;
+    }
+
     @Nullable
     public static String getSessionId(IHttpRequest request) {
         return (String) request.data().get(AppiumServlet.SESSION_ID_KEY);
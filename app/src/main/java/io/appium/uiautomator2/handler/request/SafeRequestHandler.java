@@ -28,6 +28,7 @@ import io.appium.uiautomator2.common.exceptions.ElementNotFoundException;
 import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
 import io.appium.uiautomator2.common.exceptions.NoSuchDriverException;
 import io.appium.uiautomator2.common.exceptions.StaleElementReferenceException;
+import io.appium.uiautomator2.core.SpeculativeSnapshotter;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
 import io.appium.uiautomator2.model.AppiumUIA2Driver;
@@ -56,7 +57,11 @@ public abstract class SafeRequestHandler extends BaseRequestHandler {
         }
 
         try {
-            return safeHandle(request);
+            AppiumResponse response = safeHandle(request);
+            if (this instanceof UiChangingCommandHandler) {
+                SpeculativeSnapshotter.getInstance().schedule();
+            }
+            return response;
         } catch (UiObjectNotFoundException e) {
             return new AppiumResponse(sessionId, new ElementNotFoundException(e));
         } catch (StaleObjectException e) {
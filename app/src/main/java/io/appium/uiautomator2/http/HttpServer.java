@@ -17,16 +17,28 @@
 package io.appium.uiautomator2.http;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.internal.PlatformDependent;
 
 public class HttpServer {
+    // Buffers of requests and responses are taken from the pool and returned there
+    // after being written, so serving small responses does not allocate memory in the steady state.
+    // The allocator is not shared with other components, like the MJPEG stream,
+    // so its statistics only reflect the HTTP traffic
+    private static final PooledByteBufAllocator ALLOCATOR =
+            new PooledByteBufAllocator(PlatformDependent.directBufferPreferred());
+
     private final int port;
     private final List<IHttpServlet> handlers = new ArrayList<>();
     private Thread serverThread;
@@ -56,6 +68,8 @@ public class HttpServer {
                             .option(ChannelOption.SO_REUSEADDR, true)
                             .option(ChannelOption.SO_KEEPALIVE, true)
                             .option(ChannelOption.TCP_NODELAY, true)
+                            .option(ChannelOption.ALLOCATOR, ALLOCATOR)
+                            .childOption(ChannelOption.ALLOCATOR, ALLOCATOR)
                             .childHandler(new ServerInitializer(handlers));
 
                     Channel ch = bootstrap.bind(port).sync().channel();
@@ -82,4 +96,40 @@ public class HttpServer {
     public int getPort() {
         return port;
     }
+
+    private static Map<String, Object> toArenasStats(List<PoolArenaMetric> arenas) {
+        long allocationsCount = 0;
+        long deallocationsCount = 0;
+        long activeAllocationsCount = 0;
+        long hugeAllocationsCount = 0;
+        int threadCachesCount = 0;
+        for (PoolArenaMetric arena : arenas) {
+            allocationsCount += arena.numAllocations();
+            deallocationsCount += arena.numDeallocations();
+            activeAllocationsCount += arena.numActiveAllocations();
+            hugeAllocationsCount += arena.numHugeAllocations();
+            threadCachesCount += arena.numThreadCaches();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("arenas", arenas.size());
+        result.put("threadCaches", threadCachesCount);
+        result.put("allocations", allocationsCount);
+        result.put("hugeAllocations", hugeAllocationsCount);
+        result.put("deallocations", deallocationsCount);
+        result.put("activeAllocations", activeAllocationsCount);
+        return result;
+    }
+
+    /**
+     * Buffers reused from thread-local caches are not counted as arena allocations,
+     * so the allocations count stops growing if requests are served without allocating new memory.
+     *
+     * @return The statistics of the pooled buffers allocator used by the server connections
+     */
+    public static Map<String, Object> getAllocatorStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("heap", toArenasStats(ALLOCATOR.heapArenas()));
+        result.put("direct", toArenasStats(ALLOCATOR.directArenas()));
+        return result;
+    }
 }
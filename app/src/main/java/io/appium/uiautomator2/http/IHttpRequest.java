@@ -16,6 +16,7 @@
 
 package io.appium.uiautomator2.http;
 
+import java.io.Reader;
 import java.util.Map;
 
 public interface IHttpRequest {
@@ -34,6 +35,12 @@ public interface IHttpRequest {
      */
     String body();
 
+    /**
+     * Returns a reader of the request body, which decodes it on the fly
+     * without copying the full body to a string.
+     */
+    Reader bodyReader();
+
     /**
      * Gets the value of a given header.
      */
@@ -18,4 +18,10 @@ package io.appium.uiautomator2.http;
 
 public interface IHttpServlet {
     void handleHttpRequest(io.appium.uiautomator2.http.IHttpRequest IHttpRequest, io.appium.uiautomator2.http.IHttpResponse httpResponse) throws Exception;
+
+    /**
+     * Checks whether the request with the given method and URI is allowed to have a body
+     * bigger than the default limit. It is called before the request body is received.
+     */
+    boolean acceptsLargeBody(String method, String uri);
 }
@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.http;
+
+import androidx.annotation.Nullable;
+
+import io.appium.uiautomator2.utils.Logger;
+
+/**
+ * The response, whose content is sent as is instead of being wrapped
+ * into the JSON response model.
+ */
+public class RawAppiumResponse extends AppiumResponse {
+    private final byte[] content;
+    private final String contentType;
+
+    public RawAppiumResponse(@Nullable String sessionId, byte[] content, String contentType) {
+        super(sessionId, null);
+        this.content = content;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public void renderTo(IHttpResponse response) {
+        response.setContentType(contentType);
+        response.setStatus(getHttpStatus().code());
+        Logger.info(String.format("AppiumResponse: %s bytes of %s", content.length, contentType));
+        response.setContent(content);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.http;
+
+import java.util.List;
+
+import io.appium.uiautomator2.utils.Logger;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.CONNECTION;
+import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Limits the size of request bodies before they are aggregated.
+ * Requests to commands accepting large payloads are allowed to have bigger bodies,
+ * while all other requests keep the default limit.
+ * Must be placed between the HTTP codec and the aggregator.
+ */
+public class RequestBodySizeLimiter extends ChannelInboundHandlerAdapter {
+    private final List<IHttpServlet> handlers;
+    private final long maxBodySize;
+    private final long maxLargeBodySize;
+    private long currentLimit;
+    private long receivedBytes;
+    private boolean isRejected;
+
+    public RequestBodySizeLimiter(List<IHttpServlet> handlers, long maxBodySize, long maxLargeBodySize) {
+        this.handlers = handlers;
+        this.maxBodySize = maxBodySize;
+        this.maxLargeBodySize = maxLargeBodySize;
+    }
+
+    private boolean acceptsLargeBody(HttpRequest request) {
+        for (IHttpServlet handler : handlers) {
+            if (handler.acceptsLargeBody(request.getMethod().name(), request.getUri())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) msg;
+            isRejected = false;
+            receivedBytes = 0;
+            currentLimit = acceptsLargeBody(request) ? maxLargeBodySize : maxBodySize;
+            if (HttpHeaders.getContentLength(request, -1L) > currentLimit) {
+                reject(ctx, msg);
+                return;
+            }
+        }
+        if (isRejected) {
+            // The connection is being closed, so the rest of the body is of no interest
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (msg instanceof HttpContent) {
+            receivedBytes += ((HttpContent) msg).content().readableBytes();
+            if (receivedBytes > currentLimit) {
+                reject(ctx, msg);
+                return;
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    private void reject(ChannelHandlerContext ctx, Object msg) {
+        ReferenceCountUtil.release(msg);
+        isRejected = true;
+        Logger.error(String.format("The request body is bigger than %s bytes. Closing the connection",
+                currentLimit));
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, REQUEST_ENTITY_TOO_LARGE);
+        response.headers().set(CONTENT_LENGTH, 0);
+        response.headers().set(CONNECTION, HttpHeaders.Values.CLOSE);
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+}
@@ -52,7 +52,8 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
         }
 
         FullHttpRequest request = (FullHttpRequest) msg;
-        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK);
+        // The content buffer comes from the channel allocator, so it is pooled and reused
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK, ctx.alloc().buffer(0));
         boolean keepAlive = HttpHeaders.isKeepAlive(request);
         response.headers().set(CONNECTION, keepAlive
                 ? HttpHeaders.Values.KEEP_ALIVE
@@ -64,17 +65,23 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
 
         IHttpRequest httpRequest = new NettyHttpRequest(request);
         IHttpResponse httpResponse = new NettyHttpResponse(response);
-        for (IHttpServlet handler : httpHandlers) {
-            handler.handleHttpRequest(httpRequest, httpResponse);
-            if (httpResponse.isClosed()) {
-                break;
+        try {
+            for (IHttpServlet handler : httpHandlers) {
+                handler.handleHttpRequest(httpRequest, httpResponse);
+                if (httpResponse.isClosed()) {
+                    break;
+                }
             }
-        }
-        if (!httpResponse.isClosed()) {
-            Object sessionId = httpRequest.data().get(AppiumServlet.SESSION_ID_KEY);
-            new AppiumResponse(sessionId == null ? null : (String) sessionId, new UnknownCommandException())
-                    .renderTo(httpResponse);
-            httpResponse.end();
+            if (!httpResponse.isClosed()) {
+                Object sessionId = httpRequest.data().get(AppiumServlet.SESSION_ID_KEY);
+                new AppiumResponse(sessionId == null ? null : (String) sessionId, new UnknownCommandException())
+                        .renderTo(httpResponse);
+                httpResponse.end();
+            }
+        } catch (Exception e) {
+            // The pooled buffer is only released automatically once the response is written
+            response.release();
+            throw e;
         }
 
         ChannelFuture future = ctx.write(response);
@@ -18,6 +18,7 @@ package io.appium.uiautomator2.http;
 
 import java.util.List;
 
+import io.appium.uiautomator2.server.ServerConfig;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
@@ -36,7 +37,10 @@ public class ServerInitializer extends ChannelInitializer<SocketChannel> {
         ChannelPipeline pipeline = ch.pipeline();
         pipeline.addLast("idleStateHandler", new KeepAliveStateHandler());
         pipeline.addLast("codec", new HttpServerCodec());
-        pipeline.addLast("aggregator", new HttpObjectAggregator(65536));
+        int maxBodySize = ServerConfig.getMaxRequestBodySize();
+        int maxLargeBodySize = Math.max(maxBodySize, ServerConfig.getMaxLargeRequestBodySize());
+        pipeline.addLast("bodySizeLimiter", new RequestBodySizeLimiter(handlers, maxBodySize, maxLargeBodySize));
+        pipeline.addLast("aggregator", new HttpObjectAggregator(maxLargeBodySize));
         pipeline.addLast("io/appium/uiautomator2/handler", new io.appium.uiautomator2.http.ServerHandler(handlers));
     }
 }
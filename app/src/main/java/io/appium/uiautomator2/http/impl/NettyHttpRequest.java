@@ -1,9 +1,12 @@
 package io.appium.uiautomator2.http.impl;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
 
 import io.appium.uiautomator2.http.IHttpRequest;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.util.CharsetUtil;
 
@@ -31,6 +34,13 @@ public class NettyHttpRequest implements IHttpRequest {
         return request.content().toString(CharsetUtil.UTF_8);
     }
 
+    @Override
+    public Reader bodyReader() {
+        // The duplicate shares the content, but keeps its own reader index,
+        // so the body could still be read again
+        return new InputStreamReader(new ByteBufInputStream(request.content().duplicate()), CharsetUtil.UTF_8);
+    }
+
     @Override
     public String header(String name) {
         return request.headers().get(name);
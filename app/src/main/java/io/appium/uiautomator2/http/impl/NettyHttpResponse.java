@@ -3,6 +3,8 @@ package io.appium.uiautomator2.http.impl;
 import java.nio.charset.Charset;
 
 import io.appium.uiautomator2.http.IHttpResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.util.CharsetUtil;
@@ -40,10 +42,46 @@ public class NettyHttpResponse implements IHttpResponse {
     }
 
     public IHttpResponse setContent(String message) {
-        setContent(message.getBytes(charset));
+        if (!CharsetUtil.UTF_8.equals(charset)) {
+            setContent(message.getBytes(charset));
+            return this;
+        }
+
+        // Encode the message straight into the response buffer instead of a temporary array
+        ByteBuf content = response.content();
+        content.ensureWritable(getMaxUtf8Length(message));
+        int start = content.writerIndex();
+        ByteBufUtil.writeUtf8(content, message);
+        response.headers().add(CONTENT_LENGTH, content.writerIndex() - start);
         return this;
     }
 
+    /**
+     * @return The count of bytes the UTF-8 representation of the given string takes.
+     * Unpaired surrogates are counted as three bytes, so the result is never underestimated.
+     */
+    static int getMaxUtf8Length(CharSequence message) {
+        int length = message.length();
+        int result = length;
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                result += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(message.charAt(i + 1))) {
+                // Four bytes for two chars
+                result += 2;
+                i++;
+            } else {
+                result += 2;
+            }
+        }
+        return result;
+    }
+
     public IHttpResponse sendRedirect(String to) {
         setStatus(HttpResponseStatus.MOVED_PERMANENTLY.code());
         response.headers().add(LOCATION, to);
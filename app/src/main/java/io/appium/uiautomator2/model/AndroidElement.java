@@ -17,6 +17,7 @@
 package io.appium.uiautomator2.model;
 
 import android.graphics.Rect;
+import android.view.accessibility.AccessibilityNodeInfo;
 
 import androidx.annotation.Nullable;
 import androidx.test.uiautomator.Direction;
@@ -62,6 +63,14 @@ public interface AndroidElement {
 
     Object toModel() throws UiObjectNotFoundException;
 
+    /**
+     * Same as {@link #toModel()}, but the response attributes are read from the given node
+     * the element has just been matched by rather than from the live element.
+     *
+     * @param matchedNode The matched node or null to read attributes from the live element
+     */
+    Object toModel(@Nullable AccessibilityNodeInfo matchedNode) throws UiObjectNotFoundException;
+
     //region Gestures
     /** Clicks on this object. */
     void click();
@@ -27,9 +27,11 @@ import androidx.test.uiautomator.UiObjectNotFoundException;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 import io.appium.uiautomator2.common.exceptions.NoSuchAttributeException;
@@ -39,6 +41,7 @@ import io.appium.uiautomator2.model.api.ElementRectModel;
 import io.appium.uiautomator2.model.settings.ElementResponseAttributes;
 import io.appium.uiautomator2.model.settings.Settings;
 import io.appium.uiautomator2.model.settings.ShouldUseCompactResponses;
+import io.appium.uiautomator2.utils.Attribute;
 import io.appium.uiautomator2.utils.ElementHelpers;
 import io.appium.uiautomator2.utils.PositionHelper;
 
@@ -204,6 +207,72 @@ public abstract class BaseElement implements AndroidElement {
      */
     @Override
     public Object toModel() throws UiObjectNotFoundException {
+        return toModel(null);
+    }
+
+    @Nullable
+    private static Attribute toResponseAttribute(String field) {
+        if (Objects.equals(field, "name")) {
+            return Attribute.CONTENT_DESC;
+        } else if (Objects.equals(field, "text")) {
+            return Attribute.TEXT;
+        } else if (Objects.equals(field, "enabled")
+                || Objects.equals(field, "displayed")
+                || Objects.equals(field, "selected")) {
+            return Attribute.fromString(field);
+        } else if (field.startsWith(ATTRIBUTE_PREFIX)) {
+            return Attribute.fromString(field.substring(ATTRIBUTE_PREFIX.length()));
+        }
+        return null;
+    }
+
+    @Nullable
+    private static UiElementSnapshot takeResponseSnapshot(@Nullable AccessibilityNodeInfo matchedNode,
+                                                          String[] responseAttributes) {
+        if (matchedNode == null) {
+            return null;
+        }
+
+        Set<Attribute> includedAttributes = new HashSet<>();
+        for (String field : responseAttributes) {
+            Attribute attribute = toResponseAttribute(field);
+            if (UiElementSnapshot.isSnapshotAttribute(attribute)) {
+                includedAttributes.add(attribute);
+            }
+        }
+        return UiElementSnapshot.takeShallow(matchedNode, includedAttributes);
+    }
+
+    @Nullable
+    private Object getResponseValue(String field, @Nullable UiElementSnapshot snapshot)
+            throws UiObjectNotFoundException {
+        if (Objects.equals(field, "rect")) {
+            return new ElementRectModel(snapshot == null
+                    ? this.getBounds()
+                    : AxNodeInfoHelper.getBounds(Objects.requireNonNull(snapshot.getNode())));
+        }
+
+        Attribute attribute = toResponseAttribute(field);
+        if (snapshot != null && UiElementSnapshot.isSnapshotAttribute(attribute)) {
+            Object value = snapshot.get(attribute);
+            return value == null ? null : String.valueOf(value);
+        }
+        if (Objects.equals(field, "name")) {
+            return this.getContentDesc();
+        } else if (Objects.equals(field, "text")) {
+            return this.getText();
+        } else if (Objects.equals(field, "enabled")
+                || Objects.equals(field, "displayed")
+                || Objects.equals(field, "selected")) {
+            return this.getAttribute(field);
+        } else if (field.startsWith(ATTRIBUTE_PREFIX)) {
+            return this.getAttribute(field.substring(ATTRIBUTE_PREFIX.length()));
+        }
+        throw new NoSuchAttributeException(field);
+    }
+
+    @Override
+    public Object toModel(@Nullable AccessibilityNodeInfo matchedNode) throws UiObjectNotFoundException {
         ElementModel model = new ElementModel(this);
         if (Settings.get(ShouldUseCompactResponses.class).getValue()) {
             return model;
@@ -211,22 +280,12 @@ public abstract class BaseElement implements AndroidElement {
 
         Map<String, Object> result = new HashMap<>(model.toMap());
         String [] responseAttributes = Settings.get(ElementResponseAttributes.class).asArray();
+        // Values of the just matched node are up to date, so they could be reused
+        // instead of querying the live element for each attribute
+        UiElementSnapshot snapshot = takeResponseSnapshot(matchedNode, responseAttributes);
         for (String field : responseAttributes) {
             try {
-                if (Objects.equals(field, "name")) {
-                    result.put(field, this.getContentDesc());
-                } else if (Objects.equals(field, "text")) {
-                    result.put(field, this.getText());
-                } else if (Objects.equals(field, "rect")) {
-                    result.put(field, new ElementRectModel(this.getBounds()));
-                } else if (Objects.equals(field, "enabled")
-                        || Objects.equals(field, "displayed")
-                        || Objects.equals(field, "selected")) {
-                    result.put(field, this.getAttribute(field));
-                } else if (field.startsWith(ATTRIBUTE_PREFIX)) {
-                    String attributeName = field.substring(ATTRIBUTE_PREFIX.length());
-                    result.put(field, this.getAttribute(attributeName));
-                }
+                result.put(field, getResponseValue(field, snapshot));
             } catch (NoSuchAttributeException e) {
                 // ignore field
             }
@@ -16,18 +16,30 @@
 
 package io.appium.uiautomator2.model;
 
-import android.util.LruCache;
+import android.view.accessibility.AccessibilityNodeInfo;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.test.uiautomator.UiObject;
 import androidx.test.uiautomator.UiObject2;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.appium.uiautomator2.common.exceptions.ElementNotFoundException;
 import io.appium.uiautomator2.common.exceptions.StaleElementReferenceException;
+import io.appium.uiautomator2.common.exceptions.UiAutomator2Exception;
 import io.appium.uiautomator2.core.AxNodeInfoHelper;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.model.internal.CustomUiDevice;
 import io.appium.uiautomator2.utils.ByUiAutomatorFinder;
 import io.appium.uiautomator2.utils.Logger;
@@ -36,11 +48,197 @@ import io.appium.uiautomator2.utils.NodeInfoList;
 import static io.appium.uiautomator2.utils.ElementLocationHelpers.getXPathNodeMatch;
 import static io.appium.uiautomator2.utils.ElementLocationHelpers.rewriteIdLocator;
 
+/**
+ * The cache is split into segments, where each segment is an independent LRU map
+ * guarded by its own lock. This allows concurrent access to elements stored
+ * in different segments. The capacity limit applies to the cache as a whole:
+ * if it gets exceeded then the least recently used entry among all segments
+ * is evicted. Element lookups that are required to restore stale elements
+ * are never performed while holding a segment lock, and concurrent restores
+ * of the same element share a single lookup.
+ */
 public class ElementsCache {
-    private final LruCache<String, AndroidElement> cache;
+    private static final int SEGMENTS_COUNT = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS_COUNT];
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong accessCounter = new AtomicLong();
+    private volatile int maxSize;
+    private final ConcurrentMap<String, FutureTask<AndroidElement>> pendingRestores =
+            new ConcurrentHashMap<>();
+    private final AtomicLong hitsCount = new AtomicLong();
+    private final AtomicLong missesCount = new AtomicLong();
+    private final AtomicLong evictionsCount = new AtomicLong();
+    private final AtomicLong restoresCount = new AtomicLong();
+    private final AtomicLong nodeIdRestoresCount = new AtomicLong();
+    private final AtomicLong sharedRestoresCount = new AtomicLong();
+    private final AtomicLong failedRestoresCount = new AtomicLong();
+
+    /**
+     * Binds the cached element to the UI generation it has been verified in.
+     * There is no need to verify the element again unless the UI generation changes.
+     */
+    private static class CacheEntry {
+        final AndroidElement element;
+        final int windowId;
+        final long sourceNodeId;
+        final long verifiedGeneration;
+        // Only changed while holding the lock of the segment the entry belongs to
+        volatile long lastAccess;
+
+        CacheEntry(AndroidElement element, AccessibilityNodeInfo info, long verifiedGeneration) {
+            this(element, info.getWindowId(), AxNodeInfoHelper.getSourceNodeId(info),
+                    verifiedGeneration);
+        }
+
+        CacheEntry(AndroidElement element, int windowId, long sourceNodeId, long verifiedGeneration) {
+            this.element = element;
+            this.windowId = windowId;
+            this.sourceNodeId = sourceNodeId;
+            this.verifiedGeneration = verifiedGeneration;
+        }
+
+        CacheEntry withGeneration(long generation) {
+            return new CacheEntry(element, windowId, sourceNodeId, generation);
+        }
+    }
+
+    private static class Segment extends LinkedHashMap<String, CacheEntry> {
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        @Nullable
+        CacheEntry eldest() {
+            // Entries are ordered from the least to the most recently accessed one
+            return isEmpty() ? null : values().iterator().next();
+        }
+    }
 
     ElementsCache(int maxSize) {
-        this.cache = new LruCache<>(maxSize);
+        this.maxSize = maxSize;
+        for (int i = 0; i < SEGMENTS_COUNT; ++i) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private void touch(CacheEntry entry) {
+        entry.lastAccess = accessCounter.incrementAndGet();
+    }
+
+    /**
+     * Evicts the least recently used entry of the whole cache. Entries in each segment
+     * are ordered by access time, so it is enough to compare the eldest entries of all segments.
+     *
+     * @return false if the cache is empty
+     */
+    private boolean evictEldest() {
+        Segment eldestSegment = null;
+        CacheEntry eldestEntry = null;
+        long eldestAccess = Long.MAX_VALUE;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                CacheEntry entry = segment.eldest();
+                if (entry != null && entry.lastAccess < eldestAccess) {
+                    eldestSegment = segment;
+                    eldestEntry = entry;
+                    eldestAccess = entry.lastAccess;
+                }
+            }
+        }
+        if (eldestEntry == null) {
+            return false;
+        }
+        synchronized (eldestSegment) {
+            // Skip the eviction if the entry has been accessed or replaced in the meantime
+            if (eldestSegment.eldest() == eldestEntry && eldestEntry.lastAccess == eldestAccess) {
+                eldestSegment.remove(eldestEntry.element.getId());
+                size.decrementAndGet();
+                evictionsCount.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private void evictExcessEntries() {
+        while (size.get() > maxSize) {
+            if (!evictEldest()) {
+                return;
+            }
+        }
+    }
+
+    private Segment segmentFor(String id) {
+        // Spread the hash bits the same way HashMap does
+        int hash = id.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[(hash & 0x7fffffff) % SEGMENTS_COUNT];
+    }
+
+    @Nullable
+    private CacheEntry getEntry(String id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            CacheEntry entry = segment.get(id);
+            if (entry != null) {
+                touch(entry);
+            }
+            return entry;
+        }
+    }
+
+    private void put(CacheEntry entry) {
+        Segment segment = segmentFor(entry.element.getId());
+        synchronized (segment) {
+            touch(entry);
+            if (segment.put(entry.element.getId(), entry) == null) {
+                size.incrementAndGet();
+            }
+        }
+        evictExcessEntries();
+    }
+
+    /**
+     * Changes the maximum number of cached elements.
+     * Least recently used elements get evicted if the new capacity is lower than
+     * the current cache size.
+     *
+     * @param maxSize The new capacity value
+     */
+    public void setCapacity(int maxSize) {
+        this.maxSize = maxSize;
+        evictExcessEntries();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    @VisibleForTesting
+    void put(AndroidElement element, int windowId, long sourceNodeId) {
+        put(new CacheEntry(element, windowId, sourceNodeId,
+                UiChangeTracker.getInstance().getGeneration()));
+    }
+
+    @VisibleForTesting
+    boolean isCached(String id) {
+        return getEntry(id) != null;
+    }
+
+    /**
+     * @return Counters describing the cache efficiency since it has been created
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("size", (long) size());
+        result.put("hits", hitsCount.get());
+        result.put("misses", missesCount.get());
+        result.put("evictions", evictionsCount.get());
+        result.put("restores", restoresCount.get());
+        result.put("nodeIdRestores", nodeIdRestoresCount.get());
+        result.put("sharedRestores", sharedRestoresCount.get());
+        result.put("failedRestores", failedRestoresCount.get());
+        return result;
     }
 
     private static AndroidElement toAndroidElement(AccessibleUiObject element, boolean isSingleMatch,
@@ -66,7 +264,53 @@ public class ElementsCache {
                 String.format("Unknown element type: %s", element.getClass().getName()));
     }
 
-    private AndroidElement restore(AndroidElement element) {
+    /**
+     * Tries to fetch the node of a stale element directly by its window and node identifiers,
+     * which does not require to replay the original locator.
+     *
+     * @return The restored element or null if the element cannot be restored this way
+     * @throws StaleElementReferenceException if the node does not exist anymore
+     */
+    @Nullable
+    private AndroidElement restoreByNodeId(CacheEntry entry, long generation) {
+        final AndroidElement element = entry.element;
+        if (!(element instanceof UiObject2Element)
+                || !AxNodeInfoHelper.isIdentifiable(entry.windowId, entry.sourceNodeId)) {
+            return null;
+        }
+
+        AccessibilityNodeInfo node;
+        try {
+            node = AxNodeInfoHelper.fetchNode(entry.windowId, entry.sourceNodeId);
+        } catch (Exception e) {
+            Logger.debug(String.format("Cannot fetch the node of the cached element '%s' directly: %s",
+                    element.getId(), e.getMessage()));
+            return null;
+        }
+        // Locator replay could only match the same node, so there is no need to run it
+        if (node == null) {
+            throw new StaleElementReferenceException(String.format(
+                    "The element '%s' does not exist in DOM anymore", element.getId()));
+        }
+
+        AccessibleUiObject accessibleUiObject = CustomUiDevice.getInstance().findObject(node);
+        if (accessibleUiObject == null) {
+            return null;
+        }
+        AndroidElement restoredElement = toAndroidElement(accessibleUiObject,
+                element.isSingleMatch(), element.getBy(), element.getContextId(), element.getId());
+        put(new CacheEntry(restoredElement, entry.windowId, entry.sourceNodeId, generation));
+        nodeIdRestoresCount.incrementAndGet();
+        return restoredElement;
+    }
+
+    private AndroidElement restore(CacheEntry entry, long generation) {
+        AndroidElement restoredByNodeId = restoreByNodeId(entry, generation);
+        if (restoredByNodeId != null) {
+            return restoredByNodeId;
+        }
+
+        final AndroidElement element = entry.element;
         final By by = element.getBy();
         if (by == null) {
             throw new StaleElementReferenceException(String.format(
@@ -126,10 +370,52 @@ public class ElementsCache {
 
         AndroidElement restoredElement = toAndroidElement(accessibleUiObject,
                 element.isSingleMatch(), element.getBy(), element.getContextId(), element.getId());
-        cache.put(restoredElement.getId(), restoredElement);
+        put(new CacheEntry(restoredElement, accessibleUiObject.getInfo(), generation));
         return restoredElement;
     }
 
+    /**
+     * Makes sure only one restore operation for the same element is running at a time.
+     * Callers trying to restore an element whose restore is already in progress
+     * just wait for the result of the running operation.
+     */
+    private AndroidElement restoreOnce(final CacheEntry entry, final long generation) {
+        final AndroidElement element = entry.element;
+        FutureTask<AndroidElement> task = new FutureTask<>(new Callable<AndroidElement>() {
+            @Override
+            public AndroidElement call() {
+                return restore(entry, generation);
+            }
+        });
+        FutureTask<AndroidElement> pendingTask = pendingRestores.putIfAbsent(element.getId(), task);
+        if (pendingTask == null) {
+            restoresCount.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                pendingRestores.remove(element.getId(), task);
+            }
+        } else {
+            sharedRestoresCount.incrementAndGet();
+            task = pendingTask;
+        }
+
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (pendingTask == null) {
+                failedRestoresCount.incrementAndGet();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UiAutomator2Exception(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UiAutomator2Exception(e);
+        }
+    }
+
     @NonNull
     public AndroidElement get(String id) {
         if (id == null) {
@@ -137,46 +423,70 @@ public class ElementsCache {
                     "A valid cached element identifier must be provided. Got null instead");
         }
 
-        AndroidElement resultElement;
-        synchronized (cache) {
-            resultElement = cache.get(id);
-            if (resultElement != null) {
-                // It might be that cached UI object has been invalidated
-                // after AX cache reset has been performed. So we try to recreate
-                // the cached object automatically
-                // in order to avoid an unexpected StaleElementReferenceException
-                try {
-                    resultElement.getName();
-                } catch (Exception e) {
-                    Logger.info(String.format("The element identified by '%s' has been reported as stale (%s). " +
-                            "Trying to restore it", id, e.getMessage()));
-                    resultElement = restore(resultElement);
-                }
-            }
-        }
-
-        if (resultElement == null) {
+        CacheEntry entry = getEntry(id);
+        if (entry == null) {
+            missesCount.incrementAndGet();
             throw new ElementNotFoundException(
                     String.format("The element identified by '%s' is not present in the cache " +
                             "or has expired. Try to find it again", id));
         }
-        return resultElement;
+        hitsCount.incrementAndGet();
+
+        UiChangeTracker tracker = UiChangeTracker.getInstance();
+        // The generation must be retrieved before the actual verification
+        // in order to not miss UI changes happening in the meantime
+        final long generation = tracker.getGeneration();
+        // Only verify the element if the UI might have been changed since
+        // the previous verification
+        if (tracker.isTracking() && entry.verifiedGeneration == generation) {
+            return entry.element;
+        }
+
+        // It might be that cached UI object has been invalidated
+        // after AX cache reset has been performed. So we try to recreate
+        // the cached object automatically
+        // in order to avoid an unexpected StaleElementReferenceException
+        try {
+            entry.element.getName();
+        } catch (Exception e) {
+            Logger.info(String.format("The element identified by '%s' has been reported as stale (%s). " +
+                    "Trying to restore it", id, e.getMessage()));
+            return restoreOnce(entry, generation);
+        }
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            // Do not overwrite the entry if it has been replaced in the meantime
+            if (segment.get(id) == entry) {
+                CacheEntry verifiedEntry = entry.withGeneration(generation);
+                touch(verifiedEntry);
+                segment.put(id, verifiedEntry);
+            }
+        }
+        return entry.element;
     }
 
-    public AndroidElement add(AccessibleUiObject element, boolean isSingleMatch) {
-        return add(element, isSingleMatch, null, null);
+    public AndroidElement add(AccessibleUiObject element, boolean isSingleMatch, long generation) {
+        return add(element, isSingleMatch, null, null, generation);
     }
 
-    public AndroidElement add(AccessibleUiObject element, boolean isSingleMatch, @Nullable By by) {
-        return add(element, isSingleMatch, by, null);
+    public AndroidElement add(AccessibleUiObject element, boolean isSingleMatch, @Nullable By by,
+                              long generation) {
+        return add(element, isSingleMatch, by, null, generation);
     }
 
+    /**
+     * Adds the found element to the cache.
+     *
+     * @param generation The UI generation retrieved before the element lookup has been started.
+     *                   The element is considered verified in this generation, so UI changes
+     *                   happening between the lookup and this call are not missed.
+     *                   See {@link UiChangeTracker#getGeneration()}
+     * @return The cached element
+     */
     public AndroidElement add(AccessibleUiObject element, boolean isSingleMatch, @Nullable By by,
-                              @Nullable String contextId) {
+                              @Nullable String contextId, long generation) {
         AndroidElement androidElement = toAndroidElement(element, isSingleMatch, by, contextId);
-        synchronized (cache) {
-            cache.put(androidElement.getId(), androidElement);
-        }
+        put(new CacheEntry(androidElement, element.getInfo(), generation));
         return androidElement;
     }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.appium.uiautomator2.core.UiAutomation;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.utils.Logger;
 
 import static android.app.UiAutomation.OnAccessibilityEventListener;
@@ -63,6 +64,7 @@ public class NotificationListener implements OnAccessibilityEventListener {
         isListening = true;
         Logger.debug("Original listener: " + originalListener);
         uiAutomation.setOnAccessibilityEventListener(this);
+        UiChangeTracker.getInstance().setTracking(true);
     }
 
     public void stop() {
@@ -73,10 +75,13 @@ public class NotificationListener implements OnAccessibilityEventListener {
         Logger.debug("Stopping toast notification listener.");
         isListening = false;
         uiAutomation.setOnAccessibilityEventListener(originalListener);
+        UiChangeTracker.getInstance().setTracking(false);
     }
 
     @Override
     public synchronized void onAccessibilityEvent(AccessibilityEvent event) {
+        UiChangeTracker.getInstance().onAccessibilityEvent(event);
+
         if (event.getEventType() == AccessibilityEvent.TYPE_NOTIFICATION_STATE_CHANGED) {
             Logger.debug("Catch toast message: " + event);
             List<CharSequence> text = event.getText();
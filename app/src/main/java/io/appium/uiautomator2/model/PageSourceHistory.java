@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import io.appium.uiautomator2.utils.SourceNode;
+
+/**
+ * Keeps a bounded amount of the most recent page source trees, so clients
+ * could only request the difference with the page source they already have.
+ */
+public class PageSourceHistory {
+    public static final int DEFAULT_CAPACITY = 8;
+
+    private final Map<String, SourceNode> snapshots;
+
+    public PageSourceHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PageSourceHistory(final int capacity) {
+        this.snapshots = new LinkedHashMap<String, SourceNode>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SourceNode> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Adds the tree to the history and evicts the oldest one if the capacity is exceeded.
+     *
+     * @param root the root node of the page source tree
+     * @return The unique version token of the added tree
+     */
+    public synchronized String add(SourceNode root) {
+        String version = UUID.randomUUID().toString();
+        snapshots.put(version, root);
+        return version;
+    }
+
+    /**
+     * @param version the version token returned by {@link #add(SourceNode)}
+     * @return The retained tree or null if the version is unknown or has been evicted
+     */
+    @Nullable
+    public synchronized SourceNode get(String version) {
+        return snapshots.get(version);
+    }
+
+    public synchronized int size() {
+        return snapshots.size();
+    }
+}
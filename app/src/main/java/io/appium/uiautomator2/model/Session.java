@@ -22,17 +22,21 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import io.appium.uiautomator2.model.settings.ElementsCacheCapacity;
 import io.appium.uiautomator2.model.settings.ISetting;
 import io.appium.uiautomator2.model.settings.Settings;
+import io.appium.uiautomator2.utils.ScreenFingerprint;
 
 public class Session {
     public static final String NO_ID = "None";
-    public static final int MAX_CACHE_SIZE = 500;
 
     private final Map<String, Object> capabilities = new HashMap<>();
     private final String sessionId;
-    private final ElementsCache elementsCache = new ElementsCache(MAX_CACHE_SIZE);
+    private final ElementsCache elementsCache;
+    private final PageSourceHistory pageSourceHistory = new PageSourceHistory();
     private AccessibilityScrollData lastScrollData;
+    @Nullable
+    private ScreenFingerprint screenBaseline;
 
     Session(String sessionId, Map<String, Object> capabilities) {
         this.sessionId = sessionId;
@@ -50,6 +54,8 @@ public class Session {
                 setCapability(capability.getKey(), capability.getValue());
             }
         }
+        // The cache must be created after settings have been applied from capabilities
+        this.elementsCache = new ElementsCache(Settings.get(ElementsCacheCapacity.class).getValue());
     }
 
     private void setCapability(String name, Object value) {
@@ -85,4 +91,17 @@ public class Session {
     public ElementsCache getElementsCache() {
         return this.elementsCache;
     }
+
+    public PageSourceHistory getPageSourceHistory() {
+        return this.pageSourceHistory;
+    }
+
+    @Nullable
+    public ScreenFingerprint getScreenBaseline() {
+        return screenBaseline;
+    }
+
+    public void setScreenBaseline(@Nullable ScreenFingerprint screenBaseline) {
+        this.screenBaseline = screenBaseline;
+    }
 }
@@ -56,7 +56,7 @@ import static io.appium.uiautomator2.utils.StringHelpers.charSequenceToNullableS
 public class UiElementSnapshot extends UiElement<AccessibilityNodeInfo, UiElementSnapshot> {
     private final static String ROOT_NODE_NAME = "hierarchy";
     // https://github.com/appium/appium/issues/12545
-    private final static int DEFAULT_MAX_DEPTH = 70;
+    public final static int DEFAULT_MAX_DEPTH = 70;
     // The same order will be used for node attributes in xml page source
     public final static Attribute[] SUPPORTED_ATTRIBUTES = new Attribute[]{
             Attribute.INDEX, Attribute.PACKAGE, Attribute.CLASS, Attribute.TEXT,
@@ -75,44 +75,105 @@ public class UiElementSnapshot extends UiElement<AccessibilityNodeInfo, UiElemen
 
     private final Set<Attribute> includedAttributes = new HashSet<>();
     private final Map<Attribute, Object> attributes;
-    private final List<UiElementSnapshot> children;
+    // Children of lazy snapshots are only collected on the first access
+    private final boolean isLazy;
+    private List<UiElementSnapshot> children;
     private final int depth;
-    private final int maxDepth;
+    private final Filter filter;
     private final int index;
 
-    private UiElementSnapshot(AccessibilityNodeInfo node, int index, int depth, int maxDepth,
-                              Set<Attribute> includedAttributes) {
+    /**
+     * Limits the part of the hierarchy, which is collected into a snapshot.
+     * Nodes, which are not accepted by the filter, are skipped together with their descendants,
+     * so neither their attributes nor their children are ever retrieved.
+     */
+    public static class Filter {
+        public static final Filter DEFAULT = new Filter(DEFAULT_MAX_DEPTH, false, null);
+
+        // Negative values mean there is no depth limit
+        private final int maxDepth;
+        private final boolean isVisibleOnly;
+        @Nullable
+        private final String packageName;
+
+        public Filter(int maxDepth, boolean isVisibleOnly, @Nullable String packageName) {
+            this.maxDepth = maxDepth;
+            this.isVisibleOnly = isVisibleOnly;
+            this.packageName = packageName;
+        }
+
+        private boolean isDepthExceeded(int depth) {
+            return maxDepth >= 0 && depth > maxDepth;
+        }
+
+        private boolean accepts(AccessibilityNodeInfo node) {
+            if (isVisibleOnly && !node.isVisibleToUser()) {
+                return false;
+            }
+            return packageName == null
+                    || packageName.equals(charSequenceToNullableString(node.getPackageName()));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("maxDepth=%s,visibleOnly=%s,package=%s", maxDepth, isVisibleOnly, packageName);
+        }
+    }
+
+    /**
+     * @param attribute The attribute to check
+     * @return true if the value of the given attribute is available in snapshots
+     */
+    public static boolean isSnapshotAttribute(@Nullable Attribute attribute) {
+        if (attribute == null) {
+            return false;
+        }
+        if (attribute == Attribute.EXTRAS) {
+            return Settings.get(IncludeExtrasInPageSource.class).getValue();
+        }
+        for (Attribute supportedAttribute : SUPPORTED_ATTRIBUTES) {
+            if (supportedAttribute == attribute) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private UiElementSnapshot(AccessibilityNodeInfo node, int index, int depth, Filter filter,
+                              Set<Attribute> includedAttributes, boolean isLazy) {
         super(checkNotNull(node));
         this.depth = depth;
-        this.maxDepth = maxDepth;
+        this.filter = filter;
         this.index = index;
+        this.isLazy = isLazy;
         // Class name attribute should always be there
         this.includedAttributes.add(Attribute.CLASS);
         this.includedAttributes.addAll(includedAttributes);
         this.attributes = collectAttributes();
-        this.children = buildChildren(node);
-    }
-
-    private UiElementSnapshot(AccessibilityNodeInfo node, int index, int depth,
-                              Set<Attribute> includedAttributes) {
-        this(node, index, depth, DEFAULT_MAX_DEPTH, includedAttributes);
+        this.children = isLazy ? null : buildChildren(node);
     }
 
-    private UiElementSnapshot(AccessibilityNodeInfo[] childNodes,
-                              Set<Attribute> includedAttributes) {
+    private UiElementSnapshot(AccessibilityNodeInfo[] childNodes, Filter filter,
+                              Set<Attribute> includedAttributes, boolean isLazy) {
         super(null);
+        this.isLazy = isLazy;
         this.depth = 0;
         this.index = 0;
-        this.maxDepth = DEFAULT_MAX_DEPTH;
+        this.filter = filter;
         Map<Attribute, Object> attribs = new LinkedHashMap<>();
         putAttribute(attribs, Attribute.INDEX, this.index);
         putAttribute(attribs, Attribute.CLASS, ROOT_NODE_NAME);
         this.attributes = Collections.unmodifiableMap(attribs);
         List<UiElementSnapshot> children = new ArrayList<>(childNodes.length);
-        for (int childNodeIdx = 0; childNodeIdx < childNodes.length; ++childNodeIdx) {
-            UiElementSnapshot child = new UiElementSnapshot(childNodes[childNodeIdx], childNodeIdx,
-                    this.depth + 1, includedAttributes);
-            children.add(child);
+        if (!filter.isDepthExceeded(this.depth + 1)) {
+            for (int childNodeIdx = 0; childNodeIdx < childNodes.length; ++childNodeIdx) {
+                if (!filter.accepts(childNodes[childNodeIdx])) {
+                    continue;
+                }
+                UiElementSnapshot child = new UiElementSnapshot(childNodes[childNodeIdx], childNodeIdx,
+                        this.depth + 1, filter, includedAttributes, isLazy);
+                children.add(child);
+            }
         }
         this.children = children;
     }
@@ -201,7 +262,27 @@ public class UiElementSnapshot extends UiElement<AccessibilityNodeInfo, UiElemen
 
     public static UiElementSnapshot take(AccessibilityNodeInfo[] roots, List<CharSequence> toastMSGs,
                                          Set<Attribute> includedAttributes) {
-        UiElementSnapshot uiRoot = new UiElementSnapshot(roots, includedAttributes);
+        return take(roots, toastMSGs, Filter.DEFAULT, includedAttributes, false);
+    }
+
+    public static UiElementSnapshot take(AccessibilityNodeInfo[] roots, List<CharSequence> toastMSGs,
+                                         Filter filter, Set<Attribute> includedAttributes) {
+        return take(roots, toastMSGs, filter, includedAttributes, false);
+    }
+
+    /**
+     * Takes a snapshot, whose descendants are only collected when they are accessed for the first time.
+     * This is useful if only a part of the tree is going to be traversed.
+     */
+    public static UiElementSnapshot takeLazily(AccessibilityNodeInfo[] roots, List<CharSequence> toastMSGs,
+                                               Set<Attribute> includedAttributes) {
+        return take(roots, toastMSGs, Filter.DEFAULT, includedAttributes, true);
+    }
+
+    private static UiElementSnapshot take(AccessibilityNodeInfo[] roots, List<CharSequence> toastMSGs,
+                                          Filter filter, Set<Attribute> includedAttributes,
+                                          boolean isLazy) {
+        UiElementSnapshot uiRoot = new UiElementSnapshot(roots, filter, includedAttributes, isLazy);
         for (CharSequence toastMSG : toastMSGs) {
             Logger.info(String.format("Adding toast message to root: %s", toastMSG));
             uiRoot.addToastMsg(toastMSG);
@@ -210,19 +291,49 @@ public class UiElementSnapshot extends UiElement<AccessibilityNodeInfo, UiElemen
     }
 
     public static UiElementSnapshot take(AccessibilityNodeInfo rootElement, Set<Attribute> includedAttributes) {
+        return take(rootElement, Filter.DEFAULT, includedAttributes);
+    }
+
+    /**
+     * Same as {@link #take(AccessibilityNodeInfo, Set)}, but descendants are only collected
+     * when they are accessed for the first time.
+     */
+    public static UiElementSnapshot takeLazily(AccessibilityNodeInfo rootElement,
+                                               Set<Attribute> includedAttributes) {
         return new UiElementSnapshot(rootElement, AxNodeInfoHelper.calculateIndex(rootElement), 0,
-                includedAttributes);
+                Filter.DEFAULT, includedAttributes, true);
     }
 
     public static UiElementSnapshot take(AccessibilityNodeInfo rootElement, int maxDepth,
                                          Set<Attribute> includedAttributes) {
+        return take(rootElement, new Filter(maxDepth, false, null), includedAttributes);
+    }
+
+    /**
+     * Takes a snapshot of the given node and its descendants accepted by the given filter.
+     * The given node itself is always included.
+     */
+    public static UiElementSnapshot take(AccessibilityNodeInfo rootElement, Filter filter,
+                                         Set<Attribute> includedAttributes) {
         return new UiElementSnapshot(rootElement, AxNodeInfoHelper.calculateIndex(rootElement), 0,
-                maxDepth, includedAttributes);
+                filter, includedAttributes, false);
+    }
+
+    /**
+     * Takes a snapshot of the given node only without its descendants.
+     * The index of the node is only calculated if it is included into the snapshot attributes.
+     */
+    public static UiElementSnapshot takeShallow(AccessibilityNodeInfo node, Set<Attribute> includedAttributes) {
+        int index = includedAttributes.contains(Attribute.INDEX)
+                ? AxNodeInfoHelper.calculateIndex(node)
+                : 0;
+        return new UiElementSnapshot(node, index, 0, new Filter(0, false, null), includedAttributes, false);
     }
 
     private static UiElementSnapshot take(AccessibilityNodeInfo rootElement, int index, int depth,
-                                          Set<Attribute> includedAttributes) {
-        return new UiElementSnapshot(rootElement, index, depth, includedAttributes);
+                                          Filter filter, Set<Attribute> includedAttributes,
+                                          boolean isLazy) {
+        return new UiElementSnapshot(rootElement, index, depth, filter, includedAttributes, isLazy);
     }
 
     private void addToastMsg(CharSequence tokenMSG) {
@@ -232,16 +343,19 @@ public class UiElementSnapshot extends UiElement<AccessibilityNodeInfo, UiElemen
         node.setPackageName("com.android.settings");
         node.setVisibleToUser(true);
         setField("mSealed", true, node);
-        this.children.add(new UiElementSnapshot(node, this.children.size(), 0,
-                new HashSet<>(Arrays.asList(TOAST_NODE_ATTRIBUTES))));
+        if (!filter.accepts(node) || filter.isDepthExceeded(this.depth + 1)) {
+            return;
+        }
+        this.children.add(new UiElementSnapshot(node, this.children.size(), 0, filter,
+                new HashSet<>(Arrays.asList(TOAST_NODE_ATTRIBUTES)), false));
     }
 
     private List<UiElementSnapshot> buildChildren(AccessibilityNodeInfo node) {
         final int childCount = node.getChildCount();
-        if (childCount == 0 || (maxDepth >= 0 && depth >= maxDepth)) {
-            if (depth >= maxDepth) {
+        if (childCount == 0 || filter.isDepthExceeded(depth + 1)) {
+            if (childCount > 0 && filter.maxDepth > 0) {
                 Logger.info(String.format("Skipping building children of '%s' because the maximum " +
-                        "recursion depth (%s) has been reached", node, maxDepth));
+                        "recursion depth (%s) has been reached", node, filter.maxDepth));
             }
             return Collections.emptyList();
         }
@@ -256,8 +370,8 @@ public class UiElementSnapshot extends UiElement<AccessibilityNodeInfo, UiElemen
             }
 
             // Ignore if the element is not visible on the screen
-            if (areInvisibleElementsAllowed || child.isVisibleToUser()) {
-                children.add(take(child, index, depth + 1, includedAttributes));
+            if ((areInvisibleElementsAllowed || child.isVisibleToUser()) && filter.accepts(child)) {
+                children.add(take(child, index, depth + 1, filter, includedAttributes, isLazy));
             }
         }
         return children;
@@ -265,6 +379,9 @@ public class UiElementSnapshot extends UiElement<AccessibilityNodeInfo, UiElemen
 
     @Override
     public List<UiElementSnapshot> getChildren() {
+        if (children == null) {
+            children = buildChildren(Objects.requireNonNull(getNode()));
+        }
         return Collections.unmodifiableList(children);
     }
 
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.api;
+
+import java.util.List;
+
+import io.appium.uiautomator2.utils.ScreenFingerprint;
+
+public class ScreenDiffResultModel extends BaseModel {
+    // The ratio of changed screen cells in range 0..1
+    public Double changedRatio;
+    // The average and the maximum color channel difference of screen cells in range 0..255
+    public Double meanDelta;
+    public Integer maxDelta;
+    // Bounding boxes of changed screen areas
+    public List<ScreenFingerprint.Region> changedRegions;
+
+    public ScreenDiffResultModel() {}
+
+    public ScreenDiffResultModel(ScreenFingerprint.Diff diff) {
+        this.changedRatio = diff.changedRatio;
+        this.meanDelta = diff.meanDelta;
+        this.maxDelta = diff.maxDelta;
+        this.changedRegions = diff.changedRegions;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.api;
+
+public class ScreenStabilityModel extends BaseModel {
+    // Whether the screen has become stable before the timeout
+    public Boolean stable;
+    public Long elapsedMs;
+    // The count of captured frames
+    public Integer framesCount;
+    // The difference between the last two captured frames
+    public ScreenDiffResultModel lastDiff;
+
+    public ScreenStabilityModel() {}
+}
@@ -20,12 +20,15 @@ import java.util.Map;
 
 public class SessionDetailsModel extends BaseModel {
     public Map<String, Integer> lastScrollData;
+    public Map<String, Long> elementsCacheStats;
 
     public SessionDetailsModel() {}
 
     public SessionDetailsModel(
-            Map<String, Integer> lastScrollData
+            Map<String, Integer> lastScrollData,
+            Map<String, Long> elementsCacheStats
     ) {
         this.lastScrollData = lastScrollData;
+        this.elementsCacheStats = elementsCacheStats;
     }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.api;
+
+import java.util.List;
+
+import io.appium.uiautomator2.utils.SourceTreeDiff;
+
+public class SourceDiffResultModel extends BaseModel {
+    public static final String STATUS_UNCHANGED = "unchanged";
+    public static final String STATUS_CHANGED = "changed";
+    public static final String STATUS_FULL = "full";
+
+    // The version token of the actual page source
+    public String version;
+    // One of: unchanged, changed, full
+    public String status;
+    // Only set if the status is full
+    public String source;
+    // Only set if the status is changed
+    public List<SourceTreeDiff.Removal> removed;
+    public List<SourceTreeDiff.Insertion> inserted;
+    public List<SourceTreeDiff.AttributesChange> changed;
+
+    public SourceDiffResultModel() {}
+
+    public static SourceDiffResultModel unchanged(String version) {
+        SourceDiffResultModel result = new SourceDiffResultModel();
+        result.version = version;
+        result.status = STATUS_UNCHANGED;
+        return result;
+    }
+
+    public static SourceDiffResultModel changed(String version, SourceTreeDiff diff) {
+        SourceDiffResultModel result = new SourceDiffResultModel();
+        result.version = version;
+        result.status = STATUS_CHANGED;
+        result.removed = diff.getRemoved();
+        result.inserted = diff.getInserted();
+        result.changed = diff.getChanged();
+        return result;
+    }
+
+    public static SourceDiffResultModel full(String version, String source) {
+        SourceDiffResultModel result = new SourceDiffResultModel();
+        result.version = version;
+        result.status = STATUS_FULL;
+        result.source = source;
+        return result;
+    }
+}
@@ -16,17 +16,26 @@
 
 package io.appium.uiautomator2.model.api;
 
+import java.util.Map;
+
 public class StatusModel extends BaseModel {
     public Boolean ready;
     public String message;
+    public Map<String, Object> mjpegServer;
+    // Counters of the pooled buffers allocator used by the HTTP server
+    public Map<String, Object> allocator;
 
     public StatusModel() {}
 
     public StatusModel(
             Boolean ready,
-            String message
+            String message,
+            Map<String, Object> mjpegServer,
+            Map<String, Object> allocator
     ) {
         this.ready = ready;
         this.message = message;
+        this.mjpegServer = mjpegServer;
+        this.allocator = allocator;
     }
 }
@@ -20,6 +20,9 @@ public class ElementResponseAttributes extends AbstractSetting<String> {
     private static final String SETTING_NAME = "elementResponseAttributes";
     private static final String DEFAULT_ATTRIBUTES = "name,text";
     private String value = DEFAULT_ATTRIBUTES;
+    // Response attributes are requested for each found element,
+    // so there is no need to split the setting value every time
+    private String[] attributes = DEFAULT_ATTRIBUTES.split(",");
 
     public ElementResponseAttributes() {
         super(String.class, SETTING_NAME);
@@ -36,11 +39,12 @@ public class ElementResponseAttributes extends AbstractSetting<String> {
     }
 
     public String[] asArray() {
-        return value.split(",");
+        return attributes.clone();
     }
 
     @Override
     protected void apply(String elementResponseAttributes) {
         value = elementResponseAttributes;
+        attributes = elementResponseAttributes.split(",");
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.settings;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+import io.appium.uiautomator2.model.AppiumUIA2Driver;
+import io.appium.uiautomator2.model.Session;
+
+/**
+ * The maximum number of elements that could be stored in the elements cache
+ * of the current session. Least recently used elements get evicted from the cache
+ * if this limit is exceeded.
+ *
+ * Type: `Integer`
+ * Acceptable range: `1` and greater
+ * Default value: `500`
+ */
+public class ElementsCacheCapacity extends AbstractSetting<Integer> {
+    private static final String SETTING_NAME = "elementsCacheCapacity";
+    private static final int DEFAULT_VALUE = 500;
+    private int value = DEFAULT_VALUE;
+
+    public ElementsCacheCapacity() {
+        super(Integer.class, SETTING_NAME);
+    }
+
+    @Override
+    public Integer getValue() {
+        return value;
+    }
+
+    @Override
+    public Integer getDefaultValue() {
+        return DEFAULT_VALUE;
+    }
+
+    @Override
+    protected void apply(Integer value) {
+        if (value == null || value < 1) {
+            throw new InvalidArgumentException(String.format(
+                    "Invalid %s value specified, must be a positive integer. %s was given",
+                    SETTING_NAME, value));
+        }
+        this.value = value;
+        Session session = AppiumUIA2Driver.getInstance().getSession();
+        if (session != null) {
+            session.getElementsCache().setCapacity(value);
+        }
+    }
+}
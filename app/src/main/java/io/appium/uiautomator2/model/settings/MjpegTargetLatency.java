@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.settings;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+import io.appium.uiautomator2.server.ServerConfig;
+
+/**
+ * The latency in milliseconds the MJPEG server tries to keep for each frame
+ * from the start of its encoding until it has been sent to the slowest client.
+ * Only has effect if `mjpegAdaptiveStreaming` is enabled.
+ *
+ * Type: `Integer`
+ * Acceptable range: `20` to `5000`
+ * Default value: `200`
+ */
+public class MjpegTargetLatency extends AbstractSetting<Integer> {
+    public static final String SETTING_NAME = "mjpegTargetLatency";
+    private static final int DEFAULT_VALUE = 200;
+    private static final int MIN_VALUE = 20;
+    private static final int MAX_VALUE = 5000;
+
+    public MjpegTargetLatency() {
+        super(Integer.class, SETTING_NAME);
+    }
+
+    @Override
+    public Integer getValue() {
+        return ServerConfig.getMjpegTargetLatency();
+    }
+
+    @Override
+    public Integer getDefaultValue() {
+        return DEFAULT_VALUE;
+    }
+
+    @Override
+    public boolean isTiedToSession() {
+        return false;
+    }
+
+    @Override
+    protected void apply(Integer value) {
+        if (value == null || value < MIN_VALUE || value > MAX_VALUE) {
+            throw new InvalidArgumentException(String.format(
+                "Invalid %s value specified, must be in range %s..%s. %s was given",
+                SETTING_NAME,
+                MIN_VALUE,
+                MAX_VALUE,
+                value
+            ));
+        }
+        ServerConfig.setMjpegTargetLatency(value);
+    }
+}
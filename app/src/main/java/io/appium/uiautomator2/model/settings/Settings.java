@@ -21,6 +21,7 @@ public enum Settings {
     ALLOW_INVISIBLE_ELEMENTS(new AllowInvisibleElements()),
     COMPRESSED_LAYOUT_HIERARCHY(new CompressedLayoutHierarchy()),
     ELEMENT_RESPONSE_ATTRIBUTES(new ElementResponseAttributes()),
+    ELEMENTS_CACHE_CAPACITY(new ElementsCacheCapacity()),
     ENABLE_MULTI_WINDOWS(new EnableMultiWindows()),
     ENABLE_NOTIFICATION_LISTENER(new EnableNotificationListener()),
     KEY_INJECTION_DELAY(new KeyInjectionDelay()),
@@ -43,7 +44,10 @@ public enum Settings {
     MJPEG_SCALING_FACTOR(new MjpegScalingFactor()),
     MJPEG_SERVER_SCREENSHOT_QUALITY(new MjpegServerScreenshotQuality()),
     MJPEG_BILINEAR_FILTERING(new MjpegBilinearFiltering()),
-    USE_RESOURCES_FOR_ORIENTATION_DETECTION(new UseResourcesForOrientationDetection());
+    MJPEG_ADAPTIVE_STREAMING(new MjpegAdaptiveStreaming()),
+    MJPEG_TARGET_LATENCY(new MjpegTargetLatency()),
+    USE_RESOURCES_FOR_ORIENTATION_DETECTION(new UseResourcesForOrientationDetection()),
+    SPECULATIVE_SNAPSHOTS(new SpeculativeSnapshots());
 
     private final ISetting<?> setting;
 
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.settings;
+
+import io.appium.uiautomator2.core.SpeculativeSnapshotter;
+
+/**
+ * Whether to build the snapshot of the accessibility hierarchy in background
+ * after a command, which might change the UI, has been completed and the UI has settled.
+ * The following XPath lookup from the page root reuses this snapshot if no accessibility
+ * events have been received since it was built. This only works while the notification
+ * listener is active.
+ *
+ * Type: `Boolean`
+ * Default value: `false`
+ */
+public class SpeculativeSnapshots extends AbstractSetting<Boolean> {
+    private static final String SETTING_NAME = "speculativeSnapshots";
+    private static final boolean DEFAULT_VALUE = false;
+    private boolean value = DEFAULT_VALUE;
+
+    public SpeculativeSnapshots() {
+        super(Boolean.class, SETTING_NAME);
+    }
+
+    @Override
+    public Boolean getValue() {
+        return value;
+    }
+
+    @Override
+    public Boolean getDefaultValue() {
+        return DEFAULT_VALUE;
+    }
+
+    @Override
+    protected void apply(Boolean value) {
+        this.value = value;
+        if (!value) {
+            SpeculativeSnapshotter.getInstance().discard();
+        }
+    }
+}
@@ -46,10 +46,13 @@ import io.appium.uiautomator2.handler.GetDeviceSize;
 import io.appium.uiautomator2.handler.GetDisplayDensity;
 import io.appium.uiautomator2.handler.GetElementAttribute;
 import io.appium.uiautomator2.handler.GetElementScreenshot;
+import io.appium.uiautomator2.handler.GetElementsProperties;
+import io.appium.uiautomator2.handler.GetElementsScreenshots;
 import io.appium.uiautomator2.handler.GetName;
 import io.appium.uiautomator2.handler.GetOrientation;
 import io.appium.uiautomator2.handler.GetRect;
 import io.appium.uiautomator2.handler.GetRotation;
+import io.appium.uiautomator2.handler.GetScreenDiff;
 import io.appium.uiautomator2.handler.GetSessionDetails;
 import io.appium.uiautomator2.handler.GetSessions;
 import io.appium.uiautomator2.handler.GetSettings;
@@ -70,7 +73,9 @@ import io.appium.uiautomator2.handler.SendKeysToElement;
 import io.appium.uiautomator2.handler.SetClipboard;
 import io.appium.uiautomator2.handler.SetOrientation;
 import io.appium.uiautomator2.handler.SetRotation;
+import io.appium.uiautomator2.handler.SetScreenBaseline;
 import io.appium.uiautomator2.handler.Source;
+import io.appium.uiautomator2.handler.SourceDiff;
 import io.appium.uiautomator2.handler.Status;
 import io.appium.uiautomator2.handler.Swipe;
 import io.appium.uiautomator2.handler.Tap;
@@ -80,7 +85,10 @@ import io.appium.uiautomator2.handler.TouchMove;
 import io.appium.uiautomator2.handler.TouchUp;
 import io.appium.uiautomator2.handler.UpdateSettings;
 import io.appium.uiautomator2.handler.W3CActions;
+import io.appium.uiautomator2.handler.WaitForCondition;
+import io.appium.uiautomator2.handler.WaitForScreenStability;
 import io.appium.uiautomator2.handler.request.BaseRequestHandler;
+import io.appium.uiautomator2.handler.request.LargeBodyCommandHandler;
 import io.appium.uiautomator2.http.AppiumResponse;
 import io.appium.uiautomator2.http.IHttpRequest;
 import io.appium.uiautomator2.http.IHttpResponse;
@@ -147,6 +155,13 @@ public class AppiumServlet implements IHttpServlet {
         register(postHandler, new SetClipboard("/session/:sessionId/appium/device/set_clipboard"));
         register(postHandler, new AcceptAlert("/session/:sessionId/alert/accept"));
         register(postHandler, new DismissAlert("/session/:sessionId/alert/dismiss"));
+        register(postHandler, new WaitForCondition("/session/:sessionId/appium/wait"));
+        register(postHandler, new GetElementsProperties("/session/:sessionId/appium/elements/properties"));
+        register(postHandler, new GetElementsScreenshots("/session/:sessionId/appium/elements/screenshots"));
+        register(postHandler, new SourceDiff("/session/:sessionId/appium/source/diff"));
+        register(postHandler, new WaitForScreenStability("/session/:sessionId/appium/screen/waitStable"));
+        register(postHandler, new SetScreenBaseline("/session/:sessionId/appium/screen/baseline"));
+        register(postHandler, new GetScreenDiff("/session/:sessionId/appium/screen/diff"));
 
         register(postHandler, new io.appium.uiautomator2.handler.gestures.Drag("/session/:sessionId/appium/gestures/drag"));
         register(postHandler, new io.appium.uiautomator2.handler.gestures.Fling("/session/:sessionId/appium/gestures/fling"));
@@ -193,8 +208,8 @@ public class AppiumServlet implements IHttpServlet {
         registerOn.put(handler.getMappedUri(), handler);
     }
 
-    private BaseRequestHandler findMatcher(IHttpRequest request, Map<String, BaseRequestHandler> handler) {
-        String[] urlToMatchSections = getRequestUrlSections(request.uri());
+    private BaseRequestHandler findMatcher(String uri, Map<String, BaseRequestHandler> handler) {
+        String[] urlToMatchSections = getRequestUrlSections(uri);
         for (Map.Entry<String, ? extends BaseRequestHandler> entry : handler.entrySet()) {
             String[] mapperUrlSections = getMapperUrlSectionsCached(entry.getKey());
             if (isFor(mapperUrlSections, urlToMatchSections)) {
@@ -247,21 +262,31 @@ public class AppiumServlet implements IHttpServlet {
         return true;
     }
 
+    @Nullable
+    private BaseRequestHandler findHandler(String method, String uri) {
+        if ("GET".equals(method)) {
+            return findMatcher(uri, getHandler);
+        } else if ("POST".equals(method)) {
+            return findMatcher(uri, postHandler);
+        } else if ("DELETE".equals(method)) {
+            return findMatcher(uri, deleteHandler);
+        }
+        return null;
+    }
+
     @Override
     public void handleHttpRequest(IHttpRequest request, IHttpResponse response) {
-        BaseRequestHandler handler = null;
-        if ("GET".equals(request.method())) {
-            handler = findMatcher(request, getHandler);
-        } else if ("POST".equals(request.method())) {
-            handler = findMatcher(request, postHandler);
-        } else if ("DELETE".equals(request.method())) {
-            handler = findMatcher(request, deleteHandler);
-        }
+        BaseRequestHandler handler = findHandler(request.method(), request.uri());
         if (handler != null) {
             handleRequest(request, response, handler);
         }
     }
 
+    @Override
+    public boolean acceptsLargeBody(String method, String uri) {
+        return findHandler(method, uri) instanceof LargeBodyCommandHandler;
+    }
+
     private void handleRequest(IHttpRequest request, IHttpResponse response, BaseRequestHandler handler) {
         addHandlerAttributesToRequest(request, handler.getMappedUri());
         AppiumResponse result = handler.handle(request);
@@ -19,11 +19,13 @@ package io.appium.uiautomator2.server;
 import java.util.HashMap;
 import java.util.Map;
 
+import io.appium.uiautomator2.model.settings.MjpegAdaptiveStreaming;
 import io.appium.uiautomator2.model.settings.MjpegBilinearFiltering;
 import io.appium.uiautomator2.model.settings.MjpegScalingFactor;
 import io.appium.uiautomator2.model.settings.MjpegServerFramerate;
 import io.appium.uiautomator2.model.settings.MjpegServerPort;
 import io.appium.uiautomator2.model.settings.MjpegServerScreenshotQuality;
+import io.appium.uiautomator2.model.settings.MjpegTargetLatency;
 import io.appium.uiautomator2.model.settings.ServerPort;
 
 public class ServerConfig {
@@ -33,6 +35,10 @@ public class ServerConfig {
     public static final int DEFAULT_MJPEG_SCALING_FACTOR = 50;
     public static final int DEFAULT_MJPEG_SERVER_SCREENSHOT_QUALITY = 50;
     public static final boolean DEFAULT_MJPEG_SERVER_BILINEAR_FILTERING = false;
+    public static final boolean DEFAULT_MJPEG_ADAPTIVE_STREAMING = false;
+    public static final int DEFAULT_MJPEG_TARGET_LATENCY = 200;
+    public static final int DEFAULT_MAX_REQUEST_BODY_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_LARGE_REQUEST_BODY_SIZE = 16 * 1024 * 1024;
 
     private final static int SERVER_PORT = getValueFromEnvOrDefault(
         "SERVER_PORT",
@@ -51,6 +57,17 @@ public class ServerConfig {
         DEFAULT_MJPEG_SERVER_SCREENSHOT_QUALITY);
     private final static boolean MJPEG_BILINEAR_FILTERING =
         Boolean.parseBoolean(System.getenv("MJPEG_BILINEAR_FILTERING"));
+    private final static boolean MJPEG_ADAPTIVE_STREAMING =
+        Boolean.parseBoolean(System.getenv("MJPEG_ADAPTIVE_STREAMING"));
+    private final static int MJPEG_TARGET_LATENCY = getValueFromEnvOrDefault(
+        "MJPEG_TARGET_LATENCY",
+        DEFAULT_MJPEG_TARGET_LATENCY);
+    private final static int MAX_REQUEST_BODY_SIZE = getValueFromEnvOrDefault(
+        "MAX_REQUEST_BODY_SIZE",
+        DEFAULT_MAX_REQUEST_BODY_SIZE);
+    private final static int MAX_LARGE_REQUEST_BODY_SIZE = getValueFromEnvOrDefault(
+        "MAX_LARGE_REQUEST_BODY_SIZE",
+        DEFAULT_MAX_LARGE_REQUEST_BODY_SIZE);
 
     // In-memory overrides
     private static Map<String, Object> overrides = new HashMap<>();
@@ -111,6 +128,33 @@ public class ServerConfig {
             MJPEG_BILINEAR_FILTERING);
     }
 
+    public static boolean isMjpegAdaptiveStreaming() {
+        return getValueFromOverridesOrDefault(
+            MjpegAdaptiveStreaming.SETTING_NAME,
+            MJPEG_ADAPTIVE_STREAMING);
+    }
+
+    public static int getMjpegTargetLatency() {
+        return getValueFromOverridesOrDefault(
+            MjpegTargetLatency.SETTING_NAME,
+            MJPEG_TARGET_LATENCY);
+    }
+
+    /**
+     * @return The maximum size of a request body in bytes
+     */
+    public static int getMaxRequestBodySize() {
+        return MAX_REQUEST_BODY_SIZE;
+    }
+
+    /**
+     * @return The maximum size of a request body in bytes for commands whose handlers
+     * implement {@link io.appium.uiautomator2.handler.request.LargeBodyCommandHandler}
+     */
+    public static int getMaxLargeRequestBodySize() {
+        return MAX_LARGE_REQUEST_BODY_SIZE;
+    }
+
     public static void setServerPort(int serverPort) {
         setOverridesValue(ServerPort.SETTING_NAME, serverPort);
     }
@@ -140,4 +184,14 @@ public class ServerConfig {
             MjpegBilinearFiltering.SETTING_NAME,
             mjpegBilinearFiltering);
     }
+
+    public static void setMjpegAdaptiveStreaming(boolean mjpegAdaptiveStreaming) {
+        setOverridesValue(
+            MjpegAdaptiveStreaming.SETTING_NAME,
+            mjpegAdaptiveStreaming);
+    }
+
+    public static void setMjpegTargetLatency(int mjpegTargetLatency) {
+        setOverridesValue(MjpegTargetLatency.SETTING_NAME, mjpegTargetLatency);
+    }
 }
@@ -25,9 +25,12 @@ import android.os.Looper;
 import android.os.PowerManager;
 import android.os.SystemClock;
 
+import androidx.annotation.Nullable;
 import androidx.test.platform.app.InstrumentationRegistry;
 import androidx.test.uiautomator.Configurator;
 
+import java.util.Map;
+
 import io.appium.uiautomator2.common.exceptions.SessionRemovedException;
 import io.appium.uiautomator2.model.settings.Settings;
 import io.appium.uiautomator2.model.settings.ShutdownOnPowerDisconnect;
@@ -259,6 +262,15 @@ public class ServerInstrumentation {
         Logger.info("MJPEG Server stoppped");
     }
 
+    /**
+     * @return The statistics of the MJPEG server or null if it is not running
+     */
+    @Nullable
+    public Map<String, Object> getMjpegServerStats() {
+        MjpegScreenshotServer server = mjpegScreenshotServerThread;
+        return server == null || !server.isAlive() ? null : server.getStats();
+    }
+
     public static class PowerConnectionReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import android.graphics.Bitmap;
+
+import io.appium.uiautomator2.utils.Logger;
+
+/**
+ * Detects whether the screen content has changed since the previous frame.
+ *
+ * Only every {@link #ROW_SAMPLING_STEP}th row of pixels is hashed, which is enough to notice
+ * most visible changes of text or controls, while being much cheaper than JPEG compression.
+ * Changes, which only affect skipped rows, are not detected, so unchanged frames still have
+ * to be refreshed from time to time. See {@link FrameSkipPolicy}.
+ * The instance is not thread-safe.
+ */
+class FrameChangeDetector {
+    static final int ROW_SAMPLING_STEP = 4;
+    private static final long HASH_SEED = 0xcbf29ce484222325L;
+    private static final long HASH_MULTIPLIER = 0x100000001b3L;
+
+    private int[] rowPixels = new int[0];
+    private long lastHash;
+    private int lastWidth = -1;
+    private int lastHeight = -1;
+
+    static long hashPixels(long hash, int[] pixels, int length) {
+        long result = hash;
+        for (int i = 0; i < length; ++i) {
+            result = (result ^ pixels[i]) * HASH_MULTIPLIER;
+        }
+        return result;
+    }
+
+    private long computeHash(Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        if (rowPixels.length < width) {
+            rowPixels = new int[width];
+        }
+        long hash = HASH_SEED;
+        for (int y = 0; y < height; y += ROW_SAMPLING_STEP) {
+            bitmap.getPixels(rowPixels, 0, width, 0, y, width, 1);
+            hash = hashPixels(hash, rowPixels, width);
+        }
+        return hash;
+    }
+
+    /**
+     * @param bitmap the captured screenshot. Its pixels must be readable,
+     *               see {@link MjpegFrameEncoder#toSoftwareBitmap(Bitmap)}
+     * @return true if the screenshot differs from the one passed to the previous call
+     */
+    boolean hasChanged(Bitmap bitmap) {
+        long hash;
+        try {
+            hash = computeHash(bitmap);
+        } catch (RuntimeException e) {
+            Logger.debug("Cannot calculate the screenshot hash", e);
+            reset();
+            return true;
+        }
+        return hasChanged(hash, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    /**
+     * @param hash the hash of the screenshot pixels
+     * @param width the screenshot width
+     * @param height the screenshot height
+     * @return true if the screenshot differs from the one passed to the previous call
+     */
+    boolean hasChanged(long hash, int width, int height) {
+        boolean isChanged = hash != lastHash || width != lastWidth || height != lastHeight;
+        lastHash = hash;
+        lastWidth = width;
+        lastHeight = height;
+        return isChanged;
+    }
+
+    void reset() {
+        lastWidth = -1;
+        lastHeight = -1;
+    }
+}
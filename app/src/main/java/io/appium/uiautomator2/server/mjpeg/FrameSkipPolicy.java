@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+/**
+ * Decides whether the captured screenshot should be encoded or skipped as unchanged.
+ *
+ * Even unchanged screenshots get encoded every {@link #KEEPALIVE_INTERVAL_MS}. This keeps idle
+ * connections alive and corrects changes, which {@link FrameChangeDetector} might have missed.
+ * Newly connected clients and changed encoding parameters also require a fresh frame.
+ * The instance is not thread-safe.
+ */
+class FrameSkipPolicy {
+    static final long KEEPALIVE_INTERVAL_MS = 1000;
+
+    private boolean hasEncodedFrame = false;
+    private String lastEncodingParams;
+    private long lastEncodedTimestamp;
+    private int lastClientsCount;
+
+    /**
+     * @param isChanged whether the screenshot differs from the previous one
+     * @param encodingParams the current encoding parameters
+     * @param clientsCount the current count of connected clients
+     * @param now the current timestamp in milliseconds
+     * @return true if the screenshot should be encoded
+     */
+    boolean shouldEncode(boolean isChanged, String encodingParams, int clientsCount, long now) {
+        boolean result = isChanged
+                || !hasEncodedFrame
+                || !encodingParams.equals(lastEncodingParams)
+                || clientsCount > lastClientsCount
+                || now - lastEncodedTimestamp >= KEEPALIVE_INTERVAL_MS;
+        lastClientsCount = clientsCount;
+        return result;
+    }
+
+    /**
+     * Must be called after the screenshot has been successfully encoded.
+     */
+    void onFrameEncoded(String encodingParams, long now) {
+        hasEncodedFrame = true;
+        lastEncodingParams = encodingParams;
+        lastEncodedTimestamp = now;
+    }
+
+    void reset() {
+        hasEncodedFrame = false;
+    }
+}
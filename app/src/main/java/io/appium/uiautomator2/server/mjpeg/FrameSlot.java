@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Bounded hand-off between two pipeline stages, which holds at most one item.
+ * A new item always replaces the one which has not been taken yet, so the consumer
+ * only gets the most recent item and the producer never blocks. The replaced item
+ * is returned to the producer, so it could release the resources associated with it.
+ *
+ * @param <T> the item type
+ */
+class FrameSlot<T> {
+    @Nullable
+    private T item;
+
+    /**
+     * @param newItem the item to put
+     * @return The replaced item, which has not been taken by the consumer, or null
+     */
+    @Nullable
+    synchronized T put(T newItem) {
+        T previousItem = item;
+        item = newItem;
+        notifyAll();
+        return previousItem;
+    }
+
+    /**
+     * Waits until an item is available and takes it from the slot.
+     *
+     * @param timeoutMs the maximum time to wait in milliseconds
+     * @return The taken item or null if the timeout has expired
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     */
+    @Nullable
+    synchronized T take(long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        long remainingMs = timeoutMs;
+        while (item == null && remainingMs > 0) {
+            wait(remainingMs);
+            remainingMs = deadline - System.currentTimeMillis();
+        }
+        return clear();
+    }
+
+    /**
+     * @return The item, which has not been taken yet, or null
+     */
+    @Nullable
+    synchronized T clear() {
+        T result = item;
+        item = null;
+        return result;
+    }
+}
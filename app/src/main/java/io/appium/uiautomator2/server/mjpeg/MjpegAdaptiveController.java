@@ -0,0 +1,202 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.appium.uiautomator2.server.ServerConfig;
+
+/**
+ * Adapts the MJPEG stream parameters to the measured encode time and clients send time
+ * if `mjpegAdaptiveStreaming` setting is enabled.
+ *
+ * The estimated frame latency is the average encode time plus the average send time
+ * of the slowest client. If it exceeds the target latency then the stream gets cheaper
+ * step by step: JPEG quality is decreased first, then the scaling factor and then the framerate.
+ * If there is enough headroom then the parameters are restored in the reverse order.
+ * The configured quality, scaling factor and framerate values are never exceeded.
+ * The framerate is also limited by the slowest stage, so no screenshots are
+ * taken only to be dropped later.
+ */
+class MjpegAdaptiveController {
+    static final int MIN_QUALITY = 20;
+    static final int MIN_SCALING_FACTOR = 25;
+    static final int MIN_FRAMERATE = 1;
+    static final long ADJUSTMENT_INTERVAL_MS = 1000;
+    private static final int QUALITY_STEP = 10;
+    private static final int SCALING_FACTOR_STEP = 10;
+    // The estimated latency must be below this fraction of the target one before parameters are improved
+    private static final double HEADROOM_RATIO = 0.7;
+    // The weight of the most recent measurement in the encoding statistics
+    private static final double ENCODING_STATS_SMOOTHING = 0.2;
+
+    private volatile int quality;
+    private volatile int scalingFactor;
+    private volatile int framerate;
+    private volatile double averageEncodeTimeMs = 0;
+    private volatile double averageFrameLength = 0;
+    private volatile double slowestSendTimeMs = 0;
+    private long lastAdjustmentTimestamp = 0;
+
+    MjpegAdaptiveController() {
+        reset();
+    }
+
+    private void reset() {
+        quality = ServerConfig.getMjpegServerScreenshotQuality();
+        scalingFactor = ServerConfig.getMjpegScalingFactor();
+        framerate = ServerConfig.getMjpegServerFramerate();
+    }
+
+    boolean isEnabled() {
+        return ServerConfig.isMjpegAdaptiveStreaming();
+    }
+
+    /**
+     * @return JPEG quality of encoded frames
+     */
+    int getQuality() {
+        int maxQuality = ServerConfig.getMjpegServerScreenshotQuality();
+        return isEnabled() ? Math.min(quality, maxQuality) : maxQuality;
+    }
+
+    /**
+     * @return Scaling factor of encoded frames in percents
+     */
+    int getScalingFactor() {
+        int maxScalingFactor = ServerConfig.getMjpegScalingFactor();
+        return isEnabled() ? Math.min(scalingFactor, maxScalingFactor) : maxScalingFactor;
+    }
+
+    /**
+     * @return The count of screenshots to take per second
+     */
+    int getFramerate() {
+        int maxFramerate = ServerConfig.getMjpegServerFramerate();
+        return isEnabled() ? Math.min(framerate, maxFramerate) : maxFramerate;
+    }
+
+    /**
+     * Records the encoding statistics of a single frame.
+     *
+     * @param encodeTimeMs The time spent on encoding in milliseconds
+     * @param frameLength The size of the encoded frame in bytes
+     */
+    void onFrameEncoded(long encodeTimeMs, int frameLength) {
+        if (averageEncodeTimeMs == 0) {
+            averageEncodeTimeMs = encodeTimeMs;
+            averageFrameLength = frameLength;
+            return;
+        }
+        averageEncodeTimeMs += ENCODING_STATS_SMOOTHING * (encodeTimeMs - averageEncodeTimeMs);
+        averageFrameLength += ENCODING_STATS_SMOOTHING * (frameLength - averageFrameLength);
+    }
+
+    /**
+     * Adjusts the stream parameters. Only has effect once per {@link #ADJUSTMENT_INTERVAL_MS},
+     * so each change has time to be reflected in the measurements.
+     *
+     * @param now The current timestamp in milliseconds
+     * @param slowestSendTimeMs The average frame send time of the slowest client
+     *                          or zero if it is unknown
+     */
+    synchronized void adjust(long now, double slowestSendTimeMs) {
+        this.slowestSendTimeMs = slowestSendTimeMs;
+        if (!isEnabled()) {
+            reset();
+            return;
+        }
+        if (now - lastAdjustmentTimestamp < ADJUSTMENT_INTERVAL_MS) {
+            return;
+        }
+        lastAdjustmentTimestamp = now;
+
+        // Configured values might have been changed since the last adjustment
+        quality = getQuality();
+        scalingFactor = getScalingFactor();
+        framerate = getFramerate();
+
+        double latencyMs = getEstimatedLatencyMs();
+        int targetLatencyMs = ServerConfig.getMjpegTargetLatency();
+        if (latencyMs > targetLatencyMs) {
+            degrade();
+        } else if (latencyMs < targetLatencyMs * HEADROOM_RATIO) {
+            improve();
+        }
+        framerate = Math.min(framerate, getSustainableFramerate());
+    }
+
+    private void degrade() {
+        int minQuality = Math.min(MIN_QUALITY, ServerConfig.getMjpegServerScreenshotQuality());
+        if (quality > minQuality) {
+            quality = Math.max(quality - QUALITY_STEP, minQuality);
+            return;
+        }
+        int minScalingFactor = Math.min(MIN_SCALING_FACTOR, ServerConfig.getMjpegScalingFactor());
+        if (scalingFactor > minScalingFactor) {
+            scalingFactor = Math.max(scalingFactor - SCALING_FACTOR_STEP, minScalingFactor);
+            return;
+        }
+        framerate = Math.max(framerate * 3 / 4, MIN_FRAMERATE);
+    }
+
+    private void improve() {
+        int maxFramerate = ServerConfig.getMjpegServerFramerate();
+        if (framerate < maxFramerate && framerate < getSustainableFramerate()) {
+            framerate++;
+            return;
+        }
+        int maxScalingFactor = ServerConfig.getMjpegScalingFactor();
+        if (scalingFactor < maxScalingFactor) {
+            scalingFactor = Math.min(scalingFactor + SCALING_FACTOR_STEP, maxScalingFactor);
+            return;
+        }
+        int maxQuality = ServerConfig.getMjpegServerScreenshotQuality();
+        if (quality < maxQuality) {
+            quality = Math.min(quality + QUALITY_STEP, maxQuality);
+        }
+    }
+
+    /**
+     * @return The framerate the slowest of encode and send stages is able to keep up with
+     */
+    private int getSustainableFramerate() {
+        double slowestStageTimeMs = Math.max(averageEncodeTimeMs, slowestSendTimeMs);
+        if (slowestStageTimeMs <= 0) {
+            return ServerConfig.getMjpegServerFramerate();
+        }
+        return Math.max((int) (1000 / slowestStageTimeMs), MIN_FRAMERATE);
+    }
+
+    double getEstimatedLatencyMs() {
+        return averageEncodeTimeMs + slowestSendTimeMs;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", isEnabled());
+        result.put("targetLatencyMs", ServerConfig.getMjpegTargetLatency());
+        result.put("estimatedLatencyMs", Math.round(getEstimatedLatencyMs()));
+        result.put("averageEncodeTimeMs", Math.round(averageEncodeTimeMs));
+        result.put("averageFrameLength", Math.round(averageFrameLength));
+        result.put("quality", getQuality());
+        result.put("scalingFactor", getScalingFactor());
+        result.put("framerate", getFramerate());
+        return result;
+    }
+}
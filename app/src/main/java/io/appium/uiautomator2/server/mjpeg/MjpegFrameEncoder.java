@@ -0,0 +1,165 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.os.Build;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import io.appium.uiautomator2.common.exceptions.CompressScreenshotException;
+import io.appium.uiautomator2.common.exceptions.TakeScreenshotException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+
+import static android.graphics.Bitmap.CompressFormat.JPEG;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Scales and compresses screenshots into complete multipart MJPEG frames.
+ *
+ * The scaled bitmap is reused between frames of the same size, and each frame is
+ * written into a single pooled buffer: the JPEG data is compressed right after
+ * the space reserved for the part header, which is filled in afterwards, so no
+ * intermediate arrays are allocated or copied. The instance is not thread-safe.
+ */
+class MjpegFrameEncoder {
+    private static final String BOUNDARY_STRING =
+        "--BoundaryString\r\n" +
+        "Content-type: image/jpg\r\n" +
+        "Content-Length: %d\r\n\r\n";
+    private static final byte[] END = "\r\n\r\n".getBytes(UTF_8);
+    static final int MAX_HEADER_LENGTH = formatHeader(Integer.MAX_VALUE).length;
+    private static final int INITIAL_JPEG_CAPACITY = 64 * 1024;
+
+    private final ByteBufAllocator allocator;
+    private final Matrix matrix = new Matrix();
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint plainPaint = new Paint();
+    private Bitmap scaledBitmap;
+    private Canvas scaledCanvas;
+    private int lastJpegLength = INITIAL_JPEG_CAPACITY;
+
+    MjpegFrameEncoder(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    private static byte[] formatHeader(int contentLength) {
+        return String.format(Locale.ROOT, BOUNDARY_STRING, contentLength).getBytes(UTF_8);
+    }
+
+    /**
+     * Allocates the frame buffer, which is ready to receive the JPEG data.
+     */
+    static ByteBuf allocateFrame(ByteBufAllocator allocator, int expectedJpegLength) {
+        // Some extra space for the case the next frame is a bit larger than the previous one
+        ByteBuf frame = allocator.heapBuffer(MAX_HEADER_LENGTH + expectedJpegLength
+                + expectedJpegLength / 4 + END.length);
+        frame.writerIndex(MAX_HEADER_LENGTH);
+        return frame;
+    }
+
+    /**
+     * Completes the frame allocated by {@link #allocateFrame(ByteBufAllocator, int)}
+     * after the JPEG data has been written into it.
+     *
+     * @return The length of the JPEG data
+     */
+    static int completeFrame(ByteBuf frame) {
+        final int jpegLength = frame.writerIndex() - MAX_HEADER_LENGTH;
+        frame.writeBytes(END);
+        byte[] header = formatHeader(jpegLength);
+        final int headerStart = MAX_HEADER_LENGTH - header.length;
+        frame.setBytes(headerStart, header);
+        frame.readerIndex(headerStart);
+        return jpegLength;
+    }
+
+    /**
+     * Hardware bitmaps cannot be drawn on a software canvas and their pixels cannot be read directly.
+     *
+     * @return The same bitmap if it is not backed by hardware memory or its software copy otherwise
+     */
+    static Bitmap toSoftwareBitmap(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O || bitmap.getConfig() != Bitmap.Config.HARDWARE) {
+            return bitmap;
+        }
+        Bitmap result = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        if (result == null) {
+            throw new TakeScreenshotException("Could not copy the hardware screenshot to the memory");
+        }
+        return result;
+    }
+
+    private Bitmap scale(Bitmap screenshot, float scale, boolean filter) {
+        if (Math.abs(scale - 1.0f) < Float.MIN_NORMAL) {
+            return screenshot;
+        }
+        Bitmap source = toSoftwareBitmap(screenshot);
+        int width = Math.max(Math.round(source.getWidth() * scale), 1);
+        int height = Math.max(Math.round(source.getHeight() * scale), 1);
+        if (scaledBitmap == null || scaledBitmap.getWidth() != width || scaledBitmap.getHeight() != height) {
+            release();
+            scaledBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            scaledCanvas = new Canvas(scaledBitmap);
+        }
+        matrix.setScale((float) width / source.getWidth(), (float) height / source.getHeight());
+        scaledCanvas.drawBitmap(source, matrix, filter ? filterPaint : plainPaint);
+        if (source != screenshot) {
+            source.recycle();
+        }
+        return scaledBitmap;
+    }
+
+    /**
+     * Encodes the given screenshot into a MJPEG frame. The screenshot itself is not recycled.
+     *
+     * @return The frame buffer. The caller is responsible for releasing it.
+     */
+    ByteBuf encode(Bitmap screenshot, float scale, int quality, boolean filter) {
+        Bitmap bitmap = scale(screenshot, scale, filter);
+        ByteBuf frame = allocateFrame(allocator, lastJpegLength);
+        boolean isCompressed = false;
+        try (ByteBufOutputStream stream = new ByteBufOutputStream(frame)) {
+            if (!bitmap.compress(JPEG, quality, stream)) {
+                throw new CompressScreenshotException(JPEG);
+            }
+            isCompressed = true;
+        } catch (IOException e) {
+            throw new CompressScreenshotException(JPEG, e);
+        } finally {
+            if (!isCompressed) {
+                frame.release();
+            }
+        }
+        lastJpegLength = completeFrame(frame);
+        return frame;
+    }
+
+    void release() {
+        if (scaledBitmap != null) {
+            scaledBitmap.recycle();
+            scaledBitmap = null;
+            scaledCanvas = null;
+        }
+    }
+}
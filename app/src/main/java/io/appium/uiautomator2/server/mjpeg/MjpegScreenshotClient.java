@@ -16,21 +16,35 @@
 
 package io.appium.uiautomator2.server.mjpeg;
 
-import android.os.SystemClock;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import io.appium.uiautomator2.utils.Logger;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-class MjpegScreenshotClient {
-    private static final int INPUT_NOT_READY_SLEEP_TIME_MS = 100;
+/**
+ * Delivers MJPEG frames to a single connected client.
+ *
+ * Each client only keeps the most recent frame, which has not been sent yet.
+ * The next frame is only written after the previous write has been completed and the channel
+ * is writable, so a slow client skips frames instead of blocking the stream or other clients.
+ */
+class MjpegScreenshotClient extends ChannelInboundHandlerAdapter {
     private static final byte[] START = (
         "HTTP/1.0 200 OK\r\n" +
         "Server: Android Screenshot Socket Server\r\n" +
@@ -42,91 +56,200 @@ class MjpegScreenshotClient {
         "Content-Type: multipart/x-mixed-replace; boundary=--BoundaryString\r\n\r\n"
     ).getBytes(UTF_8);
 
-    private final Socket socket;
-    private BufferedReader in;
-    private OutputStream out;
-    private boolean isClosed = false;
-    private boolean isInitialized = false;
-
-    MjpegScreenshotClient(Socket socket) {
-        this.socket = socket;
+    // The weight of the most recent measurement in the send statistics
+    private static final double SEND_STATS_SMOOTHING = 0.2;
+
+    private final List<MjpegScreenshotClient> clients;
+    // The latest frame, which has not been sent to the client yet
+    private final AtomicReference<ByteBuf> pendingFrame = new AtomicReference<>();
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean(false);
+    private final AtomicLong deliveredFramesCount = new AtomicLong();
+    private final AtomicLong droppedFramesCount = new AtomicLong();
+    // Exponentially weighted averages of the time needed to send a frame
+    // and of the send throughput in bytes per millisecond. Zero means not measured yet
+    private volatile double averageSendTimeMs = 0;
+    private volatile double averageThroughput = 0;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            isFlushScheduled.set(false);
+            flushPendingFrame();
+        }
+    };
+    private Channel channel;
+    private volatile boolean isInitialized = false;
+    // Is only accessed from the channel event loop
+    private boolean isWriteInProgress = false;
+
+    MjpegScreenshotClient(List<MjpegScreenshotClient> clients) {
+        this.clients = clients;
     }
 
     private String getRemoteAddress() {
-        if (socket == null) {
+        SocketAddress address = channel == null ? null : channel.remoteAddress();
+        if (address == null) {
             return "";
         }
-        return socket.getRemoteSocketAddress().toString().replaceAll("^/+", "");
-    }
-
-    boolean isClosed() {
-        return isClosed;
+        return address.toString().replaceAll("^/+", "");
     }
 
     boolean isInitialized() {
         return isInitialized;
     }
 
-    void closeSocket() {
-        if (isClosed()) {
-            return;
-        }
-
-        try {
-            socket.close();
-        } catch (IOException closeError) {
-            Logger.error("Error closing socket.", closeError);
-        }
-
-        this.isClosed = true;
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        channel = ctx.channel();
+        Logger.info(String.format(
+            Locale.ROOT,
+            "Screenshot broadcast client opened a connection %s",
+            getRemoteAddress()
+        ));
+        super.channelActive(ctx);
     }
 
-    void initialize() {
-        if (isInitialized()) {
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        // The content of the request does not matter. The stream starts as soon as anything is received
+        ReferenceCountUtil.release(msg);
+        if (isInitialized) {
             return;
         }
 
         Logger.info(String.format(
             Locale.ROOT,
-            "Screenshot broadcast client opened a connection %s",
+            "Screenshot broadcast starting for %s",
             getRemoteAddress()
         ));
+        ctx.writeAndFlush(Unpooled.wrappedBuffer(START));
+        isInitialized = true;
+        clients.add(this);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        clients.remove(this);
+        releasePendingFrame();
+        Logger.info(String.format(
+            Locale.ROOT,
+            "Screenshot broadcast client %s disconnected. Delivered frames: %d, dropped frames: %d",
+            getRemoteAddress(), deliveredFramesCount.get(), droppedFramesCount.get()
+        ));
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            flushPendingFrame();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        Logger.warn("Client socket connection not writable. Closing... ", cause);
+        ctx.close();
+    }
 
-        try {
-            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            this.out = socket.getOutputStream();
-        } catch (IOException e) {
-            Logger.error("Client failed to initialize", e);
-            closeSocket();
+    private void releasePendingFrame() {
+        ByteBuf frame = pendingFrame.getAndSet(null);
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    /**
+     * Schedules the given frame to be sent to the client. The previous frame
+     * is dropped if it has not been sent yet. This method never blocks.
+     *
+     * @param frame The frame to send. The client takes the ownership of the buffer.
+     */
+    void offer(ByteBuf frame) {
+        ByteBuf previousFrame = pendingFrame.getAndSet(frame);
+        if (previousFrame != null) {
+            previousFrame.release();
+            droppedFramesCount.incrementAndGet();
+        }
+        if (!channel.isActive()) {
+            releasePendingFrame();
             return;
         }
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            channel.eventLoop().execute(flushTask);
+        }
+    }
 
-        try {
-            while (!in.ready()) {
-               SystemClock.sleep(INPUT_NOT_READY_SLEEP_TIME_MS);
+    private void flushPendingFrame() {
+        if (isWriteInProgress || !channel.isWritable()) {
+            return;
+        }
+        ByteBuf frame = pendingFrame.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+
+        isWriteInProgress = true;
+        final int frameLength = frame.readableBytes();
+        final long writeStart = System.nanoTime();
+        channel.writeAndFlush(frame).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                isWriteInProgress = false;
+                if (future.isSuccess()) {
+                    deliveredFramesCount.incrementAndGet();
+                    updateSendStats(frameLength, (System.nanoTime() - writeStart) / 1e6);
+                    flushPendingFrame();
+                } else {
+                    Logger.warn("Client socket connection not writable. Closing... ", future.cause());
+                    future.channel().close();
+                }
             }
+        });
+    }
 
-            Logger.info(String.format(
-                Locale.ROOT,
-                "Screenshot broadcast starting for %s",
-                getRemoteAddress()
-            ));
-            out.write(START);
-        } catch (IOException e) {
-            Logger.warn("Client socket connection could not be read.", e);
-            closeSocket();
+    private void updateSendStats(int frameLength, double sendTimeMs) {
+        // Sub-millisecond writes only tell that the socket buffer had enough room
+        double effectiveSendTimeMs = Math.max(sendTimeMs, 1.0);
+        double throughput = frameLength / effectiveSendTimeMs;
+        if (averageSendTimeMs == 0) {
+            averageSendTimeMs = effectiveSendTimeMs;
+            averageThroughput = throughput;
             return;
         }
+        averageSendTimeMs += SEND_STATS_SMOOTHING * (effectiveSendTimeMs - averageSendTimeMs);
+        averageThroughput += SEND_STATS_SMOOTHING * (throughput - averageThroughput);
+    }
+
+    /**
+     * @return The average time in milliseconds needed to send a frame to this client
+     * or zero if no frames have been sent yet
+     */
+    double getAverageSendTimeMs() {
+        return averageSendTimeMs;
+    }
 
-        this.isInitialized = true;
+    /**
+     * @return The average send throughput in bytes per millisecond
+     * or zero if no frames have been sent yet
+     */
+    double getAverageThroughput() {
+        return averageThroughput;
     }
 
-    void write(byte[] data) {
-        try {
-            out.write(data);
-        } catch (IOException e) {
-            Logger.warn("Client socket connection not writable. Closing... ", e);
-            closeSocket();
+    void close() {
+        if (channel != null) {
+            channel.close();
         }
     }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("address", getRemoteAddress());
+        result.put("deliveredFrames", deliveredFramesCount.get());
+        result.put("droppedFrames", droppedFramesCount.get());
+        result.put("averageSendTimeMs", Math.round(averageSendTimeMs));
+        result.put("averageThroughputKbps", Math.round(averageThroughput * 8));
+        return result;
+    }
 }
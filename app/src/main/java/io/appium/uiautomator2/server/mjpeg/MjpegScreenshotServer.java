@@ -16,28 +16,36 @@
 
 package io.appium.uiautomator2.server.mjpeg;
 
-import java.io.IOException;
-import java.net.ServerSocket;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.appium.uiautomator2.utils.Logger;
-
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * Serves the MJPEG screenshots stream. Connections are handled by Netty,
+ * so slow clients never block the frames producer or each other.
+ */
 public class MjpegScreenshotServer extends Thread {
     private final int port;
-    private final List<MjpegScreenshotClient> clients;
+    // The list is mostly iterated by the stream thread and rarely changed
+    private final List<MjpegScreenshotClient> clients = new CopyOnWriteArrayList<>();
     private final MjpegScreenshotStream mjpegScreenshotStream;
-    private ServerSocket serverSocket;
-    private boolean isStopped = false;
+    private volatile Channel serverChannel;
 
     public MjpegScreenshotServer(int port) {
-        this(port, new ArrayList<MjpegScreenshotClient>());
-    }
-
-    public MjpegScreenshotServer(int port, List<MjpegScreenshotClient> clients) {
         this.port = port;
-        this.clients = clients;
         this.mjpegScreenshotStream = new MjpegScreenshotStream(clients);
     }
 
@@ -49,56 +57,66 @@ public class MjpegScreenshotServer extends Thread {
 
     @Override
     public void run() {
+        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+        // Frames are only written to the clients, so a single thread is enough
+        EventLoopGroup workerGroup = new NioEventLoopGroup(1);
         try {
-            serverSocket = new ServerSocket(port);
+            ServerBootstrap bootstrap = new ServerBootstrap();
+            bootstrap.group(bossGroup, workerGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new MjpegScreenshotClient(clients));
+                        }
+                    });
+            serverChannel = bootstrap.bind(port).sync().channel();
             Logger.info(String.format(
                 Locale.ROOT,
-                "ServerSocket created on port %d", port));
-        } catch (IOException e) {
-            Logger.error("Failed to create Socket Server.", e);
-            return;
+                "MJPEG server listening on port %d", port));
+
+            mjpegScreenshotStream.start();
+            serverChannel.closeFuture().sync();
+        } catch (InterruptedException ignored) {
+            // swallow
+        } catch (Exception e) {
+            Logger.error("Failed to create MJPEG Server.", e);
+        } finally {
+            mjpegScreenshotStream.interrupt();
+            closeAllClients();
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
         }
-
-        mjpegScreenshotStream.start();
-        while (!isStopped) {
-            try {
-                Logger.debug("Socket Server waiting for connections.");
-                addClient(new MjpegScreenshotClient(serverSocket.accept()));
-            } catch (IOException e) {
-                Logger.error("Socket Server failed to open connection.", e);
-            }
-        }
-
-        closeAllClients();
     }
 
     private void closeServer() {
-        if (isStopped) {
-            return;
+        Channel channel = serverChannel;
+        if (channel != null) {
+            channel.close();
         }
-
-        closeAllClients();
-
-        try {
-            serverSocket.close();
-        } catch (IOException e) {
-            Logger.error("Socket Server failed to close socket.", e);
-        }
-
-        this.isStopped = true;
     }
 
-    private void addClient(MjpegScreenshotClient client) {
-        synchronized (clients) {
-            clients.add(client);
+    private void closeAllClients() {
+        for (MjpegScreenshotClient client : clients) {
+            client.close();
         }
     }
 
-    private void closeAllClients() {
-        synchronized (clients) {
-            for (MjpegScreenshotClient client : clients) {
-                client.closeSocket();
-            }
+    /**
+     * @return The statistics of the connected clients
+     */
+    public Map<String, Object> getStats() {
+        List<Map<String, Object>> clientsStats = new ArrayList<>();
+        for (MjpegScreenshotClient client : clients) {
+            clientsStats.add(client.getStats());
         }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("port", port);
+        result.putAll(mjpegScreenshotStream.getStats());
+        result.put("clients", clientsStats);
+        return result;
     }
 }
@@ -16,33 +16,50 @@
 
 package io.appium.uiautomator2.server.mjpeg;
 
-import android.app.UiAutomation;
 import android.graphics.Bitmap;
 import android.os.SystemClock;
 
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.appium.uiautomator2.common.exceptions.TakeScreenshotException;
 import io.appium.uiautomator2.model.internal.CustomUiDevice;
 import io.appium.uiautomator2.server.ServerConfig;
 import io.appium.uiautomator2.utils.Logger;
-import io.appium.uiautomator2.utils.ScreenshotHelper;
-
-import static java.nio.charset.StandardCharsets.UTF_8;
-
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * Produces MJPEG frames in three pipelined stages, each running in its own thread:
+ * - capture: takes screenshots at the configured framerate
+ * - encode: scales and compresses the most recent screenshot
+ * - fan-out (this thread): hands the most recent frame over to the connected clients
+ *
+ * Stages are connected by single-item slots, so a slower stage makes the previous one
+ * drop its outdated output instead of queueing it. This way the framerate is limited by
+ * the slowest stage rather than by the sum of all of them.
+ *
+ * Screenshots, which are equal to the previous one, are not encoded at all, except for
+ * periodic keepalive frames. See {@link FrameSkipPolicy} for more details.
+ *
+ * Encoding parameters and the framerate are provided by {@link MjpegAdaptiveController}.
+ */
 public class MjpegScreenshotStream extends Thread {
-    private static final String BOUNDARY_STRING = 
-        "--BoundaryString\r\n" +
-        "Content-type: image/jpg\r\n" +
-        "Content-Length: %d\r\n\r\n";
     private static final int NO_CLIENTS_CONNECTED_SLEEP_TIME_MS = 500;
-    private static final byte[] END = "\r\n\r\n".getBytes(UTF_8);
     private final List<MjpegScreenshotClient> clients;
-    private boolean isStopped = false;
+    private final FrameSlot<Bitmap> capturedScreenshots = new FrameSlot<>();
+    private final FrameSlot<ByteBuf> encodedFrames = new FrameSlot<>();
+    private final AtomicLong encodedFramesCount = new AtomicLong();
+    private final AtomicLong skippedFramesCount = new AtomicLong();
+    private final MjpegAdaptiveController adaptiveController = new MjpegAdaptiveController();
+    private volatile boolean isStopped = false;
+    private Thread captureThread;
+    private Thread encodeThread;
 
     MjpegScreenshotStream(List<MjpegScreenshotClient> clients) {
+        super("MJPEG fan-out");
         this.clients = clients;
     }
 
@@ -54,57 +71,156 @@ public class MjpegScreenshotStream extends Thread {
 
     @Override
     public void run() {
-        while (!isStopped) {
-            boolean noClientsConnected;
-            synchronized (clients) {
-                noClientsConnected = clients.isEmpty();
+        captureThread = new Thread("MJPEG capture") {
+            @Override
+            public void run() {
+                runCaptureStage();
+            }
+        };
+        encodeThread = new Thread("MJPEG encode") {
+            @Override
+            public void run() {
+                runEncodeStage();
+            }
+        };
+        captureThread.start();
+        encodeThread.start();
+        try {
+            runFanOutStage();
+        } finally {
+            captureThread.interrupt();
+            encodeThread.interrupt();
+            try {
+                captureThread.join();
+                encodeThread.join();
+            } catch (InterruptedException ignored) {
+                // swallow
+            }
+            Bitmap screenshot = capturedScreenshots.clear();
+            if (screenshot != null) {
+                screenshot.recycle();
+            }
+            ByteBuf frame = encodedFrames.clear();
+            if (frame != null) {
+                frame.release();
             }
+        }
+    }
 
-            if (noClientsConnected) {
+    private void runCaptureStage() {
+        while (!isStopped) {
+            if (clients.isEmpty()) {
                 SystemClock.sleep(NO_CLIENTS_CONNECTED_SLEEP_TIME_MS);
                 continue;
             }
 
             // how long each loop should take in milliseconds
             long targetInterval =
-                Math.round((1.0f / ServerConfig.getMjpegServerFramerate()) * 1000.0f);
+                Math.round((1.0f / adaptiveController.getFramerate()) * 1000.0f);
             long start = System.currentTimeMillis();
 
-            // add some resilience to handle `getScreenshot` or any of its
-            // sub-routines raising an error. If an error occurs during
-            // [post-]processing the frame will be dropped
-            byte[] screenshotData;
+            // add some resilience to handle `takeScreenshot` raising an error.
+            // If an error occurs the frame will be dropped
             try {
-                screenshotData = getScreenshot();
+                Bitmap outdatedScreenshot = capturedScreenshots.put(takeScreenshot());
+                if (outdatedScreenshot != null) {
+                    outdatedScreenshot.recycle();
+                }
             } catch (Exception e) {
                 Logger.error("Error getting screenshot: ", e);
-                screenshotData = new byte[0];
             }
 
-            if (screenshotData.length > 0) {
-                synchronized (clients) {
-                    Iterator<MjpegScreenshotClient> clientsIterator = clients.iterator();
-                    while (clientsIterator.hasNext()) {
-                        MjpegScreenshotClient client = clientsIterator.next();
-                        if (client.isClosed()) {
-                            clientsIterator.remove();
-                            continue;
-                        }
-
-                        if (!client.isInitialized()) {
-                            client.initialize();
-                        }
-
-                        client.write(screenshotData);
+            // Always attempt to match the target framerate, even if the frame
+            // was dropped, to keep the rate consistent
+            matchFramerate(targetInterval, start);
+        }
+    }
+
+    private void publishFrame(ByteBuf frame) {
+        ByteBuf outdatedFrame = encodedFrames.put(frame);
+        if (outdatedFrame != null) {
+            outdatedFrame.release();
+        }
+    }
+
+    private void runEncodeStage() {
+        MjpegFrameEncoder encoder = new MjpegFrameEncoder(PooledByteBufAllocator.DEFAULT);
+        FrameChangeDetector changeDetector = new FrameChangeDetector();
+        FrameSkipPolicy skipPolicy = new FrameSkipPolicy();
+        try {
+            while (!isStopped) {
+                Bitmap screenshot;
+                try {
+                    screenshot = capturedScreenshots.take(NO_CLIENTS_CONNECTED_SLEEP_TIME_MS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (screenshot == null) {
+                    continue;
+                }
+
+                Bitmap source = null;
+                try {
+                    // Both the change detector and the encoder need to read the screenshot pixels
+                    source = MjpegFrameEncoder.toSoftwareBitmap(screenshot);
+                    final long now = System.currentTimeMillis();
+                    adaptiveController.adjust(now, getSlowestClientSendTimeMs());
+                    final float scale = adaptiveController.getScalingFactor() / 100.0f;
+                    final int quality = adaptiveController.getQuality();
+                    final boolean filter = ServerConfig.isMjpegBilinearFiltering();
+                    final String encodingParams = String.format("%s|%s|%s", scale, quality, filter);
+                    final boolean isChanged = changeDetector.hasChanged(source);
+                    if (!skipPolicy.shouldEncode(isChanged, encodingParams, clients.size(), now)) {
+                        skippedFramesCount.incrementAndGet();
+                        continue;
+                    }
+
+                    ByteBuf frame = encoder.encode(source, scale, quality, filter);
+                    encodedFramesCount.incrementAndGet();
+                    adaptiveController.onFrameEncoded(System.currentTimeMillis() - now, frame.readableBytes());
+                    skipPolicy.onFrameEncoded(encodingParams, now);
+                    publishFrame(frame);
+                } catch (Exception e) {
+                    Logger.error("Error encoding screenshot, dropping frame: ", e);
+                    // Make sure the next screenshot gets encoded even if it is the same
+                    skipPolicy.reset();
+                } finally {
+                    if (source != null && source != screenshot) {
+                        source.recycle();
                     }
+                    screenshot.recycle();
                 }
-            } else {
-                Logger.warn("Empty screenshot returned, dropping frame");
             }
+        } finally {
+            encoder.release();
+        }
+    }
 
-            // Always attempt to match the target framerate, even if the frame
-            // was dropped, to keep the rate consistent
-            matchFramerate(targetInterval, start);
+    private double getSlowestClientSendTimeMs() {
+        double result = 0;
+        for (MjpegScreenshotClient client : clients) {
+            result = Math.max(result, client.getAverageSendTimeMs());
+        }
+        return result;
+    }
+
+    private void runFanOutStage() {
+        while (!isStopped) {
+            ByteBuf frame;
+            try {
+                frame = encodedFrames.take(NO_CLIENTS_CONNECTED_SLEEP_TIME_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (frame == null) {
+                continue;
+            }
+
+            // Clients never block here. Each of them just replaces its pending frame
+            for (MjpegScreenshotClient client : clients) {
+                client.offer(frame.duplicate().retain());
+            }
+            frame.release();
         }
     }
 
@@ -117,49 +233,23 @@ public class MjpegScreenshotStream extends Thread {
         }
     }
 
-    private byte[] getScreenshot() {
+    /**
+     * @return The counts of encoded frames and of frames skipped because the screen was unchanged
+     * and the state of the adaptive streaming controller
+     */
+    Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("encodedFrames", encodedFramesCount.get());
+        result.put("skippedUnchangedFrames", skippedFramesCount.get());
+        result.put("adaptiveStreaming", adaptiveController.getStats());
+        return result;
+    }
+
+    private Bitmap takeScreenshot() {
         Bitmap screenshot = CustomUiDevice.getInstance().getUiAutomation().takeScreenshot();
         if (screenshot == null) {
             throw new TakeScreenshotException("Could not take screenshot: UiAutomation returned null");
         }
-
-        byte[] jpeg = ScreenshotHelper.compressJpeg(
-            screenshot,
-            ServerConfig.getMjpegScalingFactor() / 100.0f,
-            ServerConfig.getMjpegServerScreenshotQuality(),
-            ServerConfig.isMjpegBilinearFiltering()
-        );
-        screenshot.recycle();
-
-        byte[] header = String.format(
-            Locale.ROOT,
-            BOUNDARY_STRING,
-            jpeg.length
-        ).getBytes(UTF_8);
-        byte[] data = new byte[jpeg.length + header.length + END.length];
-
-        System.arraycopy(
-            header,
-            0,
-            data,
-            0,
-            header.length
-        );
-        System.arraycopy(
-            jpeg,
-            0,
-            data,
-            header.length,
-            jpeg.length
-        );
-        System.arraycopy(
-            END,
-            0,
-            data,
-            header.length + jpeg.length,
-            END.length
-        );
-
-        return data;
+        return screenshot;
     }
 }
@@ -54,6 +54,15 @@ public class AXWindowHelpers {
 
     public static void refreshAccessibilityCache() {
         Device.waitForIdle();
+        invalidateAccessibilityCache();
+    }
+
+    /**
+     * Same as {@link #refreshAccessibilityCache()}, but does not wait for the device to idle.
+     * Useful if the caller already knows the UI has been changed, for example
+     * after an accessibility event has been received.
+     */
+    public static void invalidateAccessibilityCache() {
         clearAccessibilityCache();
         cachedWindowRoots = null;
     }
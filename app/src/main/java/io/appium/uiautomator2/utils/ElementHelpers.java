@@ -46,6 +46,7 @@ import io.appium.uiautomator2.core.AxNodeInfoExtractor;
 import io.appium.uiautomator2.core.AxNodeInfoHelper;
 import io.appium.uiautomator2.core.EventRegister;
 import io.appium.uiautomator2.core.ReturningRunnable;
+import io.appium.uiautomator2.core.UiChangeTracker;
 import io.appium.uiautomator2.core.UiObjectChildGenerator;
 import io.appium.uiautomator2.model.AccessibilityScrollData;
 import io.appium.uiautomator2.model.AccessibleUiObject;
@@ -115,12 +116,15 @@ public abstract class ElementHelpers {
     }
 
     public static AndroidElement findElement(final BySelector ui2BySelector) {
+        // The generation must be retrieved before the lookup in order to not miss UI changes
+        // happening before the found element is cached
+        final long generation = UiChangeTracker.getInstance().getGeneration();
         AccessibleUiObject accessibleUiObject = getInstance().findObject(ui2BySelector);
         if (accessibleUiObject == null) {
             throw new ElementNotFoundException();
         }
         Session session = AppiumUIA2Driver.getInstance().getSessionOrThrow();
-        return session.getElementsCache().add(accessibleUiObject, true);
+        return session.getElementsCache().add(accessibleUiObject, true, generation);
     }
 
     public static NoSuchAttributeException generateNoAttributeException(@Nullable String attributeName) {
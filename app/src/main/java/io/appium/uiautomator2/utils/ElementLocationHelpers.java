@@ -22,14 +22,18 @@ import androidx.annotation.Nullable;
 import androidx.test.uiautomator.UiSelector;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import io.appium.uiautomator2.common.exceptions.NotImplementedException;
 import io.appium.uiautomator2.common.exceptions.UiAutomator2Exception;
 import io.appium.uiautomator2.common.exceptions.UiSelectorSyntaxException;
 import io.appium.uiautomator2.core.AccessibilityNodeInfoDumper;
+import io.appium.uiautomator2.core.SpeculativeSnapshotter;
+import io.appium.uiautomator2.model.AccessibleUiObject;
 import io.appium.uiautomator2.model.AndroidElement;
 import io.appium.uiautomator2.model.AppiumUIA2Driver;
 import io.appium.uiautomator2.model.By;
@@ -109,8 +113,35 @@ public class ElementLocationHelpers {
         return result;
     }
 
+    /**
+     * Fetches the speculative snapshot, which could serve the lookup from the page root,
+     * so there is no need to wait for the device to idle and refresh
+     * the accessibility cache before it. The same snapshot instance must be then passed
+     * to the lookup, since it might already be discarded by the time of the next fetch.
+     *
+     * @param by The locator to search elements by
+     * @return The actual speculative snapshot for the given locator or null
+     * if the lookup cannot be served by it
+     */
+    @Nullable
+    public static UiElementSnapshot getSpeculativeSnapshot(By by) {
+        return by instanceof By.ByXPath
+                ? SpeculativeSnapshotter.getInstance().getSnapshot(extractQueriedAttributes(by.getElementLocator()))
+                : null;
+    }
+
     public static NodeInfoList getXPathNodeMatch(
             final String expression, @Nullable AndroidElement element, boolean multiple) {
+        return getXPathNodeMatch(expression, element, multiple, null);
+    }
+
+    /**
+     * @param prefetchedSnapshot The snapshot of the whole hierarchy to perform the lookup on
+     *                           or null if the snapshot should be built from the accessibility cache.
+     *                           It is ignored if the element is set.
+     */
+    public static NodeInfoList getXPathNodeMatch(final String expression, @Nullable AndroidElement element,
+                                                 boolean multiple, @Nullable UiElementSnapshot prefetchedSnapshot) {
         AccessibilityNodeInfo root = element == null ? null : toAxNodeInfo(element.getUiObject());
         // We are trying to be smart here and only include the actually queried
         // attributes into the source XML document. This allows to improve the performance a lot
@@ -118,7 +149,59 @@ public class ElementLocationHelpers {
         Set<Attribute> includedAttributes = extractQueriedAttributes(expression);
         Logger.info(String.format("The following attributes will be included to the page source: %s",
                 includedAttributes));
-        return new AccessibilityNodeInfoDumper(root, includedAttributes).findNodes(expression, multiple);
+        return new AccessibilityNodeInfoDumper(root, includedAttributes)
+                .findNodes(expression, multiple, root == null ? prefetchedSnapshot : null);
+    }
+
+    /**
+     * Finds all elements matching the given locator.
+     * The accessibility cache is expected to be refreshed by the caller if needed.
+     *
+     * @param by The locator to search elements by
+     * @param context The search root or null if the search should be performed from the page root
+     * @return The list of matched elements or an empty list
+     */
+    public static List<AccessibleUiObject> findElements(By by, @Nullable AndroidElement context) {
+        return findElements(by, context, null);
+    }
+
+    /**
+     * Finds all elements matching the given locator.
+     *
+     * @param by The locator to search elements by
+     * @param context The search root or null if the search should be performed from the page root
+     * @param prefetchedSnapshot The speculative snapshot to perform XPath lookups on
+     *                           or null. See {@link #getSpeculativeSnapshot(By)}
+     * @return The list of matched elements or an empty list
+     */
+    public static List<AccessibleUiObject> findElements(By by, @Nullable AndroidElement context,
+                                                        @Nullable UiElementSnapshot prefetchedSnapshot) {
+        if (by instanceof By.ById) {
+            String locator = rewriteIdLocator((By.ById) by);
+            return context == null
+                    ? CustomUiDevice.getInstance().findObjects(androidx.test.uiautomator.By.res(locator))
+                    : context.getChildren(androidx.test.uiautomator.By.res(locator), by);
+        } else if (by instanceof By.ByAccessibilityId) {
+            return context == null
+                    ? CustomUiDevice.getInstance().findObjects(androidx.test.uiautomator.By.desc(by.getElementLocator()))
+                    : context.getChildren(androidx.test.uiautomator.By.desc(by.getElementLocator()), by);
+        } else if (by instanceof By.ByClass) {
+            return context == null
+                    ? CustomUiDevice.getInstance().findObjects(androidx.test.uiautomator.By.clazz(by.getElementLocator()))
+                    : context.getChildren(androidx.test.uiautomator.By.clazz(by.getElementLocator()), by);
+        } else if (by instanceof By.ByXPath) {
+            final NodeInfoList matchedNodes = getXPathNodeMatch(by.getElementLocator(), context, true,
+                    prefetchedSnapshot);
+            return matchedNodes.isEmpty()
+                    ? Collections.<AccessibleUiObject>emptyList()
+                    : CustomUiDevice.getInstance().findObjects(matchedNodes);
+        } else if (by instanceof By.ByAndroidUiAutomator) {
+            return new ByUiAutomatorFinder().findMany((By.ByAndroidUiAutomator) by, context);
+        }
+
+        throw new NotImplementedException(
+                String.format("%s locator is not supported", by.getClass().getSimpleName())
+        );
     }
 
     public static UiSelector toSelector(String uiaExpression) throws UiSelectorSyntaxException {
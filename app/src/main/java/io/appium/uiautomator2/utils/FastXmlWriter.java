@@ -0,0 +1,338 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A streaming writer, which produces exactly the same UTF-8 output as Android's
+ * KXmlSerializer with enabled indentation, but only supports the subset of its
+ * features used for the page source generation.
+ *
+ * Characters, which are not allowed in XML 1.0, are replaced with {@link #REPLACEMENT}
+ * while writing attribute values, so there is no need to sanitize them in advance.
+ * Primitive attribute values are written directly without being converted to strings.
+ */
+public class FastXmlWriter {
+    public static final char REPLACEMENT = '?';
+    private static final byte[] XML_DECLARATION =
+            "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LINE_SEPARATOR = {'\r', '\n'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] QUOT = "&quot;".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] APOS = "&apos;".getBytes(StandardCharsets.UTF_8);
+    // Replacements of ASCII characters in attribute values or null if the character
+    // should be written as is. Quotes are handled separately, since their escaping depends on
+    // the quote character used for the particular value.
+    private static final byte[][] ESCAPES = new byte[128][];
+
+    static {
+        for (char c = 0; c < 0x20; ++c) {
+            ESCAPES[c] = new byte[]{REPLACEMENT};
+        }
+        for (char c : new char[]{'\t', '\n', '\r'}) {
+            ESCAPES[c] = ("&#" + (int) c + ";").getBytes(StandardCharsets.UTF_8);
+        }
+        ESCAPES['&'] = "&amp;".getBytes(StandardCharsets.UTF_8);
+        ESCAPES['<'] = "&lt;".getBytes(StandardCharsets.UTF_8);
+        ESCAPES['>'] = "&gt;".getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] buffer;
+    private int size = 0;
+    private String[] openTags = new String[16];
+    private int depth = 0;
+    // Whether the last start tag has not been closed yet, so attributes could still be added
+    private boolean isStartTagPending = false;
+
+    public FastXmlWriter() {
+        this(8192);
+    }
+
+    public FastXmlWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 64)];
+    }
+
+    private void ensureCapacity(int extraBytes) {
+        if (size + extraBytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extraBytes));
+        }
+    }
+
+    private void write(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeInt(int value) {
+        // 11 bytes is enough for any int including the sign
+        ensureCapacity(11);
+        long remainder = value;
+        if (remainder < 0) {
+            buffer[size++] = '-';
+            remainder = -remainder;
+        }
+        int start = size;
+        do {
+            buffer[size++] = (byte) ('0' + remainder % 10);
+            remainder /= 10;
+        } while (remainder > 0);
+        // Digits have been written in reverse order
+        for (int i = start, j = size - 1; i < j; ++i, --j) {
+            byte tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+
+    private void writeCodePoint(int codePoint) {
+        ensureCapacity(4);
+        if (codePoint < 0x80) {
+            buffer[size++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            buffer[size++] = (byte) (0xC0 | (codePoint >> 6));
+            buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            buffer[size++] = (byte) (0xE0 | (codePoint >> 12));
+            buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    /**
+     * Writes names without escaping, since they are expected to be valid XML names.
+     */
+    private void writeName(String name) {
+        for (int i = 0; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (!Character.isSurrogate(c)) {
+                writeCodePoint(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < name.length()
+                    && Character.isLowSurrogate(name.charAt(i + 1))) {
+                writeCodePoint(Character.toCodePoint(c, name.charAt(++i)));
+            } else {
+                // This is what the UTF-8 encoder does for malformed input
+                write((byte) REPLACEMENT);
+            }
+        }
+    }
+
+    private void writeEscaped(String value, char quote) {
+        final int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == quote) {
+                    write(quote == '"' ? QUOT : APOS);
+                    continue;
+                }
+                byte[] escaped = ESCAPES[c];
+                if (escaped == null) {
+                    ensureCapacity(1);
+                    buffer[size++] = (byte) c;
+                } else {
+                    write(escaped);
+                }
+            } else if (c <= 0xD7FF || (c >= 0xE000 && c <= 0xFFFD)) {
+                writeCodePoint(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // Supplementary characters are written as character references
+                write((byte) '&');
+                write((byte) '#');
+                writeInt(Character.toCodePoint(c, value.charAt(++i)));
+                write((byte) ';');
+            } else {
+                write((byte) REPLACEMENT);
+            }
+        }
+    }
+
+    /**
+     * Converts the attribute value in the same way as it is written by this writer,
+     * so the result is equal to the value read back from the XML document.
+     *
+     * @param value The attribute value
+     * @return The value with characters not allowed in XML 1.0 replaced
+     * by {@link #REPLACEMENT} or the same instance if there is nothing to replace
+     */
+    public static String toXmlValue(String value) {
+        StringBuilder result = null;
+        final int length = value.length();
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            boolean isAllowed;
+            if (c < 0x80) {
+                isAllowed = c >= 0x20 || c == '\t' || c == '\n' || c == '\r';
+            } else if (c <= 0xD7FF || (c >= 0xE000 && c <= 0xFFFD)) {
+                isAllowed = true;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                if (result != null) {
+                    result.append(c);
+                }
+                c = value.charAt(++i);
+                isAllowed = true;
+            } else {
+                isAllowed = false;
+            }
+            if (!isAllowed && result == null) {
+                result = new StringBuilder(length).append(value, 0, i);
+            }
+            if (result != null) {
+                result.append(isAllowed ? c : REPLACEMENT);
+            }
+        }
+        return result == null ? value : result.toString();
+    }
+
+    private void writeIndent() {
+        write(LINE_SEPARATOR);
+        ensureCapacity(depth * 2);
+        for (int i = 0; i < depth * 2; ++i) {
+            buffer[size++] = ' ';
+        }
+    }
+
+    private void closePendingStartTag() {
+        if (isStartTagPending) {
+            write((byte) '>');
+            isStartTagPending = false;
+        }
+    }
+
+    public FastXmlWriter startDocument() {
+        write(XML_DECLARATION);
+        return this;
+    }
+
+    public FastXmlWriter startTag(String name) {
+        closePendingStartTag();
+        writeIndent();
+        write((byte) '<');
+        writeName(name);
+        if (depth == openTags.length) {
+            openTags = Arrays.copyOf(openTags, depth * 2);
+        }
+        openTags[depth++] = name;
+        isStartTagPending = true;
+        return this;
+    }
+
+    private void startAttribute(String name, char quote) {
+        if (!isStartTagPending) {
+            throw new IllegalStateException("Attributes could only be written right after a start tag");
+        }
+        write((byte) ' ');
+        writeName(name);
+        write((byte) '=');
+        write((byte) quote);
+    }
+
+    public FastXmlWriter attribute(String name, String value) {
+        final char quote = value.indexOf('"') == -1 ? '"' : '\'';
+        startAttribute(name, quote);
+        writeEscaped(value, quote);
+        write((byte) quote);
+        return this;
+    }
+
+    public FastXmlWriter attribute(String name, int value) {
+        startAttribute(name, '"');
+        writeInt(value);
+        write((byte) '"');
+        return this;
+    }
+
+    public FastXmlWriter attribute(String name, boolean value) {
+        startAttribute(name, '"');
+        write(value ? TRUE : FALSE);
+        write((byte) '"');
+        return this;
+    }
+
+    /**
+     * Writes the attribute value of an arbitrary type. Booleans and integers are
+     * written without any intermediate conversions.
+     */
+    public FastXmlWriter attribute(String name, Object value) {
+        if (value instanceof Boolean) {
+            return attribute(name, ((Boolean) value).booleanValue());
+        }
+        if (value instanceof Integer) {
+            return attribute(name, ((Integer) value).intValue());
+        }
+        return attribute(name, String.valueOf(value));
+    }
+
+    public FastXmlWriter endTag() {
+        if (depth == 0) {
+            throw new IllegalStateException("There are no open tags to close");
+        }
+        String name = openTags[--depth];
+        openTags[depth] = null;
+        if (isStartTagPending) {
+            write(new byte[]{' ', '/', '>'});
+            isStartTagPending = false;
+        } else {
+            writeIndent();
+            write((byte) '<');
+            write((byte) '/');
+            writeName(name);
+            write((byte) '>');
+        }
+        return this;
+    }
+
+    public FastXmlWriter endDocument() {
+        while (depth > 0) {
+            endTag();
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * @return The stream over the written bytes. The buffer is not copied.
+     */
+    public InputStream toInputStream() {
+        return new ByteArrayInputStream(buffer, 0, size);
+    }
+}
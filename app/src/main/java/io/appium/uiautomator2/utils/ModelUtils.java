@@ -14,7 +14,7 @@ import io.appium.uiautomator2.model.api.BaseModel;
 public class ModelUtils {
     public static <T extends BaseModel> T toModel(IHttpRequest request, Class<T> modelCls) {
         //noinspection unchecked
-        return (T) new Gson().fromJson(request.body(), modelCls).validate();
+        return (T) new Gson().fromJson(request.bodyReader(), modelCls).validate();
     }
 
     public static Object toObject(JSONArray json, Type type) {
@@ -0,0 +1,548 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Encodes ARGB pixels to PNG using several threads.
+ *
+ * The image is split into horizontal stripes, which are filtered and deflated in parallel.
+ * Each stripe is deflated with the tail of the previous stripe as the preset dictionary
+ * and ends with a sync flush, so the compressed stripes are simply concatenated into
+ * a single zlib stream without losing much of the compression ratio. Adler-32 checksum
+ * of the stream and CRC-32 of the IDAT chunk are combined from the per-stripe values.
+ *
+ * Rows are filtered using the minimum sum of absolute differences heuristic,
+ * like libpng does.
+ */
+public class ParallelPngEncoder {
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int MAX_PARALLELISM = 4;
+    // Stripes smaller than this are not worth the scheduling overhead
+    private static final int MIN_STRIPE_ROWS = 16;
+    // The maximum distance of back references in deflate streams
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+    private static final int CHUNK_OVERHEAD = 12;
+    private static final int IHDR_LENGTH = 13;
+    private static final int ZLIB_HEADER_LENGTH = 2;
+    private static final int ZLIB_TRAILER_LENGTH = 4;
+    private static final byte COLOR_TYPE_RGB = 2;
+    private static final byte COLOR_TYPE_RGBA = 6;
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+    private static final int ADLER_BASE = 65521;
+
+    private static ParallelPngEncoder INSTANCE = null;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int compressionLevel;
+
+    /**
+     * @param executor The executor to deflate stripes on. The calling thread deflates
+     *                 one of the stripes itself, so the executor needs parallelism - 1 threads.
+     *                 Could be null if parallelism is 1.
+     * @param parallelism The count of stripes to encode at the same time
+     * @param compressionLevel Deflate compression level 0..9
+     */
+    public ParallelPngEncoder(ExecutorService executor, int parallelism, int compressionLevel) {
+        if (parallelism < 1 || (parallelism > 1 && executor == null)) {
+            throw new IllegalArgumentException(String.format(
+                    "An executor is required for the parallelism of %s", parallelism));
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.compressionLevel = compressionLevel;
+    }
+
+    public static synchronized ParallelPngEncoder getInstance() {
+        if (INSTANCE == null) {
+            int parallelism = Math.max(1, Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+            ExecutorService executor = parallelism == 1
+                    ? null
+                    : Executors.newFixedThreadPool(parallelism - 1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "PNG encoder");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            INSTANCE = new ParallelPngEncoder(executor, parallelism, DEFAULT_COMPRESSION_LEVEL);
+        }
+        return INSTANCE;
+    }
+
+    private static class Image {
+        private final int[] pixels;
+        private final int width;
+        private final int height;
+        private final boolean hasAlpha;
+        private final int bytesPerPixel;
+        private final int rowLength;
+
+        private Image(int[] pixels, int width, int height, boolean hasAlpha) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.hasAlpha = hasAlpha;
+            this.bytesPerPixel = hasAlpha ? 4 : 3;
+            // Each row starts with the filter type byte
+            this.rowLength = 1 + width * bytesPerPixel;
+        }
+    }
+
+    private static class Stripe {
+        private final byte[] data;
+        private final int length;
+        // Of the compressed data
+        private final long crc;
+        // Of the uncompressed filtered data
+        private final long adler;
+        private final long uncompressedLength;
+
+        private Stripe(byte[] data, int length, long crc, long adler, long uncompressedLength) {
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+            this.adler = adler;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+
+    /**
+     * Encodes the given pixels to PNG. 8-bit RGB color type is used for opaque images
+     * and 8-bit RGBA one for images with alpha channel.
+     *
+     * @param pixels Non-premultiplied ARGB colors, row by row
+     * @param width The image width
+     * @param height The image height
+     * @param hasAlpha Whether to keep the alpha channel
+     * @return The PNG image
+     */
+    public byte[] encode(int[] pixels, int width, int height, boolean hasAlpha) {
+        if (width <= 0 || height <= 0 || pixels.length < (long) width * height) {
+            throw new IllegalArgumentException(String.format(
+                    "%s pixels cannot be encoded as %sx%s image", pixels.length, width, height));
+        }
+        final Image image = new Image(pixels, width, height, hasAlpha);
+        int stripeRows = Math.max(MIN_STRIPE_ROWS, (height + parallelism - 1) / parallelism);
+        int stripesCount = (height + stripeRows - 1) / stripeRows;
+
+        List<Future<Stripe>> futures = new ArrayList<>();
+        Stripe[] stripes = new Stripe[stripesCount];
+        try {
+            for (int i = 1; i < stripesCount; i++) {
+                final int startRow = i * stripeRows;
+                final int endRow = Math.min(height, startRow + stripeRows);
+                futures.add(executor.submit(new Callable<Stripe>() {
+                    @Override
+                    public Stripe call() {
+                        return encodeStripe(image, startRow, endRow);
+                    }
+                }));
+            }
+            stripes[0] = encodeStripe(image, 0, Math.min(height, stripeRows));
+            for (int i = 1; i < stripesCount; i++) {
+                stripes[i] = futures.get(i - 1).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("PNG encoding has been interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<Stripe> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return assemble(image, stripes);
+    }
+
+    private byte[] assemble(Image image, Stripe[] stripes) {
+        long compressedLength = 0;
+        for (Stripe stripe : stripes) {
+            compressedLength += stripe.length;
+        }
+        long idatLength = ZLIB_HEADER_LENGTH + compressedLength + ZLIB_TRAILER_LENGTH;
+        long totalLength = SIGNATURE.length + CHUNK_OVERHEAD + IHDR_LENGTH
+                + CHUNK_OVERHEAD + idatLength + CHUNK_OVERHEAD;
+        if (totalLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The image is too big to be encoded to PNG");
+        }
+        ByteBuffer result = ByteBuffer.allocate((int) totalLength);
+        result.put(SIGNATURE);
+
+        ByteBuffer header = ByteBuffer.allocate(IHDR_LENGTH);
+        header.putInt(image.width)
+                .putInt(image.height)
+                // Bit depth
+                .put((byte) 8)
+                .put(image.hasAlpha ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB)
+                // Compression, filter and interlace methods
+                .put((byte) 0)
+                .put((byte) 0)
+                .put((byte) 0);
+        writeChunk(result, "IHDR", header.array());
+
+        result.putInt((int) idatLength);
+        int idatStart = result.position();
+        result.put("IDAT".getBytes(US_ASCII));
+        result.put(toZlibHeader(compressionLevel));
+        CRC32 crc32 = new CRC32();
+        crc32.update(result.array(), idatStart, result.position() - idatStart);
+        long crc = crc32.getValue();
+        long adler = 1;
+        for (Stripe stripe : stripes) {
+            result.put(stripe.data, 0, stripe.length);
+            crc = crc32Combine(crc, stripe.crc, stripe.length);
+            adler = adler32Combine(adler, stripe.adler, stripe.uncompressedLength);
+        }
+        int trailerStart = result.position();
+        result.putInt((int) adler);
+        crc32.reset();
+        crc32.update(result.array(), trailerStart, ZLIB_TRAILER_LENGTH);
+        crc = crc32Combine(crc, crc32.getValue(), ZLIB_TRAILER_LENGTH);
+        result.putInt((int) crc);
+
+        writeChunk(result, "IEND", new byte[0]);
+        return result.array();
+    }
+
+    private static void writeChunk(ByteBuffer dst, String type, byte[] data) {
+        dst.putInt(data.length);
+        int start = dst.position();
+        dst.put(type.getBytes(US_ASCII));
+        dst.put(data);
+        CRC32 crc32 = new CRC32();
+        crc32.update(dst.array(), start, dst.position() - start);
+        dst.putInt((int) crc32.getValue());
+    }
+
+    private static byte[] toZlibHeader(int compressionLevel) {
+        // Deflate with 32K window
+        int cmf = 0x78;
+        // The level hint does not affect decoding
+        int level;
+        if (compressionLevel == Deflater.DEFAULT_COMPRESSION || compressionLevel == 6) {
+            level = 2;
+        } else if (compressionLevel < 2) {
+            level = 0;
+        } else if (compressionLevel < 6) {
+            level = 1;
+        } else {
+            level = 3;
+        }
+        int flg = level << 6;
+        flg += 31 - (cmf * 256 + flg) % 31;
+        return new byte[]{(byte) cmf, (byte) flg};
+    }
+
+    private Stripe encodeStripe(Image image, int startRow, int endRow) {
+        byte[] filtered = new byte[(endRow - startRow) * image.rowLength];
+        filterRows(image, startRow, endRow, filtered);
+        Adler32 adler32 = new Adler32();
+        adler32.update(filtered, 0, filtered.length);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (startRow > 0) {
+                // The decoder sees the previous stripe right before this one,
+                // so its tail could be referenced like if the data was deflated serially
+                int dictionaryRows = Math.min(startRow, (DICTIONARY_SIZE + image.rowLength - 1) / image.rowLength);
+                byte[] dictionary = new byte[dictionaryRows * image.rowLength];
+                filterRows(image, startRow - dictionaryRows, startRow, dictionary);
+                int dictionaryLength = Math.min(DICTIONARY_SIZE, dictionary.length);
+                deflater.setDictionary(dictionary, dictionary.length - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(filtered);
+            byte[] output = new byte[filtered.length / 4 + 64];
+            int length = 0;
+            boolean isLast = endRow == image.height;
+            if (isLast) {
+                deflater.finish();
+            }
+            while (true) {
+                if (length == output.length) {
+                    byte[] grown = new byte[output.length * 2];
+                    System.arraycopy(output, 0, grown, 0, length);
+                    output = grown;
+                }
+                int space = output.length - length;
+                if (isLast) {
+                    length += deflater.deflate(output, length, space);
+                    if (deflater.finished()) {
+                        break;
+                    }
+                } else {
+                    // Sync flush ends the output on a byte boundary without marking the final block
+                    int written = deflater.deflate(output, length, space, Deflater.SYNC_FLUSH);
+                    length += written;
+                    if (written < space) {
+                        break;
+                    }
+                }
+            }
+            CRC32 crc32 = new CRC32();
+            crc32.update(output, 0, length);
+            return new Stripe(output, length, crc32.getValue(), adler32.getValue(), filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void toRowBytes(Image image, int row, byte[] dst) {
+        int offset = row * image.width;
+        int dstIdx = 0;
+        for (int x = 0; x < image.width; x++) {
+            int color = image.pixels[offset + x];
+            dst[dstIdx++] = (byte) (color >> 16);
+            dst[dstIdx++] = (byte) (color >> 8);
+            dst[dstIdx++] = (byte) color;
+            if (image.hasAlpha) {
+                dst[dstIdx++] = (byte) (color >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Filters the rows in range [startRow, endRow) and puts them into dst one by one,
+     * each prefixed with its filter type.
+     */
+    private static void filterRows(Image image, int startRow, int endRow, byte[] dst) {
+        int length = image.rowLength - 1;
+        int bpp = image.bytesPerPixel;
+        byte[] current = new byte[length];
+        byte[] previous = new byte[length];
+        if (startRow > 0) {
+            toRowBytes(image, startRow - 1, previous);
+        }
+        for (int row = startRow; row < endRow; row++) {
+            toRowBytes(image, row, current);
+            int filter = chooseFilter(current, previous, bpp);
+            int dstOffset = (row - startRow) * image.rowLength;
+            dst[dstOffset] = (byte) filter;
+            applyFilter(filter, current, previous, bpp, dst, dstOffset + 1);
+            byte[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+    }
+
+    private static int chooseFilter(byte[] current, byte[] previous, int bpp) {
+        // Repeated rows are common in screenshots and are filtered to zeros
+        if (Arrays.equals(current, previous)) {
+            return FILTER_UP;
+        }
+        long noneSum = 0;
+        long subSum = 0;
+        long upSum = 0;
+        long averageSum = 0;
+        long paethSum = 0;
+        // The first pixel has no left neighbours
+        for (int i = 0; i < bpp && i < current.length; i++) {
+            int value = current[i];
+            int up = previous[i] & 0xFF;
+            noneSum += Math.abs((byte) value);
+            subSum += Math.abs((byte) value);
+            upSum += Math.abs((byte) (value - up));
+            averageSum += Math.abs((byte) (value - (up >> 1)));
+            paethSum += Math.abs((byte) (value - up));
+        }
+        for (int i = bpp; i < current.length; i++) {
+            int value = current[i];
+            int left = current[i - bpp] & 0xFF;
+            int up = previous[i] & 0xFF;
+            int upLeft = previous[i - bpp] & 0xFF;
+            noneSum += Math.abs((byte) value);
+            subSum += Math.abs((byte) (value - left));
+            upSum += Math.abs((byte) (value - up));
+            averageSum += Math.abs((byte) (value - ((left + up) >> 1)));
+            paethSum += Math.abs((byte) (value - paeth(left, up, upLeft)));
+        }
+        int result = FILTER_NONE;
+        long minSum = noneSum;
+        if (subSum < minSum) {
+            result = FILTER_SUB;
+            minSum = subSum;
+        }
+        if (upSum < minSum) {
+            result = FILTER_UP;
+            minSum = upSum;
+        }
+        if (averageSum < minSum) {
+            result = FILTER_AVERAGE;
+            minSum = averageSum;
+        }
+        if (paethSum < minSum) {
+            result = FILTER_PAETH;
+        }
+        return result;
+    }
+
+    private static void applyFilter(int filter, byte[] current, byte[] previous, int bpp,
+                                    byte[] dst, int dstOffset) {
+        int firstPixelLength = Math.min(bpp, current.length);
+        switch (filter) {
+            case FILTER_SUB:
+                System.arraycopy(current, 0, dst, dstOffset, firstPixelLength);
+                for (int i = bpp; i < current.length; i++) {
+                    dst[dstOffset + i] = (byte) (current[i] - current[i - bpp]);
+                }
+                break;
+            case FILTER_UP:
+                for (int i = 0; i < current.length; i++) {
+                    dst[dstOffset + i] = (byte) (current[i] - previous[i]);
+                }
+                break;
+            case FILTER_AVERAGE:
+                for (int i = 0; i < firstPixelLength; i++) {
+                    dst[dstOffset + i] = (byte) (current[i] - ((previous[i] & 0xFF) >> 1));
+                }
+                for (int i = bpp; i < current.length; i++) {
+                    dst[dstOffset + i] = (byte) (current[i]
+                            - (((current[i - bpp] & 0xFF) + (previous[i] & 0xFF)) >> 1));
+                }
+                break;
+            case FILTER_PAETH:
+                for (int i = 0; i < firstPixelLength; i++) {
+                    dst[dstOffset + i] = (byte) (current[i] - previous[i]);
+                }
+                for (int i = bpp; i < current.length; i++) {
+                    dst[dstOffset + i] = (byte) (current[i] - paeth(current[i - bpp] & 0xFF,
+                            previous[i] & 0xFF, previous[i - bpp] & 0xFF));
+                }
+                break;
+            default:
+                System.arraycopy(current, 0, dst, dstOffset, current.length);
+                break;
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int leftDistance = Math.abs(estimate - left);
+        int upDistance = Math.abs(estimate - up);
+        int upLeftDistance = Math.abs(estimate - upLeft);
+        if (leftDistance <= upDistance && leftDistance <= upLeftDistance) {
+            return left;
+        }
+        return upDistance <= upLeftDistance ? up : upLeft;
+    }
+
+    /**
+     * @return Adler-32 of the concatenation of two sequences, where the second one has the given length
+     */
+    static long adler32Combine(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= (ADLER_BASE << 1)) {
+            sum2 -= (ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * @return CRC-32 of the concatenation of two sequences, where the second one has the given length
+     */
+    static long crc32Combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        // The operator for one zero bit
+        odd[0] = 0xEDB88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // Operators for two and four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        // Apply length2 zero bytes to crc1
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>= 1;
+        } while (length2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+}
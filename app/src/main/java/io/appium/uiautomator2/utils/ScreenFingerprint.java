@@ -0,0 +1,294 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A cheap downsampled representation of the screen content, which allows to tell
+ * whether and where the screen has changed without keeping or transferring full screenshots.
+ *
+ * The screen is divided into a grid of cells, where each cell keeps the average color
+ * of all pixels in the corresponding screen area. A cell is considered changed if any color
+ * channel differs by more than {@link #CHANGED_CELL_CHANNEL_DELTA}, so minor rendering noise
+ * is ignored. A change of a single pixel is averaged out, but changes of a few pixels,
+ * like a blinking cursor or a thin line, are still detected.
+ */
+public class ScreenFingerprint {
+    // The size of the screen area in pixels, which is represented by a single cell
+    public static final int CELL_SIZE = 8;
+    static final int CHANGED_CELL_CHANNEL_DELTA = 8;
+    // Changed regions beyond this count are not reported
+    static final int MAX_CHANGED_REGIONS = 50;
+
+    private final int[] cells;
+    private final int columns;
+    private final int rows;
+    private final int screenWidth;
+    private final int screenHeight;
+    private final long timestamp;
+
+    public static class Region {
+        public final int x;
+        public final int y;
+        public final int width;
+        public final int height;
+
+        Region(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s,%s][%s,%s]", x, y, x + width, y + height);
+        }
+    }
+
+    /**
+     * Calculates cells from the screen pixels, which are supplied row by row.
+     * This allows to process the screen in bands without copying all its pixels at once.
+     */
+    public static class Builder {
+        private final int width;
+        private final int height;
+        private final int columns;
+        private final int rows;
+        private final int[] cells;
+        // Red, green and blue sums of each cell in the current row of cells
+        private final long[] sums;
+        private int nextRow = 0;
+        private int cellRowStart = 0;
+
+        public Builder(int width, int height) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException(String.format(
+                        "Screen size must be positive. %sx%s was given", width, height));
+            }
+            this.width = width;
+            this.height = height;
+            this.columns = toGridSize(width);
+            this.rows = toGridSize(height);
+            this.cells = new int[columns * rows];
+            this.sums = new long[columns * 3];
+        }
+
+        /**
+         * @param pixels ARGB colors of the next screen rows
+         * @param rowsCount The count of rows in the pixels array, each one is the screen width long
+         * @return self instance for chaining
+         */
+        public Builder addRows(int[] pixels, int rowsCount) {
+            if (nextRow + rowsCount > height || pixels.length < rowsCount * width) {
+                throw new IllegalArgumentException(String.format(
+                        "%s rows cannot be added to the screen of %sx%s size having %s rows already",
+                        rowsCount, width, height, nextRow));
+            }
+            for (int row = 0; row < rowsCount; row++) {
+                int offset = row * width;
+                for (int x = 0; x < width; x++) {
+                    int color = pixels[offset + x];
+                    int sumIdx = (x / CELL_SIZE) * 3;
+                    sums[sumIdx] += (color >> 16) & 0xFF;
+                    sums[sumIdx + 1] += (color >> 8) & 0xFF;
+                    sums[sumIdx + 2] += color & 0xFF;
+                }
+                nextRow++;
+                if (nextRow - cellRowStart == CELL_SIZE || nextRow == height) {
+                    flushCellRow();
+                }
+            }
+            return this;
+        }
+
+        private void flushCellRow() {
+            int cellRow = cellRowStart / CELL_SIZE;
+            int cellHeight = nextRow - cellRowStart;
+            for (int column = 0; column < columns; column++) {
+                int cellWidth = Math.min(CELL_SIZE, width - column * CELL_SIZE);
+                long count = (long) cellWidth * cellHeight;
+                int sumIdx = column * 3;
+                int red = (int) ((sums[sumIdx] + count / 2) / count);
+                int green = (int) ((sums[sumIdx + 1] + count / 2) / count);
+                int blue = (int) ((sums[sumIdx + 2] + count / 2) / count);
+                cells[cellRow * columns + column] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+            Arrays.fill(sums, 0);
+            cellRowStart = nextRow;
+        }
+
+        public ScreenFingerprint build() {
+            if (nextRow != height) {
+                throw new IllegalStateException(String.format(
+                        "Only %s of %s screen rows have been added", nextRow, height));
+            }
+            return new ScreenFingerprint(cells, columns, rows, width, height);
+        }
+    }
+
+    public static class Diff {
+        // The ratio of changed cells in range 0..1
+        public final double changedRatio;
+        // The average and the maximum color channel difference of all cells in range 0..255
+        public final double meanDelta;
+        public final int maxDelta;
+        // Bounding boxes of connected changed areas in screen coordinates
+        public final List<Region> changedRegions;
+
+        Diff(double changedRatio, double meanDelta, int maxDelta, List<Region> changedRegions) {
+            this.changedRatio = changedRatio;
+            this.meanDelta = meanDelta;
+            this.maxDelta = maxDelta;
+            this.changedRegions = changedRegions;
+        }
+    }
+
+    /**
+     * @param cells ARGB colors of the downsampled screen, row by row
+     * @param columns The count of cells in each row
+     * @param rows The count of rows
+     * @param screenWidth The width of the original screen
+     * @param screenHeight The height of the original screen
+     */
+    public ScreenFingerprint(int[] cells, int columns, int rows, int screenWidth, int screenHeight) {
+        if (columns <= 0 || rows <= 0 || cells.length < columns * rows) {
+            throw new IllegalArgumentException(String.format(
+                    "%s cells cannot form %sx%s grid", cells.length, columns, rows));
+        }
+        this.cells = cells;
+        this.columns = columns;
+        this.rows = rows;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * @return The count of cells along the screen side of the given size
+     */
+    public static int toGridSize(int screenSize) {
+        return Math.max(1, (screenSize + CELL_SIZE - 1) / CELL_SIZE);
+    }
+
+    public int getScreenWidth() {
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        return screenHeight;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    private static int channelDelta(int color1, int color2) {
+        int redDelta = Math.abs(((color1 >> 16) & 0xFF) - ((color2 >> 16) & 0xFF));
+        int greenDelta = Math.abs(((color1 >> 8) & 0xFF) - ((color2 >> 8) & 0xFF));
+        int blueDelta = Math.abs((color1 & 0xFF) - (color2 & 0xFF));
+        return Math.max(redDelta, Math.max(greenDelta, blueDelta));
+    }
+
+    /**
+     * Compares this fingerprint with the other one.
+     * Fingerprints of screens with different sizes (e.g. after rotation) are completely different.
+     *
+     * @param other The fingerprint to compare with
+     * @return The difference metrics
+     */
+    public Diff diff(ScreenFingerprint other) {
+        if (columns != other.columns || rows != other.rows
+                || screenWidth != other.screenWidth || screenHeight != other.screenHeight) {
+            List<Region> regions = new ArrayList<>();
+            regions.add(new Region(0, 0, screenWidth, screenHeight));
+            return new Diff(1.0, 255, 255, regions);
+        }
+
+        boolean[] isChanged = new boolean[columns * rows];
+        long deltasSum = 0;
+        int maxDelta = 0;
+        int changedCount = 0;
+        for (int i = 0; i < columns * rows; i++) {
+            int delta = channelDelta(cells[i], other.cells[i]);
+            deltasSum += delta;
+            maxDelta = Math.max(maxDelta, delta);
+            if (delta > CHANGED_CELL_CHANNEL_DELTA) {
+                isChanged[i] = true;
+                changedCount++;
+            }
+        }
+        return new Diff((double) changedCount / (columns * rows),
+                (double) deltasSum / (columns * rows), maxDelta, findChangedRegions(isChanged));
+    }
+
+    /**
+     * Finds bounding boxes of 4-connected groups of changed cells
+     */
+    private List<Region> findChangedRegions(boolean[] isChanged) {
+        List<Region> result = new ArrayList<>();
+        boolean[] isVisited = new boolean[isChanged.length];
+        int[] queue = new int[isChanged.length];
+        for (int start = 0; start < isChanged.length && result.size() < MAX_CHANGED_REGIONS; start++) {
+            if (!isChanged[start] || isVisited[start]) {
+                continue;
+            }
+            int minColumn = columns;
+            int maxColumn = -1;
+            int minRow = rows;
+            int maxRow = -1;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            isVisited[start] = true;
+            while (head < tail) {
+                int cell = queue[head++];
+                int column = cell % columns;
+                int row = cell / columns;
+                minColumn = Math.min(minColumn, column);
+                maxColumn = Math.max(maxColumn, column);
+                minRow = Math.min(minRow, row);
+                maxRow = Math.max(maxRow, row);
+                int[] neighbours = {
+                        column > 0 ? cell - 1 : -1,
+                        column < columns - 1 ? cell + 1 : -1,
+                        row > 0 ? cell - columns : -1,
+                        row < rows - 1 ? cell + columns : -1
+                };
+                for (int neighbour : neighbours) {
+                    if (neighbour >= 0 && isChanged[neighbour] && !isVisited[neighbour]) {
+                        isVisited[neighbour] = true;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            result.add(toScreenRegion(minColumn, minRow, maxColumn + 1, maxRow + 1));
+        }
+        return result;
+    }
+
+    private Region toScreenRegion(int startColumn, int startRow, int endColumn, int endRow) {
+        int left = (int) ((long) startColumn * screenWidth / columns);
+        int top = (int) ((long) startRow * screenHeight / rows);
+        int right = (int) ((long) endColumn * screenWidth / columns);
+        int bottom = (int) ((long) endRow * screenHeight / rows);
+        return new Region(left, top, right - left, bottom - top);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import androidx.annotation.Nullable;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+
+import static io.appium.uiautomator2.utils.StringHelpers.isBlank;
+
+/**
+ * Encodings, which screenshots can be returned in.
+ *
+ * PNG is the default one, although it is also the slowest one to encode.
+ * The raw format starts with the {@link #RAW_HEADER_LENGTH}-byte big-endian header:
+ * the "RGBA" magic, the width, the height and the row stride in bytes. The header is followed
+ * by rows of 4-byte premultiplied RGBA pixels. This format requires no encoding at all,
+ * so it is the best fit for pixel comparisons.
+ */
+public enum ScreenshotFormat {
+    PNG("png"),
+    JPEG("jpeg"),
+    WEBP_LOSSLESS("webp"),
+    RAW("raw");
+
+    public static final int DEFAULT_JPEG_QUALITY = 90;
+    public static final byte[] RAW_MAGIC = {'R', 'G', 'B', 'A'};
+    public static final int RAW_HEADER_LENGTH = RAW_MAGIC.length + 3 * Integer.SIZE / Byte.SIZE;
+
+    private final String name;
+
+    ScreenshotFormat(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name The format name, for example the value of the `format` query parameter
+     * @return The matching format or PNG if the name is blank
+     * @throws InvalidArgumentException if the name is unknown
+     */
+    public static ScreenshotFormat fromName(@Nullable String name) {
+        if (isBlank(name)) {
+            return PNG;
+        }
+        for (ScreenshotFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        throw new InvalidArgumentException(String.format(
+                "Unknown screenshot format '%s'. Only the following formats are supported: " +
+                        "png, jpeg, webp, raw", name));
+    }
+
+    /**
+     * @param value The JPEG quality value, for example the value of the `quality` query parameter
+     * @return The parsed quality or {@link #DEFAULT_JPEG_QUALITY} if the value is blank
+     * @throws InvalidArgumentException if the value is not an integer in range 0..100
+     */
+    public static int toQuality(@Nullable String value) {
+        if (isBlank(value)) {
+            return DEFAULT_JPEG_QUALITY;
+        }
+        int quality;
+        try {
+            quality = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            quality = -1;
+        }
+        if (quality < 0 || quality > 100) {
+            throw new InvalidArgumentException(String.format(
+                    "The screenshot quality must be an integer in range 0..100. '%s' is given instead",
+                    value));
+        }
+        return quality;
+    }
+}
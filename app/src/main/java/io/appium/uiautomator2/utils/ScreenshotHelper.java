@@ -19,6 +19,7 @@ package io.appium.uiautomator2.utils;
 import android.app.UiAutomation;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Rect;
 import android.os.Build;
 import android.os.ParcelFileDescriptor;
@@ -34,9 +35,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import io.appium.uiautomator2.common.exceptions.CompressScreenshotException;
 import io.appium.uiautomator2.common.exceptions.CropScreenshotException;
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
 import io.appium.uiautomator2.common.exceptions.TakeScreenshotException;
 import io.appium.uiautomator2.core.UiAutomatorBridge;
 import io.appium.uiautomator2.model.internal.CustomUiDevice;
@@ -56,16 +63,69 @@ public class ScreenshotHelper {
      * @return Base64-encoded screenshot string.
      */
     public static String takeScreenshot(@Nullable final Rect cropArea) throws TakeScreenshotException {
-        if (cropArea == null) {
+        return takeScreenshot(cropArea, ScreenshotFormat.PNG, ScreenshotFormat.DEFAULT_JPEG_QUALITY);
+    }
+
+    /**
+     * Grab device screenshot and crop it to specifyed area if cropArea is not null.
+     * Encode it to the given format and convert to Base64 byte-string.
+     *
+     * @param cropArea Area to crop.
+     * @param format The format of the resulting image.
+     * @param quality The quality of the resulting image. Only used by JPEG format.
+     * @return Base64-encoded screenshot string.
+     */
+    public static String takeScreenshot(@Nullable final Rect cropArea, ScreenshotFormat format,
+                                        int quality) throws TakeScreenshotException {
+        if (cropArea != null) {
+            return takeScreenshots(Collections.singletonList(cropArea), format, quality).get(0);
+        }
+        if (format == ScreenshotFormat.PNG) {
             return takeDeviceScreenshot(String.class);
         }
 
         Bitmap screenshot = takeDeviceScreenshot(Bitmap.class);
         try {
-            final Bitmap elementScreenshot = crop(screenshot, cropArea);
+            return Base64.encodeToString(encode(screenshot, format, quality), Base64.NO_WRAP);
+        } finally {
             screenshot.recycle();
-            screenshot = elementScreenshot;
-            return Base64.encodeToString(compress(screenshot), Base64.NO_WRAP);
+        }
+    }
+
+    /**
+     * Grab device screenshot once and crop it to each of the given areas.
+     * If the screenshot has been taken by screencap then only the pixels of the given areas
+     * are decoded from it, so the full-size bitmap is never created.
+     *
+     * @param cropAreas Areas to crop.
+     * @param format The format of the resulting images.
+     * @param quality The quality of the resulting images. Only used by JPEG format.
+     * @return Base64-encoded screenshot strings in the same order as crop areas.
+     */
+    public static List<String> takeScreenshots(List<Rect> cropAreas, ScreenshotFormat format,
+                                               int quality) throws TakeScreenshotException {
+        byte[] pngBytes = takeScreencapPng();
+        if (pngBytes != null) {
+            List<String> result = decodeRegions(pngBytes, cropAreas, format, quality);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        Bitmap screenshot = takeUiAutomationScreenshot();
+        try {
+            List<String> result = new ArrayList<>(cropAreas.size());
+            for (Rect cropArea : cropAreas) {
+                Bitmap elementScreenshot = crop(screenshot, cropArea);
+                try {
+                    result.add(Base64.encodeToString(encode(elementScreenshot, format, quality), Base64.NO_WRAP));
+                } finally {
+                    if (elementScreenshot != screenshot) {
+                        elementScreenshot.recycle();
+                    }
+                }
+            }
+            return result;
         } finally {
             screenshot.recycle();
         }
@@ -75,6 +135,45 @@ public class ScreenshotHelper {
         return takeScreenshot(null);
     }
 
+    /**
+     * Decodes the given areas of the PNG image.
+     *
+     * @return Base64-encoded images of the given areas or null if the PNG image cannot be decoded
+     */
+    @Nullable
+    private static List<String> decodeRegions(byte[] pngBytes, List<Rect> cropAreas,
+                                              ScreenshotFormat format, int quality)
+            throws TakeScreenshotException {
+        BitmapRegionDecoder decoder;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(pngBytes, 0, pngBytes.length, false);
+        } catch (IOException e) {
+            Logger.error(e);
+            Logger.info("Falling back to UiAutomator-based screenshoting");
+            return null;
+        }
+
+        try {
+            final Rect bounds = new Rect(0, 0, decoder.getWidth(), decoder.getHeight());
+            List<String> result = new ArrayList<>(cropAreas.size());
+            for (Rect cropArea : cropAreas) {
+                Bitmap region = decoder.decodeRegion(toIntersection(bounds, cropArea), null);
+                if (region == null) {
+                    throw new TakeScreenshotException(String.format(
+                            "Cannot decode the %s area of the screenshot", cropArea.toShortString()));
+                }
+                try {
+                    result.add(Base64.encodeToString(encode(region, format, quality), Base64.NO_WRAP));
+                } finally {
+                    region.recycle();
+                }
+            }
+            return result;
+        } finally {
+            decoder.recycle();
+        }
+    }
+
     /**
      * Takes a shot of the current device's screen
      *
@@ -83,47 +182,106 @@ public class ScreenshotHelper {
      * @throws TakeScreenshotException if there was an error while taking the screenshot
      */
     private static <T> T takeDeviceScreenshot(Class<T> outputType) throws TakeScreenshotException {
+        byte[] pngBytes = takeScreencapPng();
+        if (pngBytes != null) {
+            if (outputType == String.class) {
+                return outputType.cast(Base64.encodeToString(pngBytes, Base64.NO_WRAP));
+            }
+            Bitmap screenshot = BitmapFactory.decodeByteArray(
+                pngBytes,
+                0,
+                pngBytes.length
+            );
+            if (screenshot != null) {
+                return outputType.cast(screenshot);
+            }
+            Logger.info("Falling back to UiAutomator-based screenshoting");
+        }
+
+        Bitmap screenshot = takeUiAutomationScreenshot();
+        if (outputType == String.class) {
+            try {
+                return outputType.cast(Base64.encodeToString(compressPng(screenshot), Base64.NO_WRAP));
+            } finally {
+                screenshot.recycle();
+            }
+        }
+        return outputType.cast(screenshot);
+    }
+
+    /**
+     * Takes a PNG screenshot using screencap utility if it is supported on the current device
+     *
+     * @return The PNG screenshot or null if it cannot be taken this way
+     */
+    @Nullable
+    private static byte[] takeScreencapPng() {
         Display display = UiAutomatorBridge.getInstance().getDefaultDisplay();
         UiAutomation automation = CustomUiDevice.getInstance().getUiAutomation();
         DisplayMetrics metrics = new DisplayMetrics();
         display.getMetrics(metrics);
-        Bitmap screenshot = null;
         Logger.debug(String.format("Display metrics: %s", metrics));
         // Workaround for https://github.com/appium/appium/issues/12199
         // executeShellCommand seems to be faulty on Android 5
-        if (metrics.densityDpi != DENSITY_DEFAULT && Build.VERSION.SDK_INT > Build.VERSION_CODES.LOLLIPOP_MR1) {
-            try {
-                ParcelFileDescriptor pfd = automation.executeShellCommand("screencap -p");
-                try (InputStream is = new FileInputStream(pfd.getFileDescriptor())) {
-                    byte[] pngBytes = IOUtils.toByteArray(is);
-                    if (pngBytes.length <= PNG_MAGIC_LENGTH) {
-                        throw new IllegalStateException("screencap returned an invalid response");
-                    }
-                    if (outputType == String.class) {
-                        return outputType.cast(Base64.encodeToString(pngBytes, Base64.NO_WRAP));
-                    }
-                    screenshot = BitmapFactory.decodeByteArray(
-                        pngBytes,
-                        0,
-                        pngBytes.length
-                    );
-                } finally {
-                    try {
-                        pfd.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+        if (metrics.densityDpi == DENSITY_DEFAULT || Build.VERSION.SDK_INT <= Build.VERSION_CODES.LOLLIPOP_MR1) {
+            return null;
+        }
+
+        try {
+            ParcelFileDescriptor pfd = automation.executeShellCommand("screencap -p");
+            try (InputStream is = new FileInputStream(pfd.getFileDescriptor())) {
+                byte[] pngBytes = IOUtils.toByteArray(is);
+                if (pngBytes.length <= PNG_MAGIC_LENGTH) {
+                    throw new IllegalStateException("screencap returned an invalid response");
+                }
+                return pngBytes;
+            } finally {
+                try {
+                    pfd.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
-            } catch (Exception e) {
-                Logger.error(e);
-                Logger.info("Falling back to UiAutomator-based screenshoting");
             }
+        } catch (Exception e) {
+            Logger.error(e);
+            Logger.info("Falling back to UiAutomator-based screenshoting");
+            return null;
         }
+    }
 
-        if (screenshot == null) {
-            screenshot = automation.takeScreenshot();
+    /**
+     * Takes a downsampled shot of the current device's screen. This is much cheaper
+     * than taking an encoded screenshot, since no compression is involved.
+     *
+     * @return The fingerprint of the current screen content
+     */
+    public static ScreenFingerprint takeScreenFingerprint() throws TakeScreenshotException {
+        Bitmap screenshot = takeUiAutomationScreenshot();
+        Bitmap source = null;
+        try {
+            // Pixels of hardware bitmaps cannot be read directly
+            source = toArgb8888(screenshot);
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            // Read one row of cells at a time, so each cell gets the average of all its pixels
+            final int[] band = new int[width * ScreenFingerprint.CELL_SIZE];
+            ScreenFingerprint.Builder builder = new ScreenFingerprint.Builder(width, height);
+            for (int y = 0; y < height; y += ScreenFingerprint.CELL_SIZE) {
+                int bandHeight = Math.min(ScreenFingerprint.CELL_SIZE, height - y);
+                source.getPixels(band, 0, width, 0, y, width, bandHeight);
+                builder.addRows(band, bandHeight);
+            }
+            return builder.build();
+        } finally {
+            if (source != null && source != screenshot) {
+                source.recycle();
+            }
+            screenshot.recycle();
         }
+    }
 
+    private static Bitmap takeUiAutomationScreenshot() throws TakeScreenshotException {
+        Bitmap screenshot = CustomUiDevice.getInstance().getUiAutomation().takeScreenshot();
         if (screenshot == null || screenshot.getWidth() == 0 || screenshot.getHeight() == 0) {
             throw new TakeScreenshotException();
         }
@@ -133,54 +291,122 @@ public class ScreenshotHelper {
             screenshot.getWidth(),
             screenshot.getHeight()
         ));
+        return screenshot;
+    }
 
-        if (outputType == String.class) {
-            try {
-                return outputType.cast(Base64.encodeToString(compress(screenshot), Base64.NO_WRAP));
-            } finally {
-                screenshot.recycle();
-            }
+    /**
+     * Encodes the given bitmap to the given format.
+     *
+     * @param bitmap The bitmap to encode.
+     * @param format The format of the resulting image.
+     * @param quality The quality of the resulting image. Only used by JPEG format.
+     * @return The encoded image.
+     */
+    public static byte[] encode(final Bitmap bitmap, ScreenshotFormat format, int quality)
+            throws TakeScreenshotException {
+        switch (format) {
+            case RAW:
+                return toRawRgba(bitmap);
+            case JPEG:
+                return compress(bitmap, JPEG, quality);
+            case WEBP_LOSSLESS:
+                return compress(bitmap, getLosslessWebpFormat(), 100);
+            default:
+                return compressPng(bitmap);
         }
-        return outputType.cast(screenshot);
     }
 
-    private static byte[] compress(final Bitmap bitmap) throws TakeScreenshotException {
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat getLosslessWebpFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSLESS;
+        }
+        // Since Android Q the maximum quality of the legacy format means lossless compression
+        if (Build.VERSION.SDK_INT == Build.VERSION_CODES.Q) {
+            return Bitmap.CompressFormat.WEBP;
+        }
+        throw new InvalidArgumentException(
+                "Lossless WebP screenshots are only supported since Android 10");
+    }
+
+    private static byte[] compress(final Bitmap bitmap, Bitmap.CompressFormat format, int quality)
+            throws TakeScreenshotException {
         try (final ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
-            if (!bitmap.compress(PNG, 100, stream)) {
-                throw new CompressScreenshotException(PNG);
+            if (!bitmap.compress(format, quality, stream)) {
+                throw new CompressScreenshotException(format);
             }
             return stream.toByteArray();
         } catch (IOException e) {
-            throw new CompressScreenshotException(PNG, e);
+            throw new CompressScreenshotException(format, e);
         }
     }
 
-    public static byte[] compressJpeg(final Bitmap bitmap, float scale, int quality, boolean filter) throws TakeScreenshotException {
-        Bitmap resultBitmap;
-        if (Math.abs(scale - 1.0f) < Float.MIN_NORMAL) {
-            resultBitmap = bitmap;
-        } else {
-            int width = Math.round(bitmap.getWidth() * scale);
-            int height = Math.round(bitmap.getHeight() * scale);
-            resultBitmap = Bitmap.createScaledBitmap(
-                bitmap,
-                width,
-                height,
-                filter
-            );
-            bitmap.recycle();
+    /**
+     * @return The same bitmap if its pixels are accessible in ARGB_8888 config or its copy otherwise
+     */
+    private static Bitmap toArgb8888(final Bitmap bitmap) throws TakeScreenshotException {
+        if (bitmap.getConfig() == Bitmap.Config.ARGB_8888) {
+            return bitmap;
+        }
+        final Bitmap result = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        if (result == null) {
+            throw new TakeScreenshotException(String.format(
+                    "Screenshot cannot be converted from %s to RGBA pixels", bitmap.getConfig()));
         }
+        return result;
+    }
 
-        try (final ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
-            if (!resultBitmap.compress(JPEG, quality, stream)) {
-                throw new CompressScreenshotException(JPEG);
+    /**
+     * Encodes the bitmap to PNG in parallel stripes instead of using the single-threaded
+     * Bitmap.compress.
+     */
+    private static byte[] compressPng(final Bitmap bitmap) throws TakeScreenshotException {
+        final Bitmap source = toArgb8888(bitmap);
+        try {
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            final int[] pixels = new int[width * height];
+            source.getPixels(pixels, 0, width, 0, 0, width, height);
+            return ParallelPngEncoder.getInstance().encode(pixels, width, height, source.hasAlpha());
+        } catch (RuntimeException e) {
+            throw new CompressScreenshotException(PNG, e);
+        } finally {
+            if (source != bitmap) {
+                source.recycle();
             }
-            return stream.toByteArray();
-        } catch (IOException e) {
-            throw new CompressScreenshotException(JPEG, e);
         }
     }
 
+    private static byte[] toRawRgba(final Bitmap bitmap) throws TakeScreenshotException {
+        // Pixels of ARGB_8888 bitmaps are stored in RGBA byte order
+        final Bitmap source = toArgb8888(bitmap);
+        try {
+            final int stride = source.getRowBytes();
+            final ByteBuffer buffer = ByteBuffer.allocate(
+                    ScreenshotFormat.RAW_HEADER_LENGTH + stride * source.getHeight());
+            buffer.order(ByteOrder.BIG_ENDIAN)
+                    .put(ScreenshotFormat.RAW_MAGIC)
+                    .putInt(source.getWidth())
+                    .putInt(source.getHeight())
+                    .putInt(stride);
+            source.copyPixelsToBuffer(buffer);
+            return buffer.array();
+        } finally {
+            if (source != bitmap) {
+                source.recycle();
+            }
+        }
+    }
+
+    private static Rect toIntersection(Rect bounds, Rect cropArea) throws CropScreenshotException {
+        final Rect intersectionRect = new Rect();
+
+        if (!intersectionRect.setIntersect(bounds, cropArea)) {
+            throw new CropScreenshotException(bounds, cropArea);
+        }
+        return intersectionRect;
+    }
+
     private static Bitmap crop(Bitmap bitmap, Rect cropArea) throws CropScreenshotException {
         final Rect bitmapRect = new Rect(
             0,
@@ -188,11 +414,7 @@ public class ScreenshotHelper {
             bitmap.getWidth(),
             bitmap.getHeight()
          );
-        final Rect intersectionRect = new Rect();
-
-        if (!intersectionRect.setIntersect(bitmapRect, cropArea)) {
-            throw new CropScreenshotException(bitmapRect, cropArea);
-        }
+        final Rect intersectionRect = toIntersection(bitmapRect, cropArea);
 
         return Bitmap.createBitmap(
             bitmap,
@@ -0,0 +1,586 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recognizes a subset of XPath expressions, which could be evaluated directly over
+ * the elements tree without building and parsing an XML document:
+ * <p>
+ * - Absolute location paths consisting of child (`/`) and descendant (`//`) steps
+ * - Element name tests, including the wildcard (`*`)
+ * - Predicates in form of `[@attr='value']`, `[contains(@attr, 'value')]`,
+ * `[starts-with(@attr, 'value')]` and positional predicates, like `[2]`
+ * <p>
+ * The results of such queries are the same as if they were evaluated by
+ * a generic XPath engine against the XML representation of the same tree.
+ * Anything outside of this subset is not recognized and must be
+ * evaluated by a generic XPath engine.
+ */
+public class SimpleXPathQuery {
+    private final List<Step> steps;
+
+    /**
+     * Provides access to the tree, which the query is evaluated against.
+     *
+     * @param <T> the type of tree nodes
+     */
+    public interface NodeAdapter<T> {
+        String getTagName(T node);
+
+        /**
+         * @return The attribute value as it would be represented in XML
+         * or null if the node has no such attribute
+         */
+        @Nullable
+        String getAttribute(T node, String name);
+
+        List<? extends T> getChildren(T node);
+    }
+
+    /**
+     * Receives matched nodes in document order.
+     *
+     * @param <T> the type of tree nodes
+     */
+    public interface MatchHandler<T> {
+        /**
+         * @return true if the evaluation should continue or false to stop it
+         */
+        boolean onMatch(T node);
+    }
+
+    private enum Operator {
+        EQUALS, CONTAINS, STARTS_WITH
+    }
+
+    private static class Predicate {
+        // Positional predicates only have a position, which is greater than zero
+        final int position;
+        final String attributeName;
+        final Operator operator;
+        final String value;
+
+        Predicate(int position) {
+            this.position = position;
+            this.attributeName = null;
+            this.operator = null;
+            this.value = null;
+        }
+
+        Predicate(String attributeName, Operator operator, String value) {
+            this.position = 0;
+            this.attributeName = attributeName;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        boolean isPositional() {
+            return position > 0;
+        }
+
+        <T> boolean matches(T node, NodeAdapter<T> adapter) {
+            String actualValue = adapter.getAttribute(node, attributeName);
+            switch (operator) {
+                case EQUALS:
+                    // Comparison with an empty node set is always false
+                    return actualValue != null && actualValue.equals(value);
+                case CONTAINS:
+                    // The string value of an empty node set is an empty string
+                    return (actualValue == null ? "" : actualValue).contains(value);
+                case STARTS_WITH:
+                    return (actualValue == null ? "" : actualValue).startsWith(value);
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static class Step {
+        final boolean isDescendant;
+        // null means any tag name
+        @Nullable
+        final String tagName;
+        final List<Predicate> predicates;
+
+        Step(boolean isDescendant, @Nullable String tagName, List<Predicate> predicates) {
+            this.isDescendant = isDescendant;
+            this.tagName = tagName;
+            this.predicates = predicates;
+        }
+    }
+
+    private static class Parser {
+        private final String expression;
+        private int position = 0;
+
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        private boolean hasMore() {
+            return position < expression.length();
+        }
+
+        private char peek() {
+            return expression.charAt(position);
+        }
+
+        private void skipWhitespace() {
+            while (hasMore() && Character.isWhitespace(peek())) {
+                ++position;
+            }
+        }
+
+        private boolean consume(String token) {
+            skipWhitespace();
+            if (expression.startsWith(token, position)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private static boolean isNameChar(char c, boolean isFirst) {
+            if (c == '_' || Character.isLetter(c)) {
+                return true;
+            }
+            return !isFirst && (c == '-' || c == '.' || Character.isDigit(c));
+        }
+
+        @Nullable
+        private String consumeName() {
+            skipWhitespace();
+            int start = position;
+            while (hasMore() && isNameChar(peek(), position == start)) {
+                ++position;
+            }
+            return position == start ? null : expression.substring(start, position);
+        }
+
+        @Nullable
+        private String consumeLiteral() {
+            skipWhitespace();
+            if (!hasMore() || (peek() != '\'' && peek() != '"')) {
+                return null;
+            }
+            char quote = peek();
+            int end = expression.indexOf(quote, position + 1);
+            if (end < 0) {
+                return null;
+            }
+            String result = expression.substring(position + 1, end);
+            position = end + 1;
+            return result;
+        }
+
+        private int consumePositiveInteger() {
+            skipWhitespace();
+            int start = position;
+            while (hasMore() && peek() >= '0' && peek() <= '9') {
+                ++position;
+            }
+            if (position == start || position - start > 9) {
+                return -1;
+            }
+            return Integer.parseInt(expression.substring(start, position));
+        }
+
+        @Nullable
+        private Predicate consumeFunctionPredicate(Operator operator) {
+            if (!consume("(") || !consume("@")) {
+                return null;
+            }
+            String attributeName = consumeName();
+            if (attributeName == null || !consume(",")) {
+                return null;
+            }
+            String value = consumeLiteral();
+            if (value == null || !consume(")")) {
+                return null;
+            }
+            return new Predicate(attributeName, operator, value);
+        }
+
+        @Nullable
+        private Predicate consumePredicate() {
+            skipWhitespace();
+            if (!hasMore()) {
+                return null;
+            }
+            final Predicate result;
+            if (consume("@")) {
+                String attributeName = consumeName();
+                if (attributeName == null || !consume("=")) {
+                    return null;
+                }
+                String value = consumeLiteral();
+                result = value == null ? null : new Predicate(attributeName, Operator.EQUALS, value);
+            } else if (consume("contains")) {
+                result = consumeFunctionPredicate(Operator.CONTAINS);
+            } else if (consume("starts-with")) {
+                result = consumeFunctionPredicate(Operator.STARTS_WITH);
+            } else {
+                int index = consumePositiveInteger();
+                result = index > 0 ? new Predicate(index) : null;
+            }
+            return result != null && consume("]") ? result : null;
+        }
+
+        @Nullable
+        private Step consumeStep(boolean isDescendant) {
+            skipWhitespace();
+            final String tagName;
+            if (consume("*")) {
+                tagName = null;
+            } else {
+                tagName = consumeName();
+                if (tagName == null) {
+                    return null;
+                }
+                // Axis specifiers and node type tests are not supported
+                skipWhitespace();
+                if (hasMore() && (peek() == ':' || peek() == '(')) {
+                    return null;
+                }
+            }
+            List<Predicate> predicates = new ArrayList<>();
+            while (consume("[")) {
+                Predicate predicate = consumePredicate();
+                if (predicate == null) {
+                    return null;
+                }
+                predicates.add(predicate);
+            }
+            return new Step(isDescendant, tagName, predicates);
+        }
+
+        @Nullable
+        List<Step> parse() {
+            List<Step> result = new ArrayList<>();
+            skipWhitespace();
+            if (!hasMore() || peek() != '/') {
+                return null;
+            }
+            while (true) {
+                skipWhitespace();
+                if (!hasMore()) {
+                    return result.isEmpty() ? null : result;
+                }
+                final boolean isDescendant;
+                if (consume("//")) {
+                    isDescendant = true;
+                } else if (consume("/")) {
+                    isDescendant = false;
+                } else {
+                    return null;
+                }
+                Step step = consumeStep(isDescendant);
+                if (step == null) {
+                    return null;
+                }
+                result.add(step);
+            }
+        }
+    }
+
+    /**
+     * The tree flattened in document order. The index zero is reserved for the document node.
+     */
+    private static class FlatTree<T> {
+        final NodeAdapter<T> adapter;
+        final List<T> nodes = new ArrayList<>();
+        final List<List<Integer>> children = new ArrayList<>();
+        final List<Integer> subtreeEnds = new ArrayList<>();
+        final List<String> tagNames = new ArrayList<>();
+
+        FlatTree(T root, NodeAdapter<T> adapter) {
+            this.adapter = adapter;
+            nodes.add(null);
+            children.add(Collections.singletonList(1));
+            subtreeEnds.add(0);
+            add(root, adapter);
+            subtreeEnds.set(0, nodes.size());
+            tagNames.addAll(Collections.<String>nCopies(nodes.size(), null));
+        }
+
+        String getTagName(int index) {
+            String result = tagNames.get(index);
+            if (result == null) {
+                result = adapter.getTagName(nodes.get(index));
+                tagNames.set(index, result);
+            }
+            return result;
+        }
+
+        private int add(T node, NodeAdapter<T> adapter) {
+            int index = nodes.size();
+            nodes.add(node);
+            List<Integer> childIndexes = new ArrayList<>();
+            children.add(childIndexes);
+            subtreeEnds.add(index);
+            for (T child : adapter.getChildren(node)) {
+                childIndexes.add(add(child, adapter));
+            }
+            subtreeEnds.set(index, nodes.size());
+            return index;
+        }
+    }
+
+    /**
+     * The state of a node visited by the lazy evaluation. Ancestors and preceding siblings of
+     * the node are always visited before the node itself, so the node could be matched
+     * without knowing anything about the rest of the tree.
+     */
+    private static class Frame<T> {
+        @Nullable
+        final Frame<T> parent;
+        final T node;
+        final List<? extends T> siblings;
+        final int index;
+        final Boolean[] matches;
+        final Boolean[] ancestorOrSelfMatches;
+        String tagName;
+
+        Frame(@Nullable Frame<T> parent, List<? extends T> siblings, int index, int stepsCount) {
+            this.parent = parent;
+            this.node = siblings.get(index);
+            this.siblings = siblings;
+            this.index = index;
+            this.matches = new Boolean[stepsCount];
+            this.ancestorOrSelfMatches = new Boolean[stepsCount];
+        }
+    }
+
+    private SimpleXPathQuery(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Parses the given expression.
+     *
+     * @param expression XPath expression
+     * @return The parsed query or null if the expression is outside of the supported subset
+     */
+    @Nullable
+    public static SimpleXPathQuery parse(String expression) {
+        List<Step> steps = new Parser(expression).parse();
+        return steps == null ? null : new SimpleXPathQuery(steps);
+    }
+
+    /**
+     * @return Names of all attributes the query depends on
+     */
+    public Set<String> getAttributeNames() {
+        Set<String> result = new LinkedHashSet<>();
+        for (Step step : steps) {
+            for (Predicate predicate : step.predicates) {
+                if (!predicate.isPositional()) {
+                    result.add(predicate.attributeName);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static <T> List<Integer> applyStep(Step step, List<Integer> candidates, FlatTree<T> tree) {
+        List<Integer> result = new ArrayList<>();
+        for (int index : candidates) {
+            if (step.tagName == null || step.tagName.equals(tree.getTagName(index))) {
+                result.add(index);
+            }
+        }
+        for (Predicate predicate : step.predicates) {
+            if (result.isEmpty()) {
+                break;
+            }
+            if (predicate.isPositional()) {
+                result = predicate.position <= result.size()
+                        ? Collections.singletonList(result.get(predicate.position - 1))
+                        : Collections.<Integer>emptyList();
+                continue;
+            }
+            List<Integer> filtered = new ArrayList<>();
+            for (int index : result) {
+                if (predicate.matches(tree.nodes.get(index), tree.adapter)) {
+                    filtered.add(index);
+                }
+            }
+            result = filtered;
+        }
+        return result;
+    }
+
+    private static <T> boolean matchesTag(Step step, T node, NodeAdapter<T> adapter) {
+        return step.tagName == null || step.tagName.equals(adapter.getTagName(node));
+    }
+
+    private <T> boolean matches(Frame<T> frame, int stepIndex, NodeAdapter<T> adapter) {
+        Boolean result = frame.matches[stepIndex];
+        if (result == null) {
+            result = computeMatches(frame, stepIndex, adapter);
+            frame.matches[stepIndex] = result;
+        }
+        return result;
+    }
+
+    private <T> boolean ancestorOrSelfMatches(Frame<T> frame, int stepIndex, NodeAdapter<T> adapter) {
+        Boolean result = frame.ancestorOrSelfMatches[stepIndex];
+        if (result == null) {
+            result = matches(frame, stepIndex, adapter)
+                    || (frame.parent != null && ancestorOrSelfMatches(frame.parent, stepIndex, adapter));
+            frame.ancestorOrSelfMatches[stepIndex] = result;
+        }
+        return result;
+    }
+
+    private <T> boolean computeMatches(Frame<T> frame, int stepIndex, NodeAdapter<T> adapter) {
+        final Step step = steps.get(stepIndex);
+        if (frame.tagName == null) {
+            frame.tagName = adapter.getTagName(frame.node);
+        }
+        if (step.tagName != null && !step.tagName.equals(frame.tagName)) {
+            return false;
+        }
+        boolean hasPositionalPredicates = false;
+        for (Predicate predicate : step.predicates) {
+            if (predicate.isPositional()) {
+                hasPositionalPredicates = true;
+            } else if (!predicate.matches(frame.node, adapter)) {
+                return false;
+            }
+        }
+
+        // The parent must belong to the context of this step
+        if (stepIndex == 0) {
+            // The only context of the first step is the document node
+            if (!step.isDescendant && frame.parent != null) {
+                return false;
+            }
+        } else if (frame.parent == null) {
+            return false;
+        } else if (step.isDescendant
+                ? !ancestorOrSelfMatches(frame.parent, stepIndex - 1, adapter)
+                : !matches(frame.parent, stepIndex - 1, adapter)) {
+            return false;
+        }
+
+        if (!hasPositionalPredicates) {
+            return true;
+        }
+        // Only preceding siblings influence the position of the node
+        List<T> candidates = new ArrayList<>();
+        for (int i = 0; i <= frame.index; ++i) {
+            T sibling = frame.siblings.get(i);
+            if (i == frame.index || matchesTag(step, sibling, adapter)) {
+                candidates.add(sibling);
+            }
+        }
+        for (Predicate predicate : step.predicates) {
+            if (predicate.isPositional()) {
+                if (predicate.position > candidates.size()
+                        || candidates.get(predicate.position - 1) != frame.node) {
+                    return false;
+                }
+                candidates = Collections.singletonList(frame.node);
+                continue;
+            }
+            List<T> filtered = new ArrayList<>();
+            for (T candidate : candidates) {
+                if (candidate == frame.node || predicate.matches(candidate, adapter)) {
+                    filtered.add(candidate);
+                }
+            }
+            candidates = filtered;
+        }
+        return true;
+    }
+
+    private <T> boolean visit(Frame<T> frame, NodeAdapter<T> adapter, MatchHandler<T> handler) {
+        if (matches(frame, steps.size() - 1, adapter) && !handler.onMatch(frame.node)) {
+            return false;
+        }
+        List<? extends T> children = adapter.getChildren(frame.node);
+        for (int i = 0; i < children.size(); ++i) {
+            if (!visit(new Frame<>(frame, children, i, steps.size()), adapter, handler)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the query by traversing the tree in document order. Unlike
+     * {@link #evaluate(Object, NodeAdapter)} children of a node are only requested
+     * from the adapter after the node itself has been visited, and the traversal stops as soon as
+     * the handler does not need more matches. This allows to avoid materializing the whole tree
+     * if only the first match is needed.
+     *
+     * @param root The root element of the tree
+     * @param adapter The adapter providing access to the tree nodes
+     * @param handler The handler receiving matched nodes in document order
+     * @param <T> the type of tree nodes
+     */
+    public <T> void evaluateLazily(T root, NodeAdapter<T> adapter, MatchHandler<T> handler) {
+        visit(new Frame<>(null, Collections.singletonList(root), 0, steps.size()), adapter, handler);
+    }
+
+    /**
+     * Evaluates the query against the tree with the given root element.
+     *
+     * @param root The root element of the tree
+     * @param adapter The adapter providing access to the tree nodes
+     * @param <T> the type of tree nodes
+     * @return The list of matched nodes in document order
+     */
+    public <T> List<T> evaluate(T root, NodeAdapter<T> adapter) {
+        FlatTree<T> tree = new FlatTree<>(root, adapter);
+        BitSet context = new BitSet();
+        context.set(0);
+        for (Step step : steps) {
+            if (step.isDescendant) {
+                // descendant-or-self::node() of each context node is a contiguous range
+                BitSet expanded = new BitSet();
+                for (int i = context.nextSetBit(0); i >= 0; i = context.nextSetBit(i + 1)) {
+                    expanded.set(i, tree.subtreeEnds.get(i));
+                }
+                context = expanded;
+            }
+            BitSet matched = new BitSet();
+            for (int i = context.nextSetBit(0); i >= 0; i = context.nextSetBit(i + 1)) {
+                for (int index : applyStep(step, tree.children.get(i), tree)) {
+                    matched.set(index);
+                }
+            }
+            context = matched;
+        }
+
+        List<T> result = new ArrayList<>();
+        for (int i = context.nextSetBit(0); i >= 0; i = context.nextSetBit(i + 1)) {
+            result.add(tree.nodes.get(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import io.appium.uiautomator2.common.exceptions.UiAutomator2Exception;
+
+/**
+ * Coalesces concurrent calls with equal keys, so only the first of them actually
+ * performs the computation while the others wait for it to finish and receive the same result
+ * (or the same exception). The result is not cached: the next call with the same key that arrives
+ * after the computation has been completed starts a new one.
+ *
+ * The caller is responsible for making the key precise enough, so it is safe to share the result
+ * between all the calls that use it.
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, Call<V>> inFlightCalls = new HashMap<>();
+
+    private static class Call<V> {
+        private final CountDownLatch completion = new CountDownLatch(1);
+        private V result;
+        private Throwable error;
+        private int sharedCount = 0;
+    }
+
+    /**
+     * Executes the given computation or joins the one that is already in progress for the same key.
+     *
+     * @param key The key identifying the computation
+     * @param computation The actual computation to perform
+     * @return The computation result
+     */
+    public V execute(K key, Callable<V> computation) {
+        Call<V> call;
+        boolean isOwner = false;
+        synchronized (inFlightCalls) {
+            call = inFlightCalls.get(key);
+            if (call == null) {
+                call = new Call<>();
+                inFlightCalls.put(key, call);
+                isOwner = true;
+            } else {
+                ++call.sharedCount;
+            }
+        }
+
+        if (isOwner) {
+            try {
+                call.result = computation.call();
+            } catch (Throwable e) {
+                call.error = e;
+            } finally {
+                synchronized (inFlightCalls) {
+                    inFlightCalls.remove(key);
+                }
+                call.completion.countDown();
+            }
+            if (call.sharedCount > 0) {
+                Logger.info(String.format("The result of '%s' has been shared with %s concurrent call(s)",
+                        key, call.sharedCount));
+            }
+        } else {
+            try {
+                call.completion.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UiAutomator2Exception(e);
+            }
+        }
+
+        if (call.error == null) {
+            return call.result;
+        }
+        if (call.error instanceof RuntimeException) {
+            throw (RuntimeException) call.error;
+        }
+        if (call.error instanceof Error) {
+            throw (Error) call.error;
+        }
+        throw new UiAutomator2Exception(call.error);
+    }
+
+    /**
+     * @return The count of computations that are currently in progress
+     */
+    public int getInFlightCount() {
+        synchronized (inFlightCalls) {
+            return inFlightCalls.size();
+        }
+    }
+}
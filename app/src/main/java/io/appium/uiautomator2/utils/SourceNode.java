@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.apache.xerces.jaxp.SAXParserFactoryImpl;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import io.appium.uiautomator2.common.exceptions.UiAutomator2Exception;
+
+/**
+ * A lightweight immutable representation of a page source element,
+ * which is retained between page source requests in order to calculate
+ * structural differences between them.
+ */
+public class SourceNode {
+    private final String tag;
+    private final Map<String, String> attributes;
+    private final List<SourceNode> children = new ArrayList<>();
+    // The amount of nodes in this subtree including the node itself
+    private transient int subtreeSize = 1;
+
+    public SourceNode(String tag, Map<String, String> attributes) {
+        this.tag = tag;
+        this.attributes = Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+
+    public SourceNode(String tag, Map<String, String> attributes, List<SourceNode> children) {
+        this(tag, attributes);
+        for (SourceNode child : children) {
+            this.children.add(child);
+            this.subtreeSize += child.subtreeSize;
+        }
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public List<SourceNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    public int getSubtreeSize() {
+        return subtreeSize;
+    }
+
+    /**
+     * Parses the page source XML into a tree of nodes.
+     *
+     * @param xml page source XML
+     * @return The root node, which corresponds to the document element
+     */
+    public static SourceNode parse(String xml) {
+        final Deque<SourceNode> stack = new ArrayDeque<>();
+        final SourceNode[] root = new SourceNode[1];
+        SAXParserFactory factory = new SAXParserFactoryImpl();
+        factory.setNamespaceAware(false);
+        factory.setValidating(false);
+        try {
+            factory.newSAXParser().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+                    new DefaultHandler() {
+                        @Override
+                        public void startElement(String uri, String localName, String qName,
+                                                 Attributes attrs) {
+                            Map<String, String> attributes = new LinkedHashMap<>();
+                            for (int i = 0; i < attrs.getLength(); ++i) {
+                                attributes.put(attrs.getQName(i), attrs.getValue(i));
+                            }
+                            SourceNode node = new SourceNode(qName, attributes);
+                            if (stack.isEmpty()) {
+                                root[0] = node;
+                            } else {
+                                stack.peek().children.add(node);
+                            }
+                            stack.push(node);
+                        }
+
+                        @Override
+                        public void endElement(String uri, String localName, String qName) {
+                            SourceNode node = stack.pop();
+                            if (!stack.isEmpty()) {
+                                stack.peek().subtreeSize += node.subtreeSize;
+                            }
+                        }
+                    });
+        } catch (SAXException | ParserConfigurationException | IOException e) {
+            throw new UiAutomator2Exception(e);
+        }
+        if (root[0] == null) {
+            throw new UiAutomator2Exception("The page source has no root element");
+        }
+        return root[0];
+    }
+}
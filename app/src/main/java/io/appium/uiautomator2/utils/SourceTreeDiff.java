@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Calculates the structural difference between two page source trees.
+ *
+ * Each node is addressed by its path, which is the list of child indices starting
+ * from the root node. The difference could be applied to the previous tree
+ * in the following order in order to get the actual one:
+ * - remove the nodes listed in {@link #getRemoved()} in reverse order. Their paths
+ * refer to the previous tree.
+ * - insert the nodes listed in {@link #getInserted()} in the given order. Their paths
+ * refer to the actual tree.
+ * - update the attributes listed in {@link #getChanged()}. Their paths
+ * refer to the actual tree.
+ *
+ * Children of the same parent are matched by the longest common subsequence of their
+ * tag names and resource identifiers, so an element being added to or removed from a list
+ * does not change all of its following siblings.
+ */
+public class SourceTreeDiff {
+    private static final String RESOURCE_ID_ATTRIBUTE = "resource-id";
+    // Prevents quadratic memory usage for extremely long lists of children
+    private static final int MAX_LCS_TABLE_SIZE = 1000 * 1000;
+
+    private final List<Removal> removed = new ArrayList<>();
+    private final List<Insertion> inserted = new ArrayList<>();
+    private final List<AttributesChange> changed = new ArrayList<>();
+    private int changesSize = 0;
+
+    public static class Removal {
+        public final List<Integer> path;
+
+        Removal(List<Integer> path) {
+            this.path = path;
+        }
+    }
+
+    public static class Insertion {
+        public final List<Integer> path;
+        public final SourceNode node;
+
+        Insertion(List<Integer> path, SourceNode node) {
+            this.path = path;
+            this.node = node;
+        }
+    }
+
+    public static class AttributesChange {
+        public final List<Integer> path;
+        // New values of added or modified attributes
+        public final Map<String, String> attributes;
+        public final List<String> removedAttributes;
+
+        AttributesChange(List<Integer> path, Map<String, String> attributes,
+                         List<String> removedAttributes) {
+            this.path = path;
+            this.attributes = attributes;
+            this.removedAttributes = removedAttributes;
+        }
+    }
+
+    private SourceTreeDiff() {}
+
+    /**
+     * Calculates the difference between two trees.
+     *
+     * @param previous the previous tree
+     * @param actual the actual tree
+     * @return The difference or null if the root nodes cannot be matched
+     */
+    @Nullable
+    public static SourceTreeDiff calculate(SourceNode previous, SourceNode actual) {
+        if (!previous.getTag().equals(actual.getTag())) {
+            return null;
+        }
+        SourceTreeDiff diff = new SourceTreeDiff();
+        diff.compare(previous, actual, new ArrayList<Integer>(), new ArrayList<Integer>());
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return removed.isEmpty() && inserted.isEmpty() && changed.isEmpty();
+    }
+
+    /**
+     * @return The approximate amount of nodes this difference describes. Could be used
+     * to decide whether it is cheaper to transfer the whole tree instead.
+     */
+    public int getChangesSize() {
+        return changesSize;
+    }
+
+    public List<Removal> getRemoved() {
+        return removed;
+    }
+
+    public List<Insertion> getInserted() {
+        return inserted;
+    }
+
+    public List<AttributesChange> getChanged() {
+        return changed;
+    }
+
+    private static List<Integer> childPath(List<Integer> parentPath, int index) {
+        List<Integer> result = new ArrayList<>(parentPath.size() + 1);
+        result.addAll(parentPath);
+        result.add(index);
+        return result;
+    }
+
+    private static String toMatchingKey(SourceNode node) {
+        String resourceId = node.getAttributes().get(RESOURCE_ID_ATTRIBUTE);
+        return resourceId == null ? node.getTag() : node.getTag() + "#" + resourceId;
+    }
+
+    private void compareAttributes(SourceNode previous, SourceNode actual, List<Integer> path) {
+        Map<String, String> previousAttributes = previous.getAttributes();
+        Map<String, String> actualAttributes = actual.getAttributes();
+        Map<String, String> modified = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : actualAttributes.entrySet()) {
+            if (!Objects.equals(previousAttributes.get(entry.getKey()), entry.getValue())) {
+                modified.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> removedAttributes = new ArrayList<>();
+        for (String name : previousAttributes.keySet()) {
+            if (!actualAttributes.containsKey(name)) {
+                removedAttributes.add(name);
+            }
+        }
+        if (!modified.isEmpty() || !removedAttributes.isEmpty()) {
+            changed.add(new AttributesChange(path, modified, removedAttributes));
+            ++changesSize;
+        }
+    }
+
+    private void compare(SourceNode previous, SourceNode actual,
+                         List<Integer> previousPath, List<Integer> actualPath) {
+        compareAttributes(previous, actual, actualPath);
+
+        List<SourceNode> previousChildren = previous.getChildren();
+        List<SourceNode> actualChildren = actual.getChildren();
+        int[] matches = matchChildren(previousChildren, actualChildren);
+        int actualIndex = 0;
+        for (int previousIndex = 0; previousIndex <= previousChildren.size(); ++previousIndex) {
+            int matchedIndex = previousIndex < previousChildren.size()
+                    ? matches[previousIndex]
+                    : actualChildren.size();
+            if (matchedIndex < 0) {
+                removed.add(new Removal(childPath(previousPath, previousIndex)));
+                changesSize += previousChildren.get(previousIndex).getSubtreeSize();
+                continue;
+            }
+            for (; actualIndex < matchedIndex; ++actualIndex) {
+                inserted.add(new Insertion(childPath(actualPath, actualIndex),
+                        actualChildren.get(actualIndex)));
+                changesSize += actualChildren.get(actualIndex).getSubtreeSize();
+            }
+            if (previousIndex < previousChildren.size()) {
+                compare(previousChildren.get(previousIndex), actualChildren.get(actualIndex),
+                        childPath(previousPath, previousIndex), childPath(actualPath, actualIndex));
+                ++actualIndex;
+            }
+        }
+    }
+
+    /**
+     * @return The array, where each item contains the index of the matched actual child
+     * for the corresponding previous child or -1 if the previous child has no match.
+     * Matched indices are always ascending.
+     */
+    private static int[] matchChildren(List<SourceNode> previous, List<SourceNode> actual) {
+        final int[] result = new int[previous.size()];
+        final String[] previousKeys = new String[previous.size()];
+        for (int i = 0; i < previousKeys.length; ++i) {
+            previousKeys[i] = toMatchingKey(previous.get(i));
+            result[i] = -1;
+        }
+        final String[] actualKeys = new String[actual.size()];
+        for (int i = 0; i < actualKeys.length; ++i) {
+            actualKeys[i] = toMatchingKey(actual.get(i));
+        }
+
+        // Common prefix and suffix are matched directly, which covers most of the cases
+        int start = 0;
+        while (start < previousKeys.length && start < actualKeys.length
+                && previousKeys[start].equals(actualKeys[start])) {
+            result[start] = start;
+            ++start;
+        }
+        int previousEnd = previousKeys.length;
+        int actualEnd = actualKeys.length;
+        while (previousEnd > start && actualEnd > start
+                && previousKeys[previousEnd - 1].equals(actualKeys[actualEnd - 1])) {
+            result[--previousEnd] = --actualEnd;
+        }
+
+        final int rows = previousEnd - start;
+        final int columns = actualEnd - start;
+        if (rows == 0 || columns == 0 || (long) (rows + 1) * (columns + 1) > MAX_LCS_TABLE_SIZE) {
+            return result;
+        }
+        // lengths[i][j] is the LCS length of the remaining items starting from i and j
+        final int[][] lengths = new int[rows + 1][columns + 1];
+        for (int i = rows - 1; i >= 0; --i) {
+            for (int j = columns - 1; j >= 0; --j) {
+                lengths[i][j] = previousKeys[start + i].equals(actualKeys[start + j])
+                        ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        while (i < rows && j < columns) {
+            if (previousKeys[start + i].equals(actualKeys[start + j])) {
+                result[start + i] = start + j;
+                ++i;
+                ++j;
+            } else if (lengths[i + 1][j] >= lengths[i][j + 1]) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s removed, %s inserted and %s changed nodes",
+                removed.size(), inserted.size(), changed.size());
+    }
+}
@@ -18,6 +18,9 @@ package io.appium.uiautomator2.utils;
 
 import androidx.annotation.Nullable;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 public abstract class XMLHelpers {
@@ -37,6 +40,18 @@ public abstract class XMLHelpers {
             "\u200C-\u200D" + "\u2070-\u218F" + "\u2C00-\u2FEF" +
             "\u3001-\uD7FF" + "\uF900-\uFDCF" + "\uFDF0-\uFFFD" +
             "\ud800\udc00-\udbff\udfff" + "]");
+    private final static Set<String> DOWNWARD_AXES = new HashSet<>(Arrays.asList(
+            "child", "descendant", "descendant-or-self", "self", "attribute"
+    ));
+    // Functions, whose results depend on nodes outside of the context subtree
+    private final static Set<String> NON_LOCAL_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "root", "id", "idref", "lang", "doc", "collection"
+    ));
+    // Keywords, which might be followed by an absolute path
+    private final static Set<String> OPERATOR_KEYWORDS = new HashSet<>(Arrays.asList(
+            "and", "or", "div", "idiv", "mod", "eq", "ne", "lt", "le", "gt", "ge", "is", "to",
+            "union", "intersect", "except", "return", "in", "satisfies", "then", "else"
+    ));
 
     public static String toNodeName(String str) {
         String nodeName = XML10_START_TAG_PATTERN
@@ -53,4 +68,97 @@ public abstract class XMLHelpers {
                 .matcher(String.valueOf(source))
                 .replaceAll(replacement);
     }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+    }
+
+    /**
+     * Checks whether the given XPath expression could only select nodes from
+     * the subtree of its context node. Such expressions are relative and only use downward axes.
+     * The check is conservative, so some expressions, which actually satisfy this condition,
+     * might still be reported as not limited.
+     *
+     * @param xpath XPath expression
+     * @return true if the expression is known to only depend on the context subtree
+     */
+    public static boolean isLimitedToContextSubtree(String xpath) {
+        // The previous significant character and the name it terminates, if any
+        char prevChar = 0;
+        char prevPrevChar = 0;
+        String prevName = null;
+        int i = 0;
+        while (i < xpath.length()) {
+            char c = xpath.charAt(i);
+            if (Character.isWhitespace(c)) {
+                ++i;
+                continue;
+            }
+            if (c == '\'' || c == '"') {
+                int end = xpath.indexOf(c, i + 1);
+                if (end < 0) {
+                    return false;
+                }
+                i = end + 1;
+                prevPrevChar = prevChar;
+                prevChar = c;
+                prevName = null;
+                continue;
+            }
+            if (isNameChar(c)) {
+                int start = i;
+                while (i < xpath.length() && (isNameChar(xpath.charAt(i)) || xpath.charAt(i) == ':')) {
+                    if (xpath.charAt(i) == ':' && xpath.startsWith("::", i)) {
+                        break;
+                    }
+                    ++i;
+                }
+                String name = xpath.substring(start, i);
+                if (name.contains("..")) {
+                    return false;
+                }
+                prevPrevChar = prevChar;
+                prevChar = name.charAt(name.length() - 1);
+                prevName = name;
+                continue;
+            }
+            if (c == ':' && xpath.startsWith("::", i)) {
+                if (prevName == null || !DOWNWARD_AXES.contains(prevName)) {
+                    return false;
+                }
+                i += 2;
+                prevPrevChar = prevChar;
+                prevChar = ':';
+                prevName = null;
+                continue;
+            }
+            if (c == '(' && prevName != null
+                    && NON_LOCAL_FUNCTIONS.contains(prevName.substring(prevName.lastIndexOf(':') + 1))) {
+                return false;
+            }
+            if (c == '$') {
+                return false;
+            }
+            if (c == '/') {
+                // A slash only continues a relative path if it follows a step
+                boolean isStepEnd;
+                if (prevName != null) {
+                    isStepEnd = !OPERATOR_KEYWORDS.contains(prevName);
+                } else if (prevChar == '*') {
+                    isStepEnd = prevPrevChar == '/' || prevPrevChar == ':' || prevPrevChar == '@'
+                            || prevPrevChar == 0;
+                } else {
+                    isStepEnd = prevChar == ']' || prevChar == ')' || prevChar == '/';
+                }
+                if (!isStepEnd) {
+                    return false;
+                }
+            }
+            prevPrevChar = prevChar;
+            prevChar = c;
+            prevName = null;
+            ++i;
+        }
+        return true;
+    }
 }
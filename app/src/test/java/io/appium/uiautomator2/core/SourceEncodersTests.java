@@ -0,0 +1,356 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlSerializer;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.appium.uiautomator2.model.UiElement;
+import io.appium.uiautomator2.utils.Attribute;
+
+import static io.appium.uiautomator2.utils.ModelUtils.toJsonString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class SourceEncodersTests {
+    private static final String[] CLASS_NAMES = {
+            "android.widget.FrameLayout", "android.widget.LinearLayout",
+            "android.widget.TextView", "android.widget.Button", "android.widget.ImageView"
+    };
+
+    private static class FakeElement extends UiElement<Object, FakeElement> {
+        private final Map<Attribute, Object> attributes = new LinkedHashMap<>();
+        private final List<FakeElement> children = new ArrayList<>();
+
+        FakeElement() {
+            super(null);
+        }
+
+        @Override
+        public List<FakeElement> getChildren() {
+            return children;
+        }
+
+        @Override
+        protected Map<Attribute, Object> getAttributes() {
+            return attributes;
+        }
+    }
+
+    private static class DecodedNode {
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        final List<DecodedNode> children = new ArrayList<>();
+    }
+
+    private static class BinaryDecoder {
+        private final ByteBuffer buffer;
+        private final List<String> attributeNames = new ArrayList<>();
+        private final List<String> tableStrings = new ArrayList<>();
+
+        BinaryDecoder(byte[] data) {
+            this.buffer = ByteBuffer.wrap(data);
+        }
+
+        int readVarint() {
+            int result = 0;
+            int shift = 0;
+            while (true) {
+                int b = buffer.get() & 0xFF;
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        String readString() {
+            byte[] bytes = new byte[readVarint()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        DecodedNode readNode() {
+            DecodedNode node = new DecodedNode();
+            int attributesCount = readVarint();
+            for (int i = 0; i < attributesCount; ++i) {
+                String name = attributeNames.get(readVarint());
+                int type = readVarint();
+                switch (type) {
+                    case BinarySourceEncoder.VALUE_FALSE:
+                        node.attributes.put(name, false);
+                        break;
+                    case BinarySourceEncoder.VALUE_TRUE:
+                        node.attributes.put(name, true);
+                        break;
+                    case BinarySourceEncoder.VALUE_INTEGER: {
+                        int value = readVarint();
+                        node.attributes.put(name, (value >>> 1) ^ -(value & 1));
+                        break;
+                    }
+                    case BinarySourceEncoder.VALUE_TABLE_STRING:
+                        node.attributes.put(name, tableStrings.get(readVarint()));
+                        break;
+                    case BinarySourceEncoder.VALUE_STRING:
+                        node.attributes.put(name, readString());
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown value type " + type);
+                }
+            }
+            int childrenCount = readVarint();
+            for (int i = 0; i < childrenCount; ++i) {
+                node.children.add(readNode());
+            }
+            return node;
+        }
+
+        DecodedNode decode() {
+            byte[] magic = new byte[BinarySourceEncoder.MAGIC.length];
+            buffer.get(magic);
+            assertArrayEquals(BinarySourceEncoder.MAGIC, magic);
+            assertEquals(BinarySourceEncoder.FORMAT_VERSION, buffer.get());
+            int attributeNamesCount = readVarint();
+            for (int i = 0; i < attributeNamesCount; ++i) {
+                attributeNames.add(readString());
+            }
+            int tableStringsCount = readVarint();
+            for (int i = 0; i < tableStringsCount; ++i) {
+                tableStrings.add(readString());
+            }
+            DecodedNode root = readNode();
+            assertFalse(buffer.hasRemaining());
+            return root;
+        }
+    }
+
+    private static FakeElement generateElement(Random random, int index, int depth) {
+        FakeElement element = new FakeElement();
+        element.attributes.put(Attribute.INDEX, index);
+        element.attributes.put(Attribute.PACKAGE, "io.appium.android.apis");
+        element.attributes.put(Attribute.CLASS, CLASS_NAMES[random.nextInt(CLASS_NAMES.length)]);
+        element.attributes.put(Attribute.TEXT, random.nextBoolean() ? "" : "Item " + random.nextInt(1000));
+        element.attributes.put(Attribute.CONTENT_DESC, null);
+        element.attributes.put(Attribute.RESOURCE_ID, "io.appium.android.apis:id/item" + random.nextInt(20));
+        element.attributes.put(Attribute.CHECKABLE, false);
+        element.attributes.put(Attribute.CHECKED, false);
+        element.attributes.put(Attribute.CLICKABLE, random.nextBoolean());
+        element.attributes.put(Attribute.ENABLED, true);
+        element.attributes.put(Attribute.FOCUSABLE, random.nextBoolean());
+        element.attributes.put(Attribute.FOCUSED, false);
+        element.attributes.put(Attribute.LONG_CLICKABLE, false);
+        element.attributes.put(Attribute.PASSWORD, false);
+        element.attributes.put(Attribute.SCROLLABLE, false);
+        element.attributes.put(Attribute.SELECTED, false);
+        element.attributes.put(Attribute.BOUNDS, String.format("[%s,%s][%s,%s]",
+                random.nextInt(540), random.nextInt(960), 540 + random.nextInt(540), 960 + random.nextInt(960)));
+        element.attributes.put(Attribute.DISPLAYED, true);
+        if (depth > 0) {
+            int childrenCount = 1 + random.nextInt(5);
+            for (int i = 0; i < childrenCount; ++i) {
+                element.children.add(generateElement(random, i, depth - 1));
+            }
+        }
+        return element;
+    }
+
+    private static Map<String, Integer> getDisplayInfo() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("rotation", 0);
+        result.put("width", 1080);
+        result.put("height", 1920);
+        return result;
+    }
+
+    private static Map<String, Object> toExpectedAttributes(UiElement<?, ?> element) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Attribute attr : element.attributeKeys()) {
+            Object value = element.get(attr);
+            if (attr.isExposableToXml() && value != null) {
+                result.put(attr.getName(), value);
+            }
+        }
+        return result;
+    }
+
+    private static void assertDecodedNode(FakeElement expected, DecodedNode actual) {
+        assertEquals(toExpectedAttributes(expected), actual.attributes);
+        assertEquals(expected.getChildren().size(), actual.children.size());
+        for (int i = 0; i < actual.children.size(); ++i) {
+            assertDecodedNode(expected.getChildren().get(i), actual.children.get(i));
+        }
+    }
+
+    private static void serializeToXml(XmlSerializer serializer, UiElement<?, ?> element,
+                                       boolean isRoot) throws IOException {
+        String className = element.getClassName();
+        serializer.startTag("", className);
+        for (Map.Entry<String, Object> entry : toExpectedAttributes(element).entrySet()) {
+            serializer.attribute("", entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        if (isRoot) {
+            for (Map.Entry<String, Integer> entry : getDisplayInfo().entrySet()) {
+                serializer.attribute("", entry.getKey(), Integer.toString(entry.getValue()));
+            }
+        }
+        for (UiElement<?, ?> child : element.getChildren()) {
+            serializeToXml(serializer, child, false);
+        }
+        serializer.endTag("", className);
+    }
+
+    private static int countElements(UiElement<?, ?> element) {
+        int result = 1;
+        for (UiElement<?, ?> child : element.getChildren()) {
+            result += countElements(child);
+        }
+        return result;
+    }
+
+    private static byte[] encodeToXml(UiElement<?, ?> root) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XmlSerializer serializer = new KXmlSerializer();
+        serializer.setOutput(outputStream, "UTF-8");
+        serializer.startDocument("UTF-8", true);
+        serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+        serializeToXml(serializer, root, true);
+        serializer.endDocument();
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void shouldEncodeJsonTree() {
+        FakeElement root = generateElement(new Random(1), 0, 2);
+        JsonObject result = JsonSourceEncoder.encode(root, getDisplayInfo());
+
+        JsonObject keys = result.getAsJsonObject("keys");
+        assertEquals("class", keys.get("c").getAsString());
+        assertEquals("resource-id", keys.get("r").getAsString());
+        assertEquals("width", keys.get("w").getAsString());
+
+        JsonObject jsonRoot = result.getAsJsonObject("root");
+        assertEquals(root.getClassName(), jsonRoot.get("c").getAsString());
+        assertTrue(jsonRoot.get("e").getAsJsonPrimitive().isBoolean());
+        assertTrue(jsonRoot.get("i").getAsJsonPrimitive().isNumber());
+        assertEquals(1080, jsonRoot.get("w").getAsInt());
+        assertFalse(jsonRoot.has("d"));
+
+        JsonArray children = jsonRoot.getAsJsonArray(JsonSourceEncoder.CHILDREN_KEY);
+        assertEquals(root.getChildren().size(), children.size());
+        JsonObject firstChild = children.get(0).getAsJsonObject();
+        assertEquals(root.getChildren().get(0).getResourceId(), firstChild.get("r").getAsString());
+        assertFalse(firstChild.has("w"));
+    }
+
+    @Test
+    public void shouldEncodeBinaryTree() {
+        FakeElement root = generateElement(new Random(2), 0, 4);
+        root.attributes.put(Attribute.TEXT, "Non-ASCII: \u00e9\u4e2d\ud83d\ude00");
+        root.attributes.put(Attribute.SELECTION_START, -1);
+        root.attributes.put(Attribute.SELECTION_END, 300);
+
+        DecodedNode decoded = new BinaryDecoder(BinarySourceEncoder.encode(root, getDisplayInfo())).decode();
+
+        Map<String, Object> expectedRootAttributes = toExpectedAttributes(root);
+        expectedRootAttributes.putAll(getDisplayInfo());
+        assertEquals(expectedRootAttributes, decoded.attributes);
+        assertEquals(root.getChildren().size(), decoded.children.size());
+        for (int i = 0; i < decoded.children.size(); ++i) {
+            assertDecodedNode(root.getChildren().get(i), decoded.children.get(i));
+        }
+    }
+
+    @Test
+    public void shouldEncodeEmptyTree() {
+        FakeElement root = new FakeElement();
+        root.attributes.put(Attribute.CLASS, "hierarchy");
+        DecodedNode decoded = new BinaryDecoder(BinarySourceEncoder.encode(root, null)).decode();
+        assertEquals(Collections.<String, Object>singletonMap("class", "hierarchy"), decoded.attributes);
+        assertTrue(decoded.children.isEmpty());
+    }
+
+    @Test
+    public void shouldEncodeMoreCompactlyThanXml() throws IOException {
+        FakeElement root = generateElement(new Random(3), 0, 7);
+        int xmlSize = encodeToXml(root).length;
+        int jsonSize = toJsonString(JsonSourceEncoder.encode(root, getDisplayInfo()))
+                .getBytes(StandardCharsets.UTF_8).length;
+        int binarySize = BinarySourceEncoder.encode(root, getDisplayInfo()).length;
+        assertTrue(jsonSize < xmlSize);
+        assertTrue(binarySize < jsonSize);
+    }
+
+    /**
+     * Measures the encoding time and the output size of all page source formats.
+     * Only runs if the build is started with -PrunBenchmarks
+     */
+    @Test
+    public void benchmarkEncodersOnLargeTree() throws IOException {
+        assumeTrue(Boolean.getBoolean("runBenchmarks"));
+        FakeElement root = generateElement(new Random(3), 0, 7);
+        final int iterations = 10;
+        // Warm up
+        encodeToXml(root);
+        toJsonString(JsonSourceEncoder.encode(root, getDisplayInfo()));
+        BinarySourceEncoder.encode(root, getDisplayInfo());
+
+        long xmlNanos = 0;
+        long jsonNanos = 0;
+        long binaryNanos = 0;
+        int xmlSize = 0;
+        int jsonSize = 0;
+        int binarySize = 0;
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            xmlSize = encodeToXml(root).length;
+            xmlNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            jsonSize = toJsonString(JsonSourceEncoder.encode(root, getDisplayInfo()))
+                    .getBytes(StandardCharsets.UTF_8).length;
+            jsonNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            binarySize = BinarySourceEncoder.encode(root, getDisplayInfo()).length;
+            binaryNanos += System.nanoTime() - start;
+        }
+        System.out.println(String.format("Encoded %s elements. " +
+                        "XML: %s bytes in %.2fms, JSON: %s bytes in %.2fms, binary: %s bytes in %.2fms",
+                countElements(root),
+                xmlSize, xmlNanos / iterations / 1e6,
+                jsonSize, jsonNanos / iterations / 1e6,
+                binarySize, binaryNanos / iterations / 1e6));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import io.appium.uiautomator2.model.UiElementSnapshot;
+import io.appium.uiautomator2.utils.Attribute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class SpeculativeSnapshotterTests {
+    private static final Set<Attribute> ATTRIBUTES = new HashSet<>(Arrays.asList(
+            Attribute.CLASS, Attribute.TEXT, Attribute.RESOURCE_ID));
+
+    private final List<Runnable> scheduledTasks = new ArrayList<>();
+    private UiChangeTracker tracker;
+    private TestSnapshotter snapshotter;
+    private UiElementSnapshot root;
+
+    private static class TestSnapshotter extends SpeculativeSnapshotter {
+        boolean isEnabled = true;
+        List<CharSequence> toastMessages = new ArrayList<>();
+        List<Object> settings = Arrays.<Object>asList(false, false, true, false);
+
+        TestSnapshotter(UiChangeTracker tracker, Executor executor) {
+            super(tracker, executor);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return isEnabled;
+        }
+
+        @Override
+        List<CharSequence> getToastMessages() {
+            return toastMessages;
+        }
+
+        @Override
+        List<Object> getSnapshotSettings() {
+            return settings;
+        }
+    }
+
+    @Before
+    public void setup() {
+        tracker = new UiChangeTracker();
+        tracker.setTracking(true);
+        snapshotter = new TestSnapshotter(tracker, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                scheduledTasks.add(command);
+            }
+        });
+        root = mock(UiElementSnapshot.class);
+    }
+
+    private boolean publish() {
+        return snapshotter.publish(snapshotter.getLastRequestId(), tracker.getGeneration(), root,
+                ATTRIBUTES, snapshotter.getToastMessages(), snapshotter.getSnapshotSettings());
+    }
+
+    @Test
+    public void shouldScheduleSnapshotBuilding() {
+        snapshotter.schedule();
+        assertEquals(1, scheduledTasks.size());
+        assertEquals(1, snapshotter.getLastRequestId());
+    }
+
+    @Test
+    public void shouldNotScheduleIfDisabled() {
+        snapshotter.isEnabled = false;
+        snapshotter.schedule();
+        assertTrue(scheduledTasks.isEmpty());
+    }
+
+    @Test
+    public void shouldNotScheduleIfNotTracking() {
+        tracker.setTracking(false);
+        snapshotter.schedule();
+        assertTrue(scheduledTasks.isEmpty());
+    }
+
+    @Test
+    public void shouldDiscardSnapshotOnScheduling() {
+        snapshotter.schedule();
+        assertTrue(publish());
+        assertSame(root, snapshotter.getSnapshot(ATTRIBUTES));
+        snapshotter.schedule();
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldRejectSnapshotOfOutdatedRequest() {
+        snapshotter.schedule();
+        long requestId = snapshotter.getLastRequestId();
+        snapshotter.schedule();
+        assertFalse(snapshotter.publish(requestId, tracker.getGeneration(), root,
+                ATTRIBUTES, snapshotter.toastMessages, snapshotter.settings));
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldRejectSnapshotBuiltDuringUiChange() {
+        snapshotter.schedule();
+        long generation = tracker.getGeneration();
+        tracker.invalidate();
+        assertFalse(snapshotter.publish(snapshotter.getLastRequestId(), generation, root,
+                ATTRIBUTES, snapshotter.toastMessages, snapshotter.settings));
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldDiscardSnapshotOnGenerationChange() {
+        snapshotter.schedule();
+        assertTrue(publish());
+        tracker.invalidate();
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+        // The snapshot must not come back even if nothing else changes
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldDiscardSnapshotOnTrackingStop() {
+        snapshotter.schedule();
+        assertTrue(publish());
+        tracker.setTracking(false);
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldDiscardSnapshotOnToastChange() {
+        snapshotter.schedule();
+        assertTrue(publish());
+        snapshotter.toastMessages = Collections.<CharSequence>singletonList("Saved");
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldDiscardSnapshotOnSettingsChange() {
+        snapshotter.schedule();
+        assertTrue(publish());
+        snapshotter.settings = Arrays.<Object>asList(true, false, true, false);
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+        snapshotter.settings = Arrays.<Object>asList(false, false, true, false);
+        assertNull(snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldOnlyServeLookupsCoveredBySnapshotAttributes() {
+        snapshotter.schedule();
+        assertTrue(publish());
+        assertSame(root, snapshotter.getSnapshot(Collections.singleton(Attribute.TEXT)));
+        assertNull(snapshotter.getSnapshot(Collections.singleton(Attribute.CONTENT_DESC)));
+        // Missing attributes do not make the snapshot outdated for other lookups
+        assertSame(root, snapshotter.getSnapshot(ATTRIBUTES));
+    }
+
+    @Test
+    public void shouldIgnoreAttributesNotStoredInSnapshot() {
+        snapshotter.schedule();
+        assertTrue(publish());
+        assertSame(root, snapshotter.getSnapshot(new HashSet<>(Arrays.asList(
+                Attribute.TEXT, Attribute.CONTENT_SIZE))));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.core;
+
+import android.view.accessibility.AccessibilityEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UiChangeTrackerTests {
+    private UiChangeTracker tracker;
+
+    @Before
+    public void setup() {
+        tracker = new UiChangeTracker();
+    }
+
+    private static AccessibilityEvent obtainEvent(int eventType) {
+        return AccessibilityEvent.obtain(eventType);
+    }
+
+    @Test
+    public void shouldIncrementGenerationOnContentChange() {
+        long generation = tracker.getGeneration();
+        tracker.onAccessibilityEvent(obtainEvent(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED));
+        assertEquals(generation + 1, tracker.getGeneration());
+    }
+
+    @Test
+    public void shouldIgnoreNotificationEvents() {
+        long generation = tracker.getGeneration();
+        tracker.onAccessibilityEvent(obtainEvent(AccessibilityEvent.TYPE_NOTIFICATION_STATE_CHANGED));
+        assertEquals(generation, tracker.getGeneration());
+    }
+
+    @Test
+    public void shouldIncrementGenerationOnTrackingStateChange() {
+        assertFalse(tracker.isTracking());
+        long generation = tracker.getGeneration();
+        tracker.setTracking(true);
+        assertTrue(tracker.isTracking());
+        tracker.setTracking(true);
+        assertEquals(generation + 1, tracker.getGeneration());
+        tracker.setTracking(false);
+        assertEquals(generation + 2, tracker.getGeneration());
+    }
+
+    @Test
+    public void shouldNotWaitIfGenerationHasAlreadyChanged() {
+        long generation = tracker.getGeneration();
+        tracker.invalidate();
+        assertEquals(generation + 1, tracker.awaitChange(generation, Long.MAX_VALUE));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldWakeUpWaitersOnChange() throws InterruptedException {
+        final long generation = tracker.getGeneration();
+        final long[] observedGeneration = new long[1];
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                observedGeneration[0] = tracker.awaitChange(generation, Long.MAX_VALUE / 2);
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        tracker.onAccessibilityEvent(obtainEvent(AccessibilityEvent.TYPE_VIEW_SCROLLED));
+        waiter.join();
+        assertEquals(generation + 1, observedGeneration[0]);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.http;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestBodySizeLimiterTests {
+    private static final int MAX_BODY_SIZE = 16;
+    private static final int MAX_LARGE_BODY_SIZE = 64;
+
+    private static final IHttpServlet SERVLET = new IHttpServlet() {
+        @Override
+        public void handleHttpRequest(IHttpRequest request, IHttpResponse response) {
+        }
+
+        @Override
+        public boolean acceptsLargeBody(String method, String uri) {
+            return uri.startsWith("/large");
+        }
+    };
+
+    private static EmbeddedChannel createChannel() {
+        return new EmbeddedChannel(
+                new RequestBodySizeLimiter(Collections.singletonList(SERVLET), MAX_BODY_SIZE, MAX_LARGE_BODY_SIZE),
+                new HttpObjectAggregator(MAX_LARGE_BODY_SIZE)
+        );
+    }
+
+    private static HttpRequest createRequest(String uri) {
+        return new DefaultHttpRequest(HTTP_1_1, HttpMethod.POST, uri);
+    }
+
+    private static String createBody(int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            result.append('a');
+        }
+        return result.toString();
+    }
+
+    private static void sendBody(EmbeddedChannel channel, String uri, String body) {
+        int middle = body.length() / 2;
+        channel.writeInbound(createRequest(uri),
+                new DefaultHttpContent(Unpooled.copiedBuffer(body.substring(0, middle), UTF_8)),
+                new DefaultLastHttpContent(Unpooled.copiedBuffer(body.substring(middle), UTF_8)));
+    }
+
+    private static void assertRejected(EmbeddedChannel channel) {
+        assertNull(channel.readInbound());
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        try {
+            assertEquals(REQUEST_ENTITY_TOO_LARGE, response.getStatus());
+        } finally {
+            response.release();
+        }
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void shouldPassSmallBodies() {
+        EmbeddedChannel channel = createChannel();
+        String body = createBody(MAX_BODY_SIZE);
+        sendBody(channel, "/session/1/element", body);
+        FullHttpRequest request = (FullHttpRequest) channel.readInbound();
+        try {
+            assertEquals(body, request.content().toString(UTF_8));
+        } finally {
+            request.release();
+        }
+        assertNull(channel.readOutbound());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    public void shouldRejectBigBodiesOfRegularCommands() {
+        EmbeddedChannel channel = createChannel();
+        sendBody(channel, "/session/1/element", createBody(MAX_BODY_SIZE + 1));
+        assertRejected(channel);
+    }
+
+    @Test
+    public void shouldRejectBigBodiesByContentLength() {
+        EmbeddedChannel channel = createChannel();
+        HttpRequest request = createRequest("/session/1/element");
+        HttpHeaders.setContentLength(request, MAX_BODY_SIZE + 1);
+        channel.writeInbound(request);
+        assertRejected(channel);
+    }
+
+    @Test
+    public void shouldAcceptBigBodiesOfLargeBodyCommands() {
+        EmbeddedChannel channel = createChannel();
+        String body = createBody(MAX_LARGE_BODY_SIZE);
+        sendBody(channel, "/large/actions", body);
+        FullHttpRequest request = (FullHttpRequest) channel.readInbound();
+        try {
+            assertEquals(body, request.content().toString(UTF_8));
+        } finally {
+            request.release();
+        }
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    public void shouldRejectBodiesOverTheLargeLimit() {
+        EmbeddedChannel channel = createChannel();
+        sendBody(channel, "/large/actions", createBody(MAX_LARGE_BODY_SIZE + 1));
+        assertRejected(channel);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.http.impl;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NettyHttpResponseTests {
+    private static void assertExactLength(String message) {
+        assertEquals(message.getBytes(StandardCharsets.UTF_8).length,
+                NettyHttpResponse.getMaxUtf8Length(message));
+    }
+
+    @Test
+    public void shouldCalculateUtf8Length() {
+        assertExactLength("");
+        assertExactLength("{\"value\":null}");
+        assertExactLength("Gr\u00F6\u00DFe");
+        assertExactLength("\u65E5\u672C\u8A9E\u306E\u30C6\u30AD\u30B9\u30C8");
+        assertExactLength("emoji \uD83D\uDE00 and \uD83D\uDC4D");
+    }
+
+    @Test
+    public void shouldNotUnderestimateUnpairedSurrogates() {
+        String message = "a\uD83Db\uDE00";
+        assertTrue(NettyHttpResponse.getMaxUtf8Length(message)
+                >= message.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(8, NettyHttpResponse.getMaxUtf8Length(message));
+    }
+}
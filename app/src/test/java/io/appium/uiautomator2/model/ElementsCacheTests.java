@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ElementsCacheTests {
+    private static String toId(int index) {
+        return String.format("00000000-0000-0000-0000-%012d", index);
+    }
+
+    private static void put(ElementsCache cache, int index) {
+        AndroidElement element = mock(AndroidElement.class);
+        when(element.getId()).thenReturn(toId(index));
+        cache.put(element, 1, index);
+    }
+
+    @Test
+    public void shouldKeepAllElementsWithinCapacity() {
+        for (int capacity : new int[]{1, 2, 5, 16, 17, 100, 500}) {
+            ElementsCache cache = new ElementsCache(capacity);
+            for (int i = 0; i < capacity; ++i) {
+                put(cache, i);
+            }
+            for (int i = 0; i < capacity; ++i) {
+                assertTrue(cache.isCached(toId(i)));
+            }
+            assertEquals(capacity, cache.size());
+            assertEquals(0L, (long) cache.getStats().get("evictions"));
+        }
+    }
+
+    @Test
+    public void shouldNeverExceedCapacity() {
+        ElementsCache cache = new ElementsCache(5);
+        for (int i = 0; i < 100; ++i) {
+            put(cache, i);
+            assertTrue(cache.size() <= 5);
+        }
+        assertEquals(95L, (long) cache.getStats().get("evictions"));
+        for (int i = 95; i < 100; ++i) {
+            assertTrue(cache.isCached(toId(i)));
+        }
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedElement() {
+        ElementsCache cache = new ElementsCache(2);
+        put(cache, 1);
+        put(cache, 2);
+        assertTrue(cache.isCached(toId(1)));
+        put(cache, 3);
+        assertTrue(cache.isCached(toId(1)));
+        assertFalse(cache.isCached(toId(2)));
+        assertTrue(cache.isCached(toId(3)));
+    }
+
+    @Test
+    public void shouldKeepRecentlyUsedElementsWhenCapacityIsDecreased() {
+        ElementsCache cache = new ElementsCache(10);
+        for (int i = 0; i < 10; ++i) {
+            put(cache, i);
+        }
+        for (int i = 7; i >= 5; --i) {
+            assertTrue(cache.isCached(toId(i)));
+        }
+        cache.setCapacity(3);
+        assertEquals(3, cache.size());
+        for (int i = 5; i < 8; ++i) {
+            assertTrue(cache.isCached(toId(i)));
+        }
+    }
+}
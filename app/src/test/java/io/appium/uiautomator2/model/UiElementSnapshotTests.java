@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.appium.uiautomator2.utils.Attribute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UiElementSnapshotTests {
+    private static final Set<Attribute> ATTRIBUTES = new HashSet<>(
+            Arrays.asList(Attribute.PACKAGE, Attribute.INDEX));
+
+    private static AccessibilityNodeInfo createWindowRoot(String packageName, boolean isVisible) {
+        AccessibilityNodeInfo node = AccessibilityNodeInfo.obtain();
+        node.setPackageName(packageName);
+        node.setClassName("android.widget.FrameLayout");
+        node.setVisibleToUser(isVisible);
+        return node;
+    }
+
+    private static AccessibilityNodeInfo[] createWindowRoots() {
+        return new AccessibilityNodeInfo[]{
+                createWindowRoot("com.android.systemui", true),
+                createWindowRoot("io.appium.android.apis", true),
+                createWindowRoot("io.appium.android.apis", false),
+        };
+    }
+
+    @Test
+    public void shouldIncludeAllWindowsByDefault() {
+        UiElementSnapshot snapshot = UiElementSnapshot.take(createWindowRoots(),
+                Collections.<CharSequence>emptyList(), UiElementSnapshot.Filter.DEFAULT, ATTRIBUTES);
+        assertEquals(3, snapshot.getChildren().size());
+    }
+
+    @Test
+    public void shouldOnlyIncludeWindowsOfGivenPackage() {
+        UiElementSnapshot snapshot = UiElementSnapshot.take(createWindowRoots(),
+                Collections.<CharSequence>emptyList(),
+                new UiElementSnapshot.Filter(UiElementSnapshot.DEFAULT_MAX_DEPTH, false, "io.appium.android.apis"),
+                ATTRIBUTES);
+        List<UiElementSnapshot> children = snapshot.getChildren();
+        assertEquals(2, children.size());
+        for (UiElementSnapshot child : children) {
+            assertEquals("io.appium.android.apis", child.getPackageName());
+        }
+        // The original indices must be preserved
+        assertEquals(1, (int) children.get(0).get(Attribute.INDEX));
+    }
+
+    @Test
+    public void shouldSkipInvisibleWindowsIfVisibleOnly() {
+        UiElementSnapshot snapshot = UiElementSnapshot.take(createWindowRoots(),
+                Collections.<CharSequence>emptyList(),
+                new UiElementSnapshot.Filter(UiElementSnapshot.DEFAULT_MAX_DEPTH, true, null),
+                ATTRIBUTES);
+        assertEquals(2, snapshot.getChildren().size());
+    }
+
+    @Test
+    public void shouldNotCollectWindowsIfMaxDepthIsZero() {
+        UiElementSnapshot snapshot = UiElementSnapshot.take(createWindowRoots(),
+                Collections.<CharSequence>emptyList(),
+                new UiElementSnapshot.Filter(0, false, null), ATTRIBUTES);
+        assertTrue(snapshot.getChildren().isEmpty());
+    }
+}
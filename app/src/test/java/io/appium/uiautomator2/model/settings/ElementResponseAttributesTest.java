@@ -50,4 +50,9 @@ public class ElementResponseAttributesTest {
         Assert.assertEquals("a,b", elementResponseAttributes.getValue());
         Assert.assertArrayEquals(new String[] {"a", "b"}, elementResponseAttributes.asArray());
     }
+
+    @Test
+    public void shouldReturnDefaultAttributesAsArray() {
+        Assert.assertArrayEquals(new String[] {"name", "text"}, elementResponseAttributes.asArray());
+    }
 }
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.settings;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+
+public class ElementsCacheCapacityTests {
+    private ElementsCacheCapacity elementsCacheCapacity;
+
+    @Before
+    public void setup() {
+        elementsCacheCapacity = new ElementsCacheCapacity();
+    }
+
+    @Test
+    public void shouldBeInteger() {
+        Assert.assertEquals(Integer.class, elementsCacheCapacity.getValueType());
+    }
+
+    @Test
+    public void shouldReturnValidSettingName() {
+        Assert.assertEquals("elementsCacheCapacity", elementsCacheCapacity.getName());
+    }
+
+    @Test
+    public void shouldHaveDefaultValue() {
+        Assert.assertEquals(Integer.valueOf(500), elementsCacheCapacity.getValue());
+    }
+
+    @Test
+    public void shouldBeAbleToChangeCapacity() {
+        elementsCacheCapacity.update(100);
+        Assert.assertEquals(Integer.valueOf(100), elementsCacheCapacity.getValue());
+    }
+
+    @Test(expected = InvalidArgumentException.class)
+    public void shouldNotAcceptNonPositiveValues() {
+        elementsCacheCapacity.update(0);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.model.settings;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+
+public class MjpegTargetLatencyTests {
+    private MjpegTargetLatency mjpegTargetLatency;
+
+    @Before
+    public void setup() {
+        mjpegTargetLatency = new MjpegTargetLatency();
+    }
+
+    @After
+    public void tearDown() {
+        mjpegTargetLatency.update(mjpegTargetLatency.getDefaultValue());
+    }
+
+    @Test
+    public void shouldBeInteger() {
+        Assert.assertEquals(Integer.class, mjpegTargetLatency.getValueType());
+    }
+
+    @Test
+    public void shouldReturnValidSettingName() {
+        Assert.assertEquals("mjpegTargetLatency", mjpegTargetLatency.getName());
+    }
+
+    @Test
+    public void shouldHaveDefaultValue() {
+        Assert.assertEquals(Integer.valueOf(200), mjpegTargetLatency.getValue());
+    }
+
+    @Test
+    public void shouldBeAbleToChangeLatency() {
+        mjpegTargetLatency.update(500);
+        Assert.assertEquals(Integer.valueOf(500), mjpegTargetLatency.getValue());
+    }
+
+    @Test(expected = InvalidArgumentException.class)
+    public void shouldNotAcceptTooSmallValues() {
+        mjpegTargetLatency.update(10);
+    }
+
+    @Test(expected = InvalidArgumentException.class)
+    public void shouldNotAcceptTooBigValues() {
+        mjpegTargetLatency.update(10000);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameChangeDetectorTests {
+    private static long hash(int... pixels) {
+        return FrameChangeDetector.hashPixels(0xcbf29ce484222325L, pixels, pixels.length);
+    }
+
+    @Test
+    public void shouldHashEqualPixelsEqually() {
+        assertEquals(hash(1, 2, 3), hash(1, 2, 3));
+        assertNotEquals(hash(1, 2, 3), hash(1, 2, 4));
+        assertNotEquals(hash(1, 2, 3), hash(3, 2, 1));
+    }
+
+    @Test
+    public void shouldOnlyHashTheGivenLength() {
+        int[] pixels = {1, 2, 3, 4};
+        assertEquals(hash(1, 2), FrameChangeDetector.hashPixels(0xcbf29ce484222325L, pixels, 2));
+    }
+
+    @Test
+    public void shouldReportTheFirstFrameAsChanged() {
+        assertTrue(new FrameChangeDetector().hasChanged(hash(1), 10, 20));
+    }
+
+    @Test
+    public void shouldDetectUnchangedFrames() {
+        FrameChangeDetector detector = new FrameChangeDetector();
+        detector.hasChanged(hash(1), 10, 20);
+        assertFalse(detector.hasChanged(hash(1), 10, 20));
+        assertTrue(detector.hasChanged(hash(2), 10, 20));
+        assertFalse(detector.hasChanged(hash(2), 10, 20));
+    }
+
+    @Test
+    public void shouldDetectSizeChanges() {
+        FrameChangeDetector detector = new FrameChangeDetector();
+        detector.hasChanged(hash(1), 10, 20);
+        assertTrue(detector.hasChanged(hash(1), 20, 10));
+        assertTrue(detector.hasChanged(hash(1), 20, 11));
+    }
+
+    @Test
+    public void shouldReportChangeAfterReset() {
+        FrameChangeDetector detector = new FrameChangeDetector();
+        detector.hasChanged(hash(1), 10, 20);
+        detector.reset();
+        assertTrue(detector.hasChanged(hash(1), 10, 20));
+        assertFalse(detector.hasChanged(hash(1), 10, 20));
+    }
+}
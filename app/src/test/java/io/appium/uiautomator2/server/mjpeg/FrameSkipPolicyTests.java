@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import org.junit.Test;
+
+import static io.appium.uiautomator2.server.mjpeg.FrameSkipPolicy.KEEPALIVE_INTERVAL_MS;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSkipPolicyTests {
+    private static final String PARAMS = "0.5|50|false";
+
+    private static FrameSkipPolicy createEncodedPolicy(long now) {
+        FrameSkipPolicy policy = new FrameSkipPolicy();
+        assertTrue(policy.shouldEncode(true, PARAMS, 1, now));
+        policy.onFrameEncoded(PARAMS, now);
+        return policy;
+    }
+
+    @Test
+    public void shouldEncodeTheFirstFrameEvenIfUnchanged() {
+        assertTrue(new FrameSkipPolicy().shouldEncode(false, PARAMS, 1, 0));
+    }
+
+    @Test
+    public void shouldSkipUnchangedFrames() {
+        FrameSkipPolicy policy = createEncodedPolicy(0);
+        assertFalse(policy.shouldEncode(false, PARAMS, 1, 100));
+        assertFalse(policy.shouldEncode(false, PARAMS, 1, KEEPALIVE_INTERVAL_MS - 1));
+    }
+
+    @Test
+    public void shouldEncodeChangedFrames() {
+        FrameSkipPolicy policy = createEncodedPolicy(0);
+        assertTrue(policy.shouldEncode(true, PARAMS, 1, 100));
+    }
+
+    @Test
+    public void shouldEncodeUnchangedFramesAsKeepalive() {
+        FrameSkipPolicy policy = createEncodedPolicy(0);
+        assertFalse(policy.shouldEncode(false, PARAMS, 1, 500));
+        assertTrue(policy.shouldEncode(false, PARAMS, 1, KEEPALIVE_INTERVAL_MS));
+        policy.onFrameEncoded(PARAMS, KEEPALIVE_INTERVAL_MS);
+        assertFalse(policy.shouldEncode(false, PARAMS, 1, KEEPALIVE_INTERVAL_MS + 500));
+        assertTrue(policy.shouldEncode(false, PARAMS, 1, 2 * KEEPALIVE_INTERVAL_MS));
+    }
+
+    @Test
+    public void shouldEncodeUnchangedFramesForNewClients() {
+        FrameSkipPolicy policy = createEncodedPolicy(0);
+        assertTrue(policy.shouldEncode(false, PARAMS, 2, 100));
+        policy.onFrameEncoded(PARAMS, 100);
+        assertFalse(policy.shouldEncode(false, PARAMS, 2, 200));
+        // Disconnected clients do not need a fresh frame
+        assertFalse(policy.shouldEncode(false, PARAMS, 1, 300));
+    }
+
+    @Test
+    public void shouldEncodeUnchangedFramesIfParamsChange() {
+        FrameSkipPolicy policy = createEncodedPolicy(0);
+        assertTrue(policy.shouldEncode(false, "0.25|50|false", 1, 100));
+    }
+
+    @Test
+    public void shouldEncodeUnchangedFramesAfterReset() {
+        FrameSkipPolicy policy = createEncodedPolicy(0);
+        policy.reset();
+        assertTrue(policy.shouldEncode(false, PARAMS, 1, 100));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.appium.uiautomator2.server.ServerConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MjpegAdaptiveControllerTests {
+    private static final long STEP_MS = MjpegAdaptiveController.ADJUSTMENT_INTERVAL_MS;
+
+    private MjpegAdaptiveController controller;
+    private long now;
+
+    @Before
+    public void setUp() {
+        ServerConfig.setMjpegAdaptiveStreaming(true);
+        ServerConfig.setMjpegTargetLatency(200);
+        ServerConfig.setMjpegServerScreenshotQuality(50);
+        ServerConfig.setMjpegScalingFactor(50);
+        ServerConfig.setMjpegServerFramerate(10);
+        controller = new MjpegAdaptiveController();
+        now = STEP_MS;
+    }
+
+    @After
+    public void tearDown() {
+        ServerConfig.setMjpegAdaptiveStreaming(ServerConfig.DEFAULT_MJPEG_ADAPTIVE_STREAMING);
+        ServerConfig.setMjpegTargetLatency(ServerConfig.DEFAULT_MJPEG_TARGET_LATENCY);
+        ServerConfig.setMjpegServerScreenshotQuality(ServerConfig.DEFAULT_MJPEG_SERVER_SCREENSHOT_QUALITY);
+        ServerConfig.setMjpegScalingFactor(ServerConfig.DEFAULT_MJPEG_SCALING_FACTOR);
+        ServerConfig.setMjpegServerFramerate(ServerConfig.DEFAULT_MJPEG_SERVER_FRAMERATE);
+    }
+
+    private void adjust(long encodeTimeMs, double sendTimeMs) {
+        controller.onFrameEncoded(encodeTimeMs, 50000);
+        controller.adjust(now, sendTimeMs);
+        now += STEP_MS;
+    }
+
+    @Test
+    public void shouldUseConfiguredValuesIfDisabled() {
+        ServerConfig.setMjpegAdaptiveStreaming(false);
+        for (int i = 0; i < 10; i++) {
+            adjust(10, 1000);
+        }
+        assertEquals(50, controller.getQuality());
+        assertEquals(50, controller.getScalingFactor());
+        assertEquals(10, controller.getFramerate());
+    }
+
+    @Test
+    public void shouldDecreaseQualityThenScalingFactorThenFramerate() {
+        adjust(10, 300);
+        assertEquals(40, controller.getQuality());
+        assertEquals(50, controller.getScalingFactor());
+        for (int i = 0; i < 2; i++) {
+            adjust(10, 300);
+        }
+        assertEquals(MjpegAdaptiveController.MIN_QUALITY, controller.getQuality());
+        assertEquals(50, controller.getScalingFactor());
+        for (int i = 0; i < 3; i++) {
+            adjust(10, 300);
+        }
+        assertEquals(MjpegAdaptiveController.MIN_SCALING_FACTOR, controller.getScalingFactor());
+        // The slowest client is only able to receive 3 frames per second
+        assertEquals(3, controller.getFramerate());
+        for (int i = 0; i < 10; i++) {
+            adjust(10, 300);
+        }
+        assertEquals(MjpegAdaptiveController.MIN_FRAMERATE, controller.getFramerate());
+    }
+
+    @Test
+    public void shouldRestoreConfiguredValuesIfThereIsHeadroom() {
+        for (int i = 0; i < 20; i++) {
+            adjust(10, 300);
+        }
+        for (int i = 0; i < 100; i++) {
+            adjust(10, 20);
+        }
+        assertEquals(50, controller.getQuality());
+        assertEquals(50, controller.getScalingFactor());
+        assertEquals(10, controller.getFramerate());
+    }
+
+    @Test
+    public void shouldKeepParametersIfLatencyIsCloseToTarget() {
+        adjust(10, 300);
+        adjust(10, 170);
+        adjust(10, 170);
+        assertEquals(40, controller.getQuality());
+        assertEquals(50, controller.getScalingFactor());
+    }
+
+    @Test
+    public void shouldAdjustOncePerInterval() {
+        controller.onFrameEncoded(10, 50000);
+        controller.adjust(STEP_MS, 300);
+        controller.adjust(STEP_MS + 1, 300);
+        controller.adjust(STEP_MS + 2, 300);
+        assertEquals(40, controller.getQuality());
+    }
+
+    @Test
+    public void shouldNotExceedConfiguredValues() {
+        adjust(10, 300);
+        ServerConfig.setMjpegServerScreenshotQuality(30);
+        assertEquals(30, controller.getQuality());
+        for (int i = 0; i < 20; i++) {
+            adjust(10, 20);
+        }
+        assertEquals(30, controller.getQuality());
+    }
+
+    @Test
+    public void shouldReportState() {
+        adjust(10, 300);
+        assertEquals(true, controller.getStats().get("enabled"));
+        assertEquals(40, controller.getStats().get("quality"));
+        assertTrue((Long) controller.getStats().get("estimatedLatencyMs") > 200);
+    }
+}
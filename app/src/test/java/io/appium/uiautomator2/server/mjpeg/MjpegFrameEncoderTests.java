@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MjpegFrameEncoderTests {
+    @Test
+    public void shouldWrapJpegDataIntoMultipartFrame() {
+        ByteBuf frame = MjpegFrameEncoder.allocateFrame(UnpooledByteBufAllocator.DEFAULT, 4);
+        try {
+            frame.writeBytes("JPEG DATA".getBytes(UTF_8));
+            assertEquals(9, MjpegFrameEncoder.completeFrame(frame));
+            assertEquals("--BoundaryString\r\n" +
+                    "Content-type: image/jpg\r\n" +
+                    "Content-Length: 9\r\n\r\n" +
+                    "JPEG DATA\r\n\r\n", frame.toString(UTF_8));
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void shouldGrowFrameIfJpegIsLargerThanExpected() {
+        ByteBuf frame = MjpegFrameEncoder.allocateFrame(PooledByteBufAllocator.DEFAULT, 1);
+        try {
+            byte[] jpeg = new byte[100000];
+            frame.writeBytes(jpeg);
+            assertEquals(jpeg.length, MjpegFrameEncoder.completeFrame(frame));
+            String expectedHeader = "--BoundaryString\r\n" +
+                    "Content-type: image/jpg\r\n" +
+                    "Content-Length: 100000\r\n\r\n";
+            assertEquals(expectedHeader,
+                    frame.toString(frame.readerIndex(), expectedHeader.length(), UTF_8));
+            assertEquals(expectedHeader.length() + jpeg.length + 4, frame.readableBytes());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void slotShouldOnlyKeepTheLatestItem() throws InterruptedException {
+        FrameSlot<String> slot = new FrameSlot<>();
+        assertNull(slot.put("first"));
+        assertSame("first", slot.put("second"));
+        assertSame("second", slot.take(0));
+        assertNull(slot.take(10));
+        assertNull(slot.clear());
+    }
+}
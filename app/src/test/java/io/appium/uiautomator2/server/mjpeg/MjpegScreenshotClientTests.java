@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.server.mjpeg;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MjpegScreenshotClientTests {
+    private List<MjpegScreenshotClient> clients;
+
+    @Before
+    public void setUp() {
+        clients = new CopyOnWriteArrayList<>();
+    }
+
+    private static ByteBuf toFrame(String content) {
+        return Unpooled.copiedBuffer(content, UTF_8);
+    }
+
+    private static String readFrame(EmbeddedChannel channel) {
+        ByteBuf frame = (ByteBuf) channel.readOutbound();
+        try {
+            return frame.toString(UTF_8);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private EmbeddedChannel connect(MjpegScreenshotClient client) {
+        EmbeddedChannel channel = new EmbeddedChannel(client);
+        channel.writeInbound(toFrame("GET / HTTP/1.1\r\n\r\n"));
+        assertTrue(readFrame(channel).startsWith("HTTP/1.0 200 OK"));
+        return channel;
+    }
+
+    @Test
+    public void shouldOnlyStartStreamingAfterTheRequestIsReceived() {
+        MjpegScreenshotClient client = new MjpegScreenshotClient(clients);
+        EmbeddedChannel channel = new EmbeddedChannel(client);
+        assertTrue(clients.isEmpty());
+        assertNull(channel.readOutbound());
+
+        connect(client);
+        assertTrue(client.isInitialized());
+        assertEquals(1, clients.size());
+
+        channel.close();
+        assertTrue(clients.isEmpty());
+    }
+
+    @Test
+    public void shouldOnlyDeliverTheLatestPendingFrame() {
+        MjpegScreenshotClient client = new MjpegScreenshotClient(clients);
+        EmbeddedChannel channel = connect(client);
+        ByteBuf[] frames = {toFrame("1"), toFrame("2"), toFrame("3")};
+        for (ByteBuf frame : frames) {
+            client.offer(frame);
+        }
+        channel.runPendingTasks();
+
+        assertEquals("3", readFrame(channel));
+        assertNull(channel.readOutbound());
+        for (ByteBuf frame : frames) {
+            assertEquals(0, frame.refCnt());
+        }
+        assertEquals(1L, client.getStats().get("deliveredFrames"));
+        assertEquals(2L, client.getStats().get("droppedFrames"));
+
+        client.offer(toFrame("4"));
+        channel.runPendingTasks();
+        assertEquals("4", readFrame(channel));
+        assertEquals(2L, client.getStats().get("deliveredFrames"));
+    }
+
+    @Test
+    public void shouldShareTheFrameBetweenClients() {
+        MjpegScreenshotClient firstClient = new MjpegScreenshotClient(clients);
+        MjpegScreenshotClient secondClient = new MjpegScreenshotClient(clients);
+        EmbeddedChannel firstChannel = connect(firstClient);
+        EmbeddedChannel secondChannel = connect(secondClient);
+
+        ByteBuf frame = toFrame("frame");
+        for (MjpegScreenshotClient client : clients) {
+            client.offer(frame.duplicate().retain());
+        }
+        frame.release();
+        firstChannel.runPendingTasks();
+        secondChannel.runPendingTasks();
+
+        assertEquals("frame", readFrame(firstChannel));
+        assertEquals("frame", readFrame(secondChannel));
+        assertEquals(0, frame.refCnt());
+    }
+
+    @Test
+    public void shouldReleaseFramesOfClosedClients() {
+        MjpegScreenshotClient client = new MjpegScreenshotClient(clients);
+        EmbeddedChannel channel = connect(client);
+        channel.close();
+
+        ByteBuf frame = toFrame("frame");
+        client.offer(frame);
+        assertEquals(0, frame.refCnt());
+    }
+}
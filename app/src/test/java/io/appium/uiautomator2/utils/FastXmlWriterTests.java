@@ -0,0 +1,230 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlSerializer;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static io.appium.uiautomator2.utils.XMLHelpers.toSafeString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+public class FastXmlWriterTests {
+    private static final String[] TAG_NAMES = {
+            "hierarchy", "android.widget.FrameLayout", "android.widget.TextView", "android.view.View"
+    };
+    private static final Object[] TRICKY_VALUES = {
+            "", " ", "plain text", "a \"quoted\" value", "it's", "both \" and '",
+            "tab\tnew line\ncarriage return\r", "control\u0001\u0008\u001f chars",
+            "<tag attr='1'>&amp;</tag>", "\u00e9\u00df\u4e2d\u0416", "emoji \ud83d\ude00 pair",
+            "lone \ud83d high", "lone \ude00 low", "\ud83d", "non-characters \ufffe\uffff",
+            "\u2028\u0085\u00a0", 0, 1, -1, 42, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            true, false, 3.5f, null,
+    };
+
+    private static class Node {
+        final String tag;
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        final List<Node> children = new ArrayList<>();
+
+        Node(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static Node generateNode(Random random, int depth) {
+        Node node = new Node(TAG_NAMES[random.nextInt(TAG_NAMES.length)]);
+        int attributesCount = random.nextInt(6);
+        for (int i = 0; i < attributesCount; ++i) {
+            node.attributes.put("attr" + i, TRICKY_VALUES[random.nextInt(TRICKY_VALUES.length)]);
+        }
+        if (depth > 0) {
+            int childrenCount = random.nextInt(4);
+            for (int i = 0; i < childrenCount; ++i) {
+                node.children.add(generateNode(random, depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static Node generateLargeNode(Random random, int depth) {
+        Node node = new Node(TAG_NAMES[random.nextInt(TAG_NAMES.length)]);
+        node.attributes.put("index", random.nextInt(10));
+        node.attributes.put("package", "io.appium.android.apis");
+        node.attributes.put("class", node.tag);
+        node.attributes.put("text", random.nextBoolean() ? "" : "Item " + random.nextInt(1000));
+        node.attributes.put("resource-id", "io.appium.android.apis:id/item" + random.nextInt(20));
+        for (String name : new String[]{"checkable", "checked", "clickable", "enabled", "focusable",
+                "focused", "long-clickable", "password", "scrollable", "selected", "displayed"}) {
+            node.attributes.put(name, random.nextBoolean());
+        }
+        node.attributes.put("bounds", String.format("[%s,%s][%s,%s]",
+                random.nextInt(540), random.nextInt(960), 540 + random.nextInt(540), 960 + random.nextInt(960)));
+        if (depth > 0) {
+            int childrenCount = 1 + random.nextInt(5);
+            for (int i = 0; i < childrenCount; ++i) {
+                node.children.add(generateLargeNode(random, depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static void serializeWithKxml(XmlSerializer serializer, Node node) throws IOException {
+        serializer.startTag("", node.tag);
+        for (Map.Entry<String, Object> entry : node.attributes.entrySet()) {
+            if (entry.getValue() != null) {
+                serializer.attribute("", entry.getKey(),
+                        toSafeString(String.valueOf(entry.getValue()), "?"));
+            }
+        }
+        for (Node child : node.children) {
+            serializeWithKxml(serializer, child);
+        }
+        serializer.endTag("", node.tag);
+    }
+
+    private static byte[] encodeWithKxml(Node root) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XmlSerializer serializer = new KXmlSerializer();
+        serializer.setOutput(outputStream, "UTF-8");
+        serializer.startDocument("UTF-8", true);
+        serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+        serializeWithKxml(serializer, root);
+        serializer.endDocument();
+        return outputStream.toByteArray();
+    }
+
+    private static void serializeWithFastWriter(FastXmlWriter writer, Node node) {
+        writer.startTag(node.tag);
+        for (Map.Entry<String, Object> entry : node.attributes.entrySet()) {
+            if (entry.getValue() != null) {
+                writer.attribute(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Node child : node.children) {
+            serializeWithFastWriter(writer, child);
+        }
+        writer.endTag();
+    }
+
+    private static byte[] encodeWithFastWriter(Node root) {
+        FastXmlWriter writer = new FastXmlWriter(64);
+        writer.startDocument();
+        serializeWithFastWriter(writer, root);
+        writer.endDocument();
+        return writer.toByteArray();
+    }
+
+    @Test
+    public void shouldWriteIndentedDocument() {
+        FastXmlWriter writer = new FastXmlWriter()
+                .startDocument()
+                .startTag("hierarchy")
+                .attribute("rotation", 0)
+                .startTag("node")
+                .attribute("text", "say \"hi\" & <bye>")
+                .attribute("checked", false)
+                .endTag()
+                .startTag("node")
+                .startTag("leaf")
+                .attribute("text", "tab\there\ud83d\ude00\u0001")
+                .endDocument();
+        String expected = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>"
+                + "\r\n<hierarchy rotation=\"0\">"
+                + "\r\n  <node text='say \"hi\" &amp; &lt;bye&gt;' checked=\"false\" />"
+                + "\r\n  <node>"
+                + "\r\n    <leaf text=\"tab&#9;here&#128512;?\" />"
+                + "\r\n  </node>"
+                + "\r\n</hierarchy>";
+        assertEquals(expected, new String(writer.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(writer.size(), writer.toByteArray().length);
+    }
+
+    @Test
+    public void shouldProduceSameBytesAsKxmlSerializer() throws IOException {
+        Random random = new Random(1);
+        for (int i = 0; i < 200; ++i) {
+            Node root = generateNode(random, random.nextInt(6));
+            assertArrayEquals(encodeWithKxml(root), encodeWithFastWriter(root));
+        }
+    }
+
+    @Test
+    public void shouldProduceSameBytesAsKxmlSerializerForLargeTree() throws IOException {
+        Node root = generateLargeNode(new Random(2), 7);
+        assertArrayEquals(encodeWithKxml(root), encodeWithFastWriter(root));
+    }
+
+    /**
+     * Compares the throughput of FastXmlWriter and KXmlSerializer.
+     * Only runs if the build is started with -PrunBenchmarks
+     */
+    @Test
+    public void benchmarkWritersOnLargeTree() throws IOException {
+        assumeTrue(Boolean.getBoolean("runBenchmarks"));
+        Node root = generateLargeNode(new Random(2), 7);
+        final int iterations = 10;
+        // Warm up
+        assertArrayEquals(encodeWithKxml(root), encodeWithFastWriter(root));
+
+        long kxmlNanos = 0;
+        long fastNanos = 0;
+        int size = 0;
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            size = encodeWithKxml(root).length;
+            kxmlNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            encodeWithFastWriter(root);
+            fastNanos += System.nanoTime() - start;
+        }
+        System.out.println(String.format("Wrote %s bytes of XML. KXmlSerializer: %.2fms, FastXmlWriter: %.2fms",
+                size, kxmlNanos / iterations / 1e6, fastNanos / iterations / 1e6));
+    }
+
+    @Test
+    public void shouldConvertValuesToTheirXmlRepresentation() {
+        for (Object value : TRICKY_VALUES) {
+            if (value == null) {
+                continue;
+            }
+            String xml = new String(new FastXmlWriter()
+                    .startDocument()
+                    .startTag("node")
+                    .attribute("text", value)
+                    .endDocument()
+                    .toByteArray(), StandardCharsets.UTF_8);
+            assertEquals(SourceNode.parse(xml).getAttributes().get("text"),
+                    FastXmlWriter.toXmlValue(String.valueOf(value)));
+        }
+        String validValue = "\u00e9 \ud83d\ude00";
+        assertSame(validValue, FastXmlWriter.toXmlValue(validValue));
+    }
+}
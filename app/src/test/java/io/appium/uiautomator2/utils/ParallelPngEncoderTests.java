@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+public class ParallelPngEncoderTests {
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static ParallelPngEncoder createEncoder(int parallelism) {
+        return new ParallelPngEncoder(parallelism == 1 ? null : executor, parallelism,
+                ParallelPngEncoder.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Generates an image resembling a screenshot: solid bars, gradients and noisy "text" areas
+     */
+    private static int[] generateScreenshot(Random random, int width, int height, boolean hasAlpha) {
+        int[] pixels = new int[width * height];
+        int color = 0xFFFFFFFF;
+        for (int y = 0; y < height; y++) {
+            if (random.nextInt(40) == 0) {
+                color = random.nextInt() | 0xFF000000;
+            }
+            for (int x = 0; x < width; x++) {
+                int pixel;
+                if (y % 50 < 10 && x % 7 < 3 && random.nextBoolean()) {
+                    pixel = 0xFF000000 | random.nextInt(0x1000000);
+                } else if (y % 90 > 80) {
+                    pixel = 0xFF000000 | ((x * 255 / width) << 16) | ((y % 256) << 8);
+                } else {
+                    pixel = color;
+                }
+                if (hasAlpha) {
+                    pixel = (pixel & 0xFFFFFF) | ((x + y) % 256) << 24;
+                }
+                pixels[y * width + x] = pixel;
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(image);
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static void assertRoundTrip(int width, int height, boolean hasAlpha, int parallelism)
+            throws IOException {
+        int[] pixels = generateScreenshot(new Random(width * 31 + height), width, height, hasAlpha);
+        byte[] png = createEncoder(parallelism).encode(pixels, width, height, hasAlpha);
+        assertArrayEquals(String.format("%sx%s, alpha: %s, parallelism: %s", width, height, hasAlpha, parallelism),
+                pixels, decode(png));
+    }
+
+    @Test
+    public void shouldEncodeOpaqueImages() throws IOException {
+        for (int parallelism = 1; parallelism <= 4; parallelism++) {
+            assertRoundTrip(1, 1, false, parallelism);
+            assertRoundTrip(7, 33, false, parallelism);
+            assertRoundTrip(100, 257, false, parallelism);
+            assertRoundTrip(540, 960, false, parallelism);
+        }
+    }
+
+    @Test
+    public void shouldEncodeImagesWithAlpha() throws IOException {
+        for (int parallelism = 1; parallelism <= 4; parallelism++) {
+            assertRoundTrip(1, 1, true, parallelism);
+            assertRoundTrip(13, 64, true, parallelism);
+            assertRoundTrip(300, 401, true, parallelism);
+        }
+    }
+
+    @Test
+    public void shouldCombineAdler32() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            byte[] data = new byte[random.nextInt(200000)];
+            random.nextBytes(data);
+            int split = data.length == 0 ? 0 : random.nextInt(data.length);
+            Adler32 first = new Adler32();
+            first.update(data, 0, split);
+            Adler32 second = new Adler32();
+            second.update(data, split, data.length - split);
+            Adler32 whole = new Adler32();
+            whole.update(data, 0, data.length);
+            assertEquals(whole.getValue(),
+                    ParallelPngEncoder.adler32Combine(first.getValue(), second.getValue(), data.length - split));
+        }
+    }
+
+    @Test
+    public void shouldCombineCrc32() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            byte[] data = new byte[random.nextInt(200000)];
+            random.nextBytes(data);
+            int split = data.length == 0 ? 0 : random.nextInt(data.length);
+            CRC32 first = new CRC32();
+            first.update(data, 0, split);
+            CRC32 second = new CRC32();
+            second.update(data, split, data.length - split);
+            CRC32 whole = new CRC32();
+            whole.update(data, 0, data.length);
+            assertEquals(whole.getValue(),
+                    ParallelPngEncoder.crc32Combine(first.getValue(), second.getValue(), data.length - split));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMismatchingDimensions() {
+        createEncoder(1).encode(new int[10], 4, 4, false);
+    }
+
+    private static byte[] encodeWithImageIO(int[] pixels, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", stream);
+        return stream.toByteArray();
+    }
+
+    /**
+     * Compares the striped encoder with the serial java.util.zip based encoding
+     * and ImageIO. Only runs if the build is started with -PrunBenchmarks
+     */
+    @Test
+    public void benchmarkEncodersOnScreenshots() throws IOException {
+        assumeTrue(Boolean.getBoolean("runBenchmarks"));
+        final int iterations = 5;
+        int[][] resolutions = {{1080, 1920}, {1080, 2400}, {1440, 2560}, {1440, 3200}};
+        ParallelPngEncoder serialEncoder = createEncoder(1);
+        ParallelPngEncoder parallelEncoder = createEncoder(4);
+        for (int[] resolution : resolutions) {
+            int width = resolution[0];
+            int height = resolution[1];
+            int[] pixels = generateScreenshot(new Random(3), width, height, false);
+            // Warm up
+            assertArrayEquals(decode(serialEncoder.encode(pixels, width, height, false)),
+                    decode(parallelEncoder.encode(pixels, width, height, false)));
+            encodeWithImageIO(pixels, width, height);
+
+            long imageIoNanos = 0;
+            long serialNanos = 0;
+            long parallelNanos = 0;
+            int imageIoSize = 0;
+            int serialSize = 0;
+            int parallelSize = 0;
+            for (int i = 0; i < iterations; ++i) {
+                long start = System.nanoTime();
+                imageIoSize = encodeWithImageIO(pixels, width, height).length;
+                imageIoNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                serialSize = serialEncoder.encode(pixels, width, height, false).length;
+                serialNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                parallelSize = parallelEncoder.encode(pixels, width, height, false).length;
+                parallelNanos += System.nanoTime() - start;
+            }
+            System.out.println(String.format(
+                    "%sx%s PNG. ImageIO: %.2fms (%s bytes), serial: %.2fms (%s bytes), 4 stripes: %.2fms (%s bytes)",
+                    width, height,
+                    imageIoNanos / iterations / 1e6, imageIoSize,
+                    serialNanos / iterations / 1e6, serialSize,
+                    parallelNanos / iterations / 1e6, parallelSize));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScreenFingerprintTests {
+    private static final int COLUMNS = 10;
+    private static final int ROWS = 20;
+    // Each cell represents 8x8 screen pixels
+    private static final int SCREEN_WIDTH = COLUMNS * ScreenFingerprint.CELL_SIZE;
+    private static final int SCREEN_HEIGHT = ROWS * ScreenFingerprint.CELL_SIZE;
+
+    private static int[] createCells(int color) {
+        int[] cells = new int[COLUMNS * ROWS];
+        Arrays.fill(cells, color);
+        return cells;
+    }
+
+    private static ScreenFingerprint toFingerprint(int[] cells) {
+        return new ScreenFingerprint(cells, COLUMNS, ROWS, SCREEN_WIDTH, SCREEN_HEIGHT);
+    }
+
+    @Test
+    public void shouldCalculateGridSize() {
+        assertEquals(135, ScreenFingerprint.toGridSize(1080));
+        assertEquals(136, ScreenFingerprint.toGridSize(1081));
+        assertEquals(1, ScreenFingerprint.toGridSize(1));
+    }
+
+    @Test
+    public void shouldReportNoChangesForEqualFrames() {
+        ScreenFingerprint.Diff diff = toFingerprint(createCells(0xFF336699))
+                .diff(toFingerprint(createCells(0xFF336699)));
+        assertEquals(0.0, diff.changedRatio, 0.0);
+        assertEquals(0.0, diff.meanDelta, 0.0);
+        assertEquals(0, diff.maxDelta);
+        assertTrue(diff.changedRegions.isEmpty());
+    }
+
+    @Test
+    public void shouldIgnoreMinorNoise() {
+        int[] cells = createCells(0xFF336699);
+        cells[5] = 0xFF35689B;
+        ScreenFingerprint.Diff diff = toFingerprint(cells).diff(toFingerprint(createCells(0xFF336699)));
+        assertEquals(0.0, diff.changedRatio, 0.0);
+        assertEquals(2, diff.maxDelta);
+        assertTrue(diff.changedRegions.isEmpty());
+    }
+
+    @Test
+    public void shouldFindChangedRegions() {
+        int[] cells = createCells(0xFFFFFFFF);
+        // 2x2 cells block at column 1, row 2
+        cells[2 * COLUMNS + 1] = 0xFF000000;
+        cells[2 * COLUMNS + 2] = 0xFF000000;
+        cells[3 * COLUMNS + 1] = 0xFF000000;
+        cells[3 * COLUMNS + 2] = 0xFF000000;
+        // A single cell in the bottom right corner
+        cells[ROWS * COLUMNS - 1] = 0xFFFF0000;
+        ScreenFingerprint.Diff diff = toFingerprint(cells).diff(toFingerprint(createCells(0xFFFFFFFF)));
+        assertEquals(5.0 / (COLUMNS * ROWS), diff.changedRatio, 1e-9);
+        assertEquals(255, diff.maxDelta);
+        assertEquals(2, diff.changedRegions.size());
+        assertEquals("[8,16][24,32]", diff.changedRegions.get(0).toString());
+        assertEquals("[72,152][80,160]", diff.changedRegions.get(1).toString());
+    }
+
+    @Test
+    public void shouldLimitChangedRegionsCount() {
+        int[] cells = createCells(0xFFFFFFFF);
+        // Checkerboard produces a separate region for each changed cell
+        for (int i = 0; i < cells.length; i++) {
+            if ((i / COLUMNS + i % COLUMNS) % 2 == 0) {
+                cells[i] = 0xFF000000;
+            }
+        }
+        ScreenFingerprint.Diff diff = toFingerprint(cells).diff(toFingerprint(createCells(0xFFFFFFFF)));
+        assertEquals(0.5, diff.changedRatio, 1e-9);
+        assertEquals(ScreenFingerprint.MAX_CHANGED_REGIONS, diff.changedRegions.size());
+    }
+
+    @Test
+    public void shouldTreatDifferentScreenSizesAsFullyChanged() {
+        ScreenFingerprint rotated = new ScreenFingerprint(createCells(0xFFFFFFFF), ROWS, COLUMNS,
+                SCREEN_HEIGHT, SCREEN_WIDTH);
+        ScreenFingerprint.Diff diff = toFingerprint(createCells(0xFFFFFFFF)).diff(rotated);
+        assertEquals(1.0, diff.changedRatio, 0.0);
+        assertEquals(1, diff.changedRegions.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMismatchingGrid() {
+        new ScreenFingerprint(new int[10], COLUMNS, ROWS, SCREEN_WIDTH, SCREEN_HEIGHT);
+    }
+
+    private static int[] createPixels(int width, int height, int color) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    private static ScreenFingerprint buildFingerprint(int[] pixels, int width, int height, int bandHeight) {
+        ScreenFingerprint.Builder builder = new ScreenFingerprint.Builder(width, height);
+        for (int y = 0; y < height; y += bandHeight) {
+            int rowsCount = Math.min(bandHeight, height - y);
+            builder.addRows(Arrays.copyOfRange(pixels, y * width, (y + rowsCount) * width), rowsCount);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void shouldAverageAllPixelsOfEachCell() {
+        // 2x2 cells, where the right and the bottom ones are only partially covered by the screen
+        final int width = 12;
+        final int height = 10;
+        int[] pixels = createPixels(width, height, 0xFF000000);
+        // Half of the top left cell is white
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 8; x++) {
+                pixels[y * width + x] = 0xFFFFFFFF;
+            }
+        }
+        // The bottom right cell is 4x2 pixels, one of them is red
+        pixels[9 * width + 11] = 0xFFFF0000;
+        ScreenFingerprint expected = new ScreenFingerprint(
+                new int[]{0xFF808080, 0xFF000000, 0xFF000000, 0xFF200000}, 2, 2, width, height);
+        for (int bandHeight : new int[]{1, 3, ScreenFingerprint.CELL_SIZE, height}) {
+            ScreenFingerprint.Diff diff = buildFingerprint(pixels, width, height, bandHeight).diff(expected);
+            assertEquals(0, diff.maxDelta);
+        }
+    }
+
+    @Test
+    public void shouldDetectSmallChangesInsideCell() {
+        int[] before = createPixels(SCREEN_WIDTH, SCREEN_HEIGHT, 0xFFFFFFFF);
+        int[] after = Arrays.copyOf(before, before.length);
+        // A 1px wide vertical line in the middle of the cell at column 3, row 5
+        for (int y = 5 * ScreenFingerprint.CELL_SIZE; y < 6 * ScreenFingerprint.CELL_SIZE; y++) {
+            after[y * SCREEN_WIDTH + 3 * ScreenFingerprint.CELL_SIZE + 4] = 0xFF000000;
+        }
+        ScreenFingerprint.Diff diff = buildFingerprint(after, SCREEN_WIDTH, SCREEN_HEIGHT, 8)
+                .diff(buildFingerprint(before, SCREEN_WIDTH, SCREEN_HEIGHT, 8));
+        assertEquals(1.0 / (COLUMNS * ROWS), diff.changedRatio, 1e-9);
+        assertEquals(1, diff.changedRegions.size());
+        assertEquals("[24,40][32,48]", diff.changedRegions.get(0).toString());
+    }
+
+    @Test
+    public void shouldIgnoreSinglePixelChange() {
+        int[] before = createPixels(SCREEN_WIDTH, SCREEN_HEIGHT, 0xFFFFFFFF);
+        int[] after = Arrays.copyOf(before, before.length);
+        after[SCREEN_WIDTH * 3 + 3] = 0xFF000000;
+        ScreenFingerprint.Diff diff = buildFingerprint(after, SCREEN_WIDTH, SCREEN_HEIGHT, 8)
+                .diff(buildFingerprint(before, SCREEN_WIDTH, SCREEN_HEIGHT, 8));
+        assertEquals(0.0, diff.changedRatio, 0.0);
+        assertEquals(4, diff.maxDelta);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRequireAllRowsToBuild() {
+        new ScreenFingerprint.Builder(SCREEN_WIDTH, SCREEN_HEIGHT)
+                .addRows(new int[SCREEN_WIDTH], 1)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.junit.Test;
+
+import io.appium.uiautomator2.common.exceptions.InvalidArgumentException;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScreenshotFormatTests {
+    @Test
+    public void shouldUsePngByDefault() {
+        assertEquals(ScreenshotFormat.PNG, ScreenshotFormat.fromName(null));
+        assertEquals(ScreenshotFormat.PNG, ScreenshotFormat.fromName(" "));
+    }
+
+    @Test
+    public void shouldParseFormatNames() {
+        assertEquals(ScreenshotFormat.PNG, ScreenshotFormat.fromName("png"));
+        assertEquals(ScreenshotFormat.JPEG, ScreenshotFormat.fromName("JPEG"));
+        assertEquals(ScreenshotFormat.WEBP_LOSSLESS, ScreenshotFormat.fromName("webp"));
+        assertEquals(ScreenshotFormat.RAW, ScreenshotFormat.fromName(" raw "));
+    }
+
+    @Test(expected = InvalidArgumentException.class)
+    public void shouldRejectUnknownFormats() {
+        ScreenshotFormat.fromName("gif");
+    }
+
+    @Test
+    public void shouldParseQuality() {
+        assertEquals(ScreenshotFormat.DEFAULT_JPEG_QUALITY, ScreenshotFormat.toQuality(null));
+        assertEquals(0, ScreenshotFormat.toQuality("0"));
+        assertEquals(75, ScreenshotFormat.toQuality(" 75 "));
+        assertEquals(100, ScreenshotFormat.toQuality("100"));
+    }
+
+    @Test(expected = InvalidArgumentException.class)
+    public void shouldRejectOutOfRangeQuality() {
+        ScreenshotFormat.toQuality("101");
+    }
+
+    @Test(expected = InvalidArgumentException.class)
+    public void shouldRejectNonNumericQuality() {
+        ScreenshotFormat.toQuality("high");
+    }
+
+    @Test
+    public void shouldHaveFixedRawHeaderLength() {
+        assertEquals(16, ScreenshotFormat.RAW_HEADER_LENGTH);
+    }
+}
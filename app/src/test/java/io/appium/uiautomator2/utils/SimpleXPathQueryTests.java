@@ -0,0 +1,396 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.apache.xerces.jaxp.DocumentBuilderFactoryImpl;
+import org.eclipse.wst.xml.xpath2.api.Item;
+import org.eclipse.wst.xml.xpath2.api.ResultSequence;
+import org.eclipse.wst.xml.xpath2.api.XPath2Expression;
+import org.eclipse.wst.xml.xpath2.processor.Engine;
+import org.eclipse.wst.xml.xpath2.processor.util.DynamicContextBuilder;
+import org.eclipse.wst.xml.xpath2.processor.util.StaticContextBuilder;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+public class SimpleXPathQueryTests {
+    private static final String[] TAG_NAMES = new String[]{
+            "android.widget.Button", "android.widget.TextView", "android.view.ViewGroup", "a"
+    };
+    private static final String[] ATTRIBUTE_NAMES = new String[]{"text", "resource-id", "content-desc"};
+    private static final String[] ATTRIBUTE_VALUES = new String[]{"", "OK", "OK Cancel", "Cancel", "K"};
+
+    private static final SimpleXPathQuery.NodeAdapter<Element> DOM_ADAPTER =
+            new SimpleXPathQuery.NodeAdapter<Element>() {
+                @Override
+                public String getTagName(Element node) {
+                    return node.getTagName();
+                }
+
+                @Override
+                public String getAttribute(Element node, String name) {
+                    return node.hasAttribute(name) ? node.getAttribute(name) : null;
+                }
+
+                @Override
+                public List<Element> getChildren(Element node) {
+                    List<Element> result = new ArrayList<>();
+                    NodeList children = node.getChildNodes();
+                    for (int i = 0; i < children.getLength(); ++i) {
+                        if (children.item(i) instanceof Element) {
+                            result.add((Element) children.item(i));
+                        }
+                    }
+                    return result;
+                }
+            };
+
+    /**
+     * A synthetic tree node, whose children are only created on the first access
+     */
+    private static class LazyNode {
+        static int createdNodesCount = 0;
+
+        final String tagName;
+        final String text;
+        final int depth;
+        final int childrenCount;
+        List<LazyNode> children;
+
+        LazyNode(String tagName, String text, int depth, int childrenCount) {
+            this.tagName = tagName;
+            this.text = text;
+            this.depth = depth;
+            this.childrenCount = childrenCount;
+            ++createdNodesCount;
+        }
+
+        List<LazyNode> getChildren() {
+            if (children == null) {
+                children = new ArrayList<>();
+                for (int i = 0; i < childrenCount; ++i) {
+                    children.add(new LazyNode(depth % 2 == 0 ? "android.widget.TextView" : "a",
+                            String.format("item %s-%s", depth, i), depth + 1,
+                            depth >= 2 ? 0 : childrenCount));
+                }
+            }
+            return children;
+        }
+    }
+
+    private static final SimpleXPathQuery.NodeAdapter<LazyNode> LAZY_ADAPTER =
+            new SimpleXPathQuery.NodeAdapter<LazyNode>() {
+                @Override
+                public String getTagName(LazyNode node) {
+                    return node.tagName;
+                }
+
+                @Override
+                public String getAttribute(LazyNode node, String name) {
+                    return "text".equals(name) ? node.text : null;
+                }
+
+                @Override
+                public List<LazyNode> getChildren(LazyNode node) {
+                    return node.getChildren();
+                }
+            };
+
+    private static <T> List<T> evaluateLazily(SimpleXPathQuery query, T root,
+                                              SimpleXPathQuery.NodeAdapter<T> adapter,
+                                              final int limit) {
+        final List<T> result = new ArrayList<>();
+        query.evaluateLazily(root, adapter, new SimpleXPathQuery.MatchHandler<T>() {
+            @Override
+            public boolean onMatch(T node) {
+                result.add(node);
+                return result.size() < limit;
+            }
+        });
+        return result;
+    }
+
+    private static Document loadDocument(String xml) throws Exception {
+        DocumentBuilderFactory factory = new DocumentBuilderFactoryImpl();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        return factory.newDocumentBuilder().parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void appendRandomElement(StringBuilder xml, Random random, int depth) {
+        String tagName = TAG_NAMES[random.nextInt(TAG_NAMES.length)];
+        xml.append('<').append(tagName);
+        for (String attributeName : ATTRIBUTE_NAMES) {
+            if (random.nextInt(3) > 0) {
+                xml.append(' ').append(attributeName).append("=\"")
+                        .append(ATTRIBUTE_VALUES[random.nextInt(ATTRIBUTE_VALUES.length)])
+                        .append('"');
+            }
+        }
+        xml.append('>');
+        int childrenCount = depth >= 5 ? 0 : random.nextInt(4);
+        for (int i = 0; i < childrenCount; ++i) {
+            appendRandomElement(xml, random, depth + 1);
+        }
+        xml.append("</").append(tagName).append('>');
+    }
+
+    private static String randomXml(Random random) {
+        StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>");
+        xml.append("<hierarchy index=\"0\" class=\"hierarchy\">");
+        for (int i = 0; i < 3; ++i) {
+            appendRandomElement(xml, random, 1);
+        }
+        xml.append("</hierarchy>");
+        return xml.toString();
+    }
+
+    private static String randomLiteral(Random random) {
+        String value = ATTRIBUTE_VALUES[random.nextInt(ATTRIBUTE_VALUES.length)];
+        return random.nextBoolean() ? "'" + value + "'" : "\"" + value + "\"";
+    }
+
+    private static String randomPredicate(Random random) {
+        String attributeName = ATTRIBUTE_NAMES[random.nextInt(ATTRIBUTE_NAMES.length)];
+        switch (random.nextInt(4)) {
+            case 0:
+                return String.format("[@%s=%s]", attributeName, randomLiteral(random));
+            case 1:
+                return String.format("[contains(@%s, %s)]", attributeName, randomLiteral(random));
+            case 2:
+                return String.format("[starts-with(@%s,%s)]", attributeName, randomLiteral(random));
+            default:
+                return String.format("[%s]", 1 + random.nextInt(3));
+        }
+    }
+
+    private static String randomQuery(Random random) {
+        StringBuilder query = new StringBuilder();
+        int stepsCount = 1 + random.nextInt(3);
+        for (int i = 0; i < stepsCount; ++i) {
+            query.append(i == 0 || random.nextBoolean() ? "//" : "/");
+            query.append(random.nextInt(3) == 0 ? "*" : TAG_NAMES[random.nextInt(TAG_NAMES.length)]);
+            int predicatesCount = random.nextInt(3);
+            for (int j = 0; j < predicatesCount; ++j) {
+                query.append(randomPredicate(random));
+            }
+        }
+        return query.toString();
+    }
+
+    private static List<Node> evaluateXpath1(Document doc, String query) throws Exception {
+        NodeList nodes = (NodeList) XPathFactory.newInstance().newXPath().compile(query)
+                .evaluate(doc, XPathConstants.NODESET);
+        List<Node> result = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); ++i) {
+            result.add(nodes.item(i));
+        }
+        return result;
+    }
+
+    private static List<Node> evaluateXpath2(Document doc, String query) {
+        StaticContextBuilder scb = new StaticContextBuilder();
+        XPath2Expression expr = new Engine().parseExpression(query, scb);
+        ResultSequence rs = expr.evaluate(new DynamicContextBuilder(scb), new Object[]{doc});
+        List<Node> result = new ArrayList<>();
+        Iterator<Item> iterator = rs.iterator();
+        while (iterator.hasNext()) {
+            result.add((Node) iterator.next().getNativeValue());
+        }
+        return result;
+    }
+
+    private static List<Node> evaluateSimpleQuery(Document doc, String query) {
+        SimpleXPathQuery simpleQuery = SimpleXPathQuery.parse(query);
+        assertNotNull(String.format("'%s' must be recognized as a simple query", query), simpleQuery);
+        return new ArrayList<Node>(simpleQuery.evaluate(doc.getDocumentElement(), DOM_ADAPTER));
+    }
+
+    @Test
+    public void shouldReturnSameResultsAsGenericEngines() throws Exception {
+        Random random = new Random(42);
+        for (int docIdx = 0; docIdx < 30; ++docIdx) {
+            Document doc = loadDocument(randomXml(random));
+            for (int queryIdx = 0; queryIdx < 50; ++queryIdx) {
+                String query = randomQuery(random);
+                List<Node> actual = evaluateSimpleQuery(doc, query);
+                assertEquals(query, evaluateXpath1(doc, query), actual);
+                assertEquals(query, evaluateXpath2(doc, query), actual);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnSameResultsWhenEvaluatedLazily() throws Exception {
+        Random random = new Random(24);
+        for (int docIdx = 0; docIdx < 30; ++docIdx) {
+            Document doc = loadDocument(randomXml(random));
+            for (int queryIdx = 0; queryIdx < 50; ++queryIdx) {
+                String query = randomQuery(random);
+                SimpleXPathQuery simpleQuery = SimpleXPathQuery.parse(query);
+                assertNotNull(query, simpleQuery);
+                List<Element> expected = simpleQuery.evaluate(doc.getDocumentElement(), DOM_ADAPTER);
+                assertEquals(query, expected, evaluateLazily(
+                        simpleQuery, doc.getDocumentElement(), DOM_ADAPTER, Integer.MAX_VALUE));
+                assertEquals(query, expected.isEmpty() ? expected : expected.subList(0, 1),
+                        evaluateLazily(simpleQuery, doc.getDocumentElement(), DOM_ADAPTER, 1));
+            }
+        }
+    }
+
+    @Test
+    public void shouldOnlyMaterializeVisitedNodesForEarlyMatches() {
+        // 1 + 17 + 17^2 + 17^3 = 5220 nodes
+        final int childrenCount = 17;
+        SimpleXPathQuery query = SimpleXPathQuery.parse("//a[@text='item 1-2']");
+        assertNotNull(query);
+
+        LazyNode.createdNodesCount = 0;
+        List<LazyNode> all = query.evaluate(
+                new LazyNode("hierarchy", null, 0, childrenCount), LAZY_ADAPTER);
+        assertTrue(LazyNode.createdNodesCount > 5000);
+
+        LazyNode.createdNodesCount = 0;
+        List<LazyNode> first = evaluateLazily(
+                query, new LazyNode("hierarchy", null, 0, childrenCount), LAZY_ADAPTER, 1);
+
+        assertEquals(all.get(0).text, first.get(0).text);
+        assertEquals(all.get(0).depth, first.get(0).depth);
+        // Only the nodes preceding the match in document order and their children get materialized
+        assertTrue(LazyNode.createdNodesCount < 5 * childrenCount);
+    }
+
+    /**
+     * Measures the latency of the early match lookup on a tree of 5220 nodes
+     * compared to the full evaluation. Only runs if the build is started with -PrunBenchmarks
+     */
+    @Test
+    public void benchmarkEarlyMatchLatency() {
+        assumeTrue(Boolean.getBoolean("runBenchmarks"));
+        final int childrenCount = 17;
+        final int iterations = 200;
+        SimpleXPathQuery query = SimpleXPathQuery.parse("//a[@text='item 1-2']");
+        assertNotNull(query);
+        long fullEvaluationNs = 0;
+        long lazyEvaluationNs = 0;
+        int fullTreeSize = 0;
+        int materializedCount = 0;
+        // The first half of iterations is the warm up
+        for (int i = 0; i < iterations * 2; ++i) {
+            // Nodes are materialized on demand, so every iteration needs a fresh tree
+            LazyNode.createdNodesCount = 0;
+            long startedNs = System.nanoTime();
+            List<LazyNode> all = query.evaluate(
+                    new LazyNode("hierarchy", null, 0, childrenCount), LAZY_ADAPTER);
+            long fullNs = System.nanoTime() - startedNs;
+            fullTreeSize = LazyNode.createdNodesCount;
+
+            LazyNode.createdNodesCount = 0;
+            startedNs = System.nanoTime();
+            List<LazyNode> first = evaluateLazily(
+                    query, new LazyNode("hierarchy", null, 0, childrenCount), LAZY_ADAPTER, 1);
+            long lazyNs = System.nanoTime() - startedNs;
+            materializedCount = LazyNode.createdNodesCount;
+
+            assertEquals(all.get(0).text, first.get(0).text);
+            if (i >= iterations) {
+                fullEvaluationNs += fullNs;
+                lazyEvaluationNs += lazyNs;
+            }
+        }
+        System.out.println(String.format(
+                "Full evaluation: %s nodes in %.1fus, lazy evaluation of the first match: %s nodes in %.1fus",
+                fullTreeSize, fullEvaluationNs / iterations / 1e3,
+                materializedCount, lazyEvaluationNs / iterations / 1e3));
+    }
+
+    @Test
+    public void shouldReturnSameResultsForTypicalQueries() throws Exception {
+        Document doc = loadDocument("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>" +
+                "<hierarchy index=\"0\" class=\"hierarchy\">" +
+                "<android.widget.FrameLayout>" +
+                "<android.widget.Button text=\"OK\" resource-id=\"x\"/>" +
+                "<android.widget.Button text=\"Cancel\" content-desc=\"y\"/>" +
+                "<android.widget.LinearLayout>" +
+                "<android.widget.Button text=\"OK\" content-desc=\"y\"/>" +
+                "</android.widget.LinearLayout>" +
+                "</android.widget.FrameLayout>" +
+                "</hierarchy>");
+        String[] queries = new String[]{
+                "//android.widget.Button[@text='OK']",
+                "//*[@resource-id='x']",
+                "//*[@content-desc='y'][2]",
+                "//*[@content-desc='y'][1]",
+                "//*",
+                "/hierarchy/android.widget.FrameLayout/android.widget.Button[2]",
+                "//android.widget.FrameLayout//android.widget.Button[contains(@text, 'K')]",
+                "//*[starts-with(@text, '')]",
+                "//*[contains(@resource-id, '')]",
+                "//android.widget.Button [ @text = \"OK\" ] [1]",
+        };
+        for (String query : queries) {
+            List<Node> actual = evaluateSimpleQuery(doc, query);
+            assertEquals(query, evaluateXpath1(doc, query), actual);
+            assertEquals(query, evaluateXpath2(doc, query), actual);
+        }
+    }
+
+    @Test
+    public void shouldNotRecognizeUnsupportedQueries() {
+        String[] queries = new String[]{
+                "",
+                "/",
+                "//",
+                "android.widget.Button",
+                ".//android.widget.Button",
+                "(//android.widget.Button)[1]",
+                "//android.widget.Button[last()]",
+                "//android.widget.Button[0]",
+                "//android.widget.Button[@text='a' and @enabled='true']",
+                "//android.widget.Button[@text='it''s']",
+                "//android.widget.Button | //android.widget.TextView",
+                "//android.widget.Button/following::android.widget.TextView",
+                "//android.widget.Button/text()",
+                "//*[text()='OK']",
+                "//*[@text]",
+                "//*[@text='OK'",
+        };
+        for (String query : queries) {
+            assertNull(query, SimpleXPathQuery.parse(query));
+        }
+    }
+}
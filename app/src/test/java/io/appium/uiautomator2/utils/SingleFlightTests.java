@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTests {
+    private static final int CALLERS_COUNT = 8;
+
+    private static List<Future<String>> submitConcurrently(ExecutorService executor,
+                                                           final SingleFlight<String, String> singleFlight,
+                                                           final String key,
+                                                           final Callable<String> computation)
+            throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(CALLERS_COUNT);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS_COUNT; ++i) {
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    started.countDown();
+                    return singleFlight.execute(key, computation);
+                }
+            }));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return futures;
+    }
+
+    @Test
+    public void shouldShareTheResultBetweenConcurrentCalls() throws Exception {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        final AtomicInteger computationsCount = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS_COUNT);
+        try {
+            List<Future<String>> futures = submitConcurrently(executor, singleFlight, "source",
+                    new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            computationsCount.incrementAndGet();
+                            assertTrue(release.await(5, TimeUnit.SECONDS));
+                            return "result";
+                        }
+                    });
+            // Give the other callers some time to join the computation in progress
+            Thread.sleep(200);
+            assertEquals(1, singleFlight.getInFlightCount());
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("result", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, computationsCount.get());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void shouldShareTheErrorBetweenConcurrentCalls() throws Exception {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final IllegalStateException error = new IllegalStateException("boom");
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS_COUNT);
+        try {
+            List<Future<String>> futures = submitConcurrently(executor, singleFlight, "screenshot",
+                    new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            assertTrue(release.await(5, TimeUnit.SECONDS));
+                            throw error;
+                        }
+                    });
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    fail("The error must be propagated to all callers");
+                } catch (ExecutionException e) {
+                    assertSame(error, e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldNotCoalesceSequentialOrDifferentCalls() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        final AtomicInteger computationsCount = new AtomicInteger();
+        Callable<Integer> computation = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return computationsCount.incrementAndGet();
+            }
+        };
+        assertEquals(1, (int) singleFlight.execute("a", computation));
+        assertEquals(2, (int) singleFlight.execute("a", computation));
+        assertEquals(3, (int) singleFlight.execute("b", computation));
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.appium.uiautomator2.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SourceTreeDiffTests {
+    private static final String[] TAGS = {
+            "android.widget.FrameLayout", "android.widget.LinearLayout",
+            "android.widget.TextView", "android.widget.Button"
+    };
+
+    private static class MutableNode {
+        final String tag;
+        final Map<String, String> attributes = new LinkedHashMap<>();
+        final List<MutableNode> children = new ArrayList<>();
+
+        MutableNode(String tag) {
+            this.tag = tag;
+        }
+
+        MutableNode(SourceNode node) {
+            this.tag = node.getTag();
+            this.attributes.putAll(node.getAttributes());
+            for (SourceNode child : node.getChildren()) {
+                this.children.add(new MutableNode(child));
+            }
+        }
+
+        MutableNode copy() {
+            MutableNode result = new MutableNode(tag);
+            result.attributes.putAll(attributes);
+            for (MutableNode child : children) {
+                result.children.add(child.copy());
+            }
+            return result;
+        }
+
+        MutableNode at(List<Integer> path, int length) {
+            MutableNode result = this;
+            for (int i = 0; i < length; ++i) {
+                result = result.children.get(path.get(i));
+            }
+            return result;
+        }
+
+        void toXml(StringBuilder sb) {
+            sb.append('<').append(tag);
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                sb.append(' ').append(entry.getKey()).append("=\"")
+                        .append(entry.getValue()).append('"');
+            }
+            sb.append('>');
+            for (MutableNode child : children) {
+                child.toXml(sb);
+            }
+            sb.append("</").append(tag).append('>');
+        }
+
+        String toXml() {
+            StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>");
+            toXml(sb);
+            return sb.toString();
+        }
+    }
+
+    private static MutableNode generateNode(Random random, int depth) {
+        MutableNode node = new MutableNode(TAGS[random.nextInt(TAGS.length)]);
+        node.attributes.put("text", "text" + random.nextInt(3));
+        if (random.nextBoolean()) {
+            node.attributes.put("resource-id", "id" + random.nextInt(2));
+        }
+        node.attributes.put("bounds", "[0,0][" + random.nextInt(100) + ",100]");
+        if (depth > 0) {
+            int childrenCount = random.nextInt(5);
+            for (int i = 0; i < childrenCount; ++i) {
+                node.children.add(generateNode(random, depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static void mutate(Random random, MutableNode node, int depth) {
+        if (random.nextInt(5) == 0) {
+            node.attributes.put("text", "changed" + random.nextInt(3));
+        }
+        if (random.nextInt(10) == 0) {
+            node.attributes.remove("bounds");
+        }
+        for (int i = node.children.size() - 1; i >= 0; --i) {
+            int action = random.nextInt(10);
+            if (action == 0) {
+                node.children.remove(i);
+            } else if (action == 1) {
+                node.children.add(i, generateNode(random, depth));
+            } else {
+                mutate(random, node.children.get(i), depth - 1);
+            }
+        }
+        if (random.nextInt(10) == 0) {
+            node.children.add(generateNode(random, depth));
+        }
+    }
+
+    private static MutableNode apply(MutableNode previous, SourceTreeDiff diff) {
+        MutableNode result = previous.copy();
+        List<SourceTreeDiff.Removal> removed = diff.getRemoved();
+        for (int i = removed.size() - 1; i >= 0; --i) {
+            List<Integer> path = removed.get(i).path;
+            result.at(path, path.size() - 1).children.remove((int) path.get(path.size() - 1));
+        }
+        for (SourceTreeDiff.Insertion insertion : diff.getInserted()) {
+            List<Integer> path = insertion.path;
+            result.at(path, path.size() - 1).children.add(
+                    path.get(path.size() - 1), new MutableNode(insertion.node));
+        }
+        for (SourceTreeDiff.AttributesChange change : diff.getChanged()) {
+            MutableNode node = result.at(change.path, change.path.size());
+            node.attributes.putAll(change.attributes);
+            for (String name : change.removedAttributes) {
+                node.attributes.remove(name);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void shouldParseSourceTree() {
+        SourceNode root = SourceNode.parse("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n" +
+                "<hierarchy index=\"0\" rotation=\"0\">\n" +
+                "  <android.widget.FrameLayout index=\"0\" text=\"a &amp; b\">\n" +
+                "    <android.widget.TextView index=\"0\" text=\"\" />\n" +
+                "  </android.widget.FrameLayout>\n" +
+                "</hierarchy>");
+        assertEquals("hierarchy", root.getTag());
+        assertEquals(3, root.getSubtreeSize());
+        SourceNode frameLayout = root.getChildren().get(0);
+        assertEquals("a & b", frameLayout.getAttributes().get("text"));
+        assertEquals("android.widget.TextView", frameLayout.getChildren().get(0).getTag());
+        assertEquals("", frameLayout.getChildren().get(0).getAttributes().get("text"));
+    }
+
+    @Test
+    public void shouldReturnEmptyDiffForEqualTrees() {
+        MutableNode tree = generateNode(new Random(1), 5);
+        SourceTreeDiff diff = SourceTreeDiff.calculate(
+                SourceNode.parse(tree.toXml()), SourceNode.parse(tree.toXml()));
+        assertNotNull(diff);
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.getChangesSize());
+    }
+
+    @Test
+    public void shouldNotMatchDifferentRoots() {
+        assertNull(SourceTreeDiff.calculate(
+                SourceNode.parse("<a><b/></a>"), SourceNode.parse("<b><b/></b>")));
+    }
+
+    @Test
+    public void shouldOnlyReportInsertedListItem() {
+        SourceNode previous = SourceNode.parse("<hierarchy><list>" +
+                "<item text=\"1\"/><item text=\"2\"/><item text=\"3\"/>" +
+                "</list></hierarchy>");
+        SourceNode actual = SourceNode.parse("<hierarchy><list>" +
+                "<item text=\"1\"/><button/><item text=\"2\"/><item text=\"3\"/>" +
+                "</list></hierarchy>");
+        SourceTreeDiff diff = SourceTreeDiff.calculate(previous, actual);
+        assertNotNull(diff);
+        assertTrue(diff.getRemoved().isEmpty());
+        assertTrue(diff.getChanged().isEmpty());
+        assertEquals(1, diff.getInserted().size());
+        assertEquals("[0, 1]", diff.getInserted().get(0).path.toString());
+        assertEquals("button", diff.getInserted().get(0).node.getTag());
+    }
+
+    @Test
+    public void shouldReportChangedAttributes() {
+        SourceNode previous = SourceNode.parse("<hierarchy><a text=\"1\" bounds=\"x\"/></hierarchy>");
+        SourceNode actual = SourceNode.parse("<hierarchy><a text=\"2\" checked=\"true\"/></hierarchy>");
+        SourceTreeDiff diff = SourceTreeDiff.calculate(previous, actual);
+        assertNotNull(diff);
+        assertEquals(1, diff.getChanged().size());
+        SourceTreeDiff.AttributesChange change = diff.getChanged().get(0);
+        assertEquals("[0]", change.path.toString());
+        assertEquals("{text=2, checked=true}", change.attributes.toString());
+        assertEquals("[bounds]", change.removedAttributes.toString());
+    }
+
+    @Test
+    public void shouldRestoreActualTreeFromDiff() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; ++i) {
+            MutableNode previous = generateNode(random, 4);
+            MutableNode actual = previous.copy();
+            mutate(random, actual, 3);
+
+            SourceTreeDiff diff = SourceTreeDiff.calculate(
+                    SourceNode.parse(previous.toXml()), SourceNode.parse(actual.toXml()));
+            assertNotNull(diff);
+            assertEquals(actual.toXml(), apply(previous, diff).toXml());
+        }
+    }
+}
@@ -33,6 +33,8 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import android.os.SystemClock;
 
@@ -261,4 +263,46 @@ public class XMLHelpersTests {
         List<Node> nodes = findNodesUsingXpath2(XML, query, false);
         assertEquals(nodes.size(), 1);
     }
+
+    @Test
+    public void detectsQueriesLimitedToContextSubtree() {
+        String[] queries = {
+                "android.widget.Button",
+                "*",
+                ".",
+                ".//android.widget.TextView[@text='some, text']",
+                "./android.widget.FrameLayout/*/android.widget.Button",
+                "descendant::android.widget.Button[1]",
+                "child::*[@clickable='true']//android.widget.TextView",
+                "*[contains(@text, '/..')]",
+                "android.widget.TextView[@text = \"parent::a\" and @index > 1]",
+                ".//*[@text mod 2 = 0]",
+        };
+        for (String query : queries) {
+            assertTrue(query, XMLHelpers.isLimitedToContextSubtree(query));
+        }
+    }
+
+    @Test
+    public void detectsQueriesNotLimitedToContextSubtree() {
+        String[] queries = {
+                "//android.widget.Button",
+                "/hierarchy",
+                "..",
+                "../android.widget.Button",
+                "parent::*",
+                "ancestor::android.widget.FrameLayout",
+                "./android.widget.TextView/following-sibling::android.widget.Button",
+                "preceding::*",
+                ".//android.widget.TextView[@text=//android.widget.Button/@text]",
+                "root(.)//android.widget.Button",
+                "(//android.widget.Button)[1]",
+                ".//android.widget.Button | //android.widget.TextView",
+                "android.widget.Button[@text=$text]",
+                "id('x')",
+        };
+        for (String query : queries) {
+            assertFalse(query, XMLHelpers.isLimitedToContextSubtree(query));
+        }
+    }
 }